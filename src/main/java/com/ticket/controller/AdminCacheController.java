@@ -0,0 +1,47 @@
+package com.ticket.controller;
+
+import com.ticket.annotation.AdminRequired;
+import com.ticket.common.Result;
+import com.ticket.dto.BloomFilterStats;
+import com.ticket.dto.CacheStats;
+import com.ticket.service.EventIdFilterService;
+import com.ticket.util.TwoLevelCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/cache") // 管理端缓存接口
+public class AdminCacheController {
+
+    @Autowired
+    private TwoLevelCache twoLevelCache;
+    @Autowired
+    private EventIdFilterService eventIdFilterService;
+
+    // 1. 查看本节点二级缓存各命名空间的命中率
+    @GetMapping("/stats")
+    @AdminRequired
+    public Result<List<CacheStats>> getCacheStats() {
+        return Result.success(twoLevelCache.stats());
+    }
+
+    // 2. 查看演出ID布隆过滤器状态（大小、误判率、拒绝数）
+    @GetMapping("/event-bloom")
+    @AdminRequired
+    public Result<BloomFilterStats> getEventBloomStats() {
+        return Result.success(eventIdFilterService.stats());
+    }
+
+    // 3. 立即重建演出ID布隆过滤器（本节点）
+    @PostMapping("/event-bloom/rebuild")
+    @AdminRequired
+    public Result<BloomFilterStats> rebuildEventBloom() {
+        eventIdFilterService.rebuild();
+        return Result.success(eventIdFilterService.stats());
+    }
+}
@@ -3,23 +3,40 @@ package com.ticket.controller;
 import com.ticket.annotation.AdminRequired;
 import com.ticket.common.Result;
 import com.ticket.dto.EventDTO;
+import com.ticket.dto.EventSearchStats;
 import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
+import com.ticket.dto.SeatSectionDTO;
+import com.ticket.dto.StockReconcileReport;
 import com.ticket.entity.Event;
+import com.ticket.service.EventSearchService;
 import com.ticket.service.EventService;
+import com.ticket.service.SeatService;
+import com.ticket.service.StockLedgerService;
+import com.ticket.service.WaitingRoomService;
 import com.ticket.util.RequestUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/admin/event") // 管理端演出接口统一前缀
 public class AdminEventController {
 
     @Autowired
     private EventService eventService;
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+    @Autowired
+    private SeatService seatService;
+    @Autowired
+    private StockLedgerService stockLedgerService;
+    @Autowired
+    private EventSearchService eventSearchService;
 
-    // 1. 添加演出信息
+    // 1. 添加演出信息（热门演出可传 bucketCount 开启库存分桶，创建后不可修改）
     @PostMapping
     @AdminRequired
     public Result<String> createEvent(@RequestBody Event event,
@@ -66,4 +83,47 @@ public class AdminEventController {
         // 使用管理端专用方法，返回完整库存信息
         return eventService.getEventByIdForAdmin(id);
     }
+
+    // 6. 开启虚拟排队（热门演出开抢前），rate 为每秒放行人数
+    @PostMapping("/{id}/waiting-room")
+    @AdminRequired
+    public Result<String> openWaitingRoom(@PathVariable Long id, @RequestParam Integer rate) {
+        return waitingRoomService.open(id, rate);
+    }
+
+    // 7. 关闭虚拟排队
+    @DeleteMapping("/{id}/waiting-room")
+    @AdminRequired
+    public Result<String> closeWaitingRoom(@PathVariable Long id) {
+        return waitingRoomService.close(id);
+    }
+
+    // 8. 设置座位图（开票前），座位总数必须等于库存
+    @PostMapping("/{id}/seat-map")
+    @AdminRequired
+    public Result<String> initSeatMap(@PathVariable Long id, @RequestBody List<SeatSectionDTO> sections) {
+        return seatService.initSeatMap(id, sections);
+    }
+
+    // 9. 立即执行一次库存对账（流水 vs 数据库库存 vs Redis 闸门），返回发现的差额
+    @PostMapping("/stock/reconcile")
+    @AdminRequired
+    public Result<StockReconcileReport> reconcileStock() {
+        return Result.success(stockLedgerService.reconcile());
+    }
+
+    // 10. 查看本节点演出搜索索引状态（演出数、词数、占用字节、退回 SQL 次数）
+    @GetMapping("/search-index")
+    @AdminRequired
+    public Result<EventSearchStats> getSearchIndexStats() {
+        return Result.success(eventSearchService.stats());
+    }
+
+    // 11. 立即重建演出搜索索引（本节点）
+    @PostMapping("/search-index/rebuild")
+    @AdminRequired
+    public Result<EventSearchStats> rebuildSearchIndex() {
+        eventSearchService.rebuild();
+        return Result.success(eventSearchService.stats());
+    }
 }
\ No newline at end of file
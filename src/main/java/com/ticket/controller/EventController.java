@@ -4,9 +4,14 @@ import com.ticket.common.Result;
 import com.ticket.dto.EventDTO;
 import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
+import com.ticket.dto.SeatSectionDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.ticket.service.EventService;
+import com.ticket.service.SeatService;
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.List;
 
@@ -16,12 +21,19 @@ public class EventController {
 
     @Autowired
     private EventService eventService;
+    @Autowired
+    private SeatService seatService;
+
+    @Value("${ticket.cache.body.enabled:true}")
+    private boolean bodyCacheEnabled;
 
     // 首页演出列表：根据地区与分类返回推荐列表
     // 默认城市为"北京"，返回四大类演出（演唱会、话剧、音乐会、体育赛事）
+    // 开启响应体缓存时直接返回序列化好的字节（客户端支持时返回 gzip）
     @GetMapping("/home")
-    public Result<List<EventDTO>> getHomeEvents(
+    public ResponseEntity<?> getHomeEvents(
             @RequestParam(required = false) String city,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
             HttpServletRequest request) {
         // 如果没有传城市参数，默认北京
         if (city == null || city.isEmpty()) {
@@ -29,8 +41,11 @@ public class EventController {
             // String ip = request.getRemoteAddr();
             // city = ipToCity(ip);
         }
+        if (bodyCacheEnabled) {
+            return eventService.getHomeEventsBody(city).toResponse(acceptEncoding);
+        }
         // 调用专门的首页推荐方法，只返回四大类演出
-        return eventService.getHomeEvents(city);
+        return ResponseEntity.ok(eventService.getHomeEvents(city));
     }
 
     // 搜索演出（匹配演出名/明星名）
@@ -48,10 +63,28 @@ public class EventController {
         return Result.success(result);
     }
 
-    // 根据ID获取演出详情
+    // 批量获取演出详情：/api/event/batch?ids=1,2,3，按传入顺序返回，不存在的ID跳过
+    // 缓存命中的一次 Redis 往返取回，未命中的一次数据库查询补齐
+    @GetMapping("/batch")
+    public Result<List<EventDTO>> getEventsByIds(@RequestParam List<Long> ids) {
+        return eventService.getEventsByIds(ids);
+    }
+
+    // 根据ID获取演出详情（开启响应体缓存时同首页）
     @GetMapping("/{id}")
-    public Result<EventDTO> getEventById(@PathVariable Long id) {
-        return eventService.getEventById(id);
+    public ResponseEntity<?> getEventById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (bodyCacheEnabled) {
+            return eventService.getEventBodyById(id).toResponse(acceptEncoding);
+        }
+        return ResponseEntity.ok(eventService.getEventById(id));
+    }
+
+    // 对号入座演出的座位图（各区剩余座位 + 座位位图）
+    @GetMapping("/{id}/seats")
+    public Result<List<SeatSectionDTO>> getSeatMap(@PathVariable Long id) {
+        return seatService.getSeatMap(id);
     }
 
     // 条件分页查询演出（支持城市、分类、分页）
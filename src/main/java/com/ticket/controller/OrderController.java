@@ -4,31 +4,148 @@ import com.ticket.common.Result;
 import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
 import com.ticket.entity.TicketOrder;
+import com.ticket.service.EventIdFilterService;
+import com.ticket.service.IdempotencyService;
+import com.ticket.service.OrderAdmissionService;
 import com.ticket.service.OrderService;
+import com.ticket.service.SoldOutService;
+import com.ticket.service.WaitingRoomService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import com.ticket.dto.CartCheckoutRequest;
 import com.ticket.dto.CreateOrderRequest;
+import com.ticket.dto.OrderRequestStatus;
 import com.ticket.util.RequestUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
 @Validated
 @RestController
 @RequestMapping("/api/order")
 public class OrderController {
 
+    private static final String ADMISSION_TOKEN_HEADER = "X-Admission-Token";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private SoldOutService soldOutService;
+    @Autowired
+    private OrderAdmissionService orderAdmissionService;
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private EventIdFilterService eventIdFilterService;
 
     // 创建订单
 
     @PostMapping("/create")
-    public Result<String> createOrder(@RequestBody @Valid CreateOrderRequest request, HttpServletRequest httpRequest) {
+    public Result<String> createOrder(@RequestBody @Valid CreateOrderRequest request,
+                                      HttpServletRequest httpRequest,
+                                      HttpServletResponse httpResponse) {
+        Long userId = RequestUtil.getUserId(httpRequest);
+        if (userId == null) {
+            return Result.error("用户未登录");
+        }
+        // 布隆过滤器判定不存在的演出直接拒绝，不占准入令牌桶、不查库存
+        if (!eventIdFilterService.mightExist(request.getEventId())) {
+            return Result.error("演出不存在");
+        }
+        // 本地售罄标记：已卖完的演出直接拒绝，不进 Service、不开事务
+        if (soldOutService.isSoldOut(request.getEventId())) {
+            return Result.error("库存不足，抢票失败");
+        }
+        // 开启排队的演出：必须携带排队放行后拿到的准入令牌
+        if (waitingRoomService.isGated(request.getEventId())
+                && !waitingRoomService.verifyAdmissionToken(request.getEventId(), userId,
+                        httpRequest.getHeader(ADMISSION_TOKEN_HEADER))) {
+            return Result.error("该演出需要排队，请先进入排队并等待放行");
+        }
+        // 准入控制：演出令牌桶 + 全局并发上限，超出的请求快速返回 429 并提示重试时间
+        OrderAdmissionService.Admission admission = orderAdmissionService.tryAcquire(request.getEventId());
+        if (!admission.isAdmitted()) {
+            long retryAfterSeconds = Math.max(1, (admission.getRetryAfterMillis() + 999) / 1000);
+            httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return Result.error("系统繁忙，请" + retryAfterSeconds + "秒后重试");
+        }
+        try {
+            // 客户端超时重试带同一个 Idempotency-Key：只下一次单，重试拿到第一次的结果
+            return idempotencyService.execute("order:create", userId, httpRequest.getHeader(IDEMPOTENCY_KEY_HEADER),
+                    request.getEventId() + ":" + request.getQuantity(),
+                    () -> orderService.createOrder(request, userId));
+        } finally {
+            admission.release();
+        }
+    }
+
+    // 购物车结算：多场演出一次下单，任何一场失败整单失败
+    @PostMapping("/checkout")
+    public Result<String> checkoutCart(@RequestBody @Valid CartCheckoutRequest request,
+                                       HttpServletRequest httpRequest,
+                                       HttpServletResponse httpResponse) {
         Long userId = RequestUtil.getUserId(httpRequest);
         if (userId == null) {
             return Result.error("用户未登录");
         }
-        return orderService.createOrder(request, userId);
+        Set<Long> eventIds = new TreeSet<>();
+        StringBuilder fingerprint = new StringBuilder();
+        for (CartCheckoutRequest.Item item : request.getItems()) {
+            eventIds.add(item.getEventId());
+            fingerprint.append(item.getEventId()).append(':').append(item.getQuantity()).append(';');
+        }
+        for (Long eventId : eventIds) {
+            if (!eventIdFilterService.mightExist(eventId)) {
+                return Result.error("演出不存在，演出ID：" + eventId);
+            }
+            if (soldOutService.isSoldOut(eventId)) {
+                return Result.error("库存不足，抢票失败，演出ID：" + eventId);
+            }
+            if (waitingRoomService.isGated(eventId)) {
+                // 排队演出的准入令牌按单场发放，不支持放进购物车
+                return Result.error("演出ID：" + eventId + " 需要排队购买，请单独下单");
+            }
+        }
+        // 每场演出都要通过准入控制，任何一场被限流整单返回 429
+        List<OrderAdmissionService.Admission> admissions = new ArrayList<>(eventIds.size());
+        try {
+            for (Long eventId : eventIds) {
+                OrderAdmissionService.Admission admission = orderAdmissionService.tryAcquire(eventId);
+                if (!admission.isAdmitted()) {
+                    long retryAfterSeconds = Math.max(1, (admission.getRetryAfterMillis() + 999) / 1000);
+                    httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                    httpResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+                    return Result.error("系统繁忙，请" + retryAfterSeconds + "秒后重试");
+                }
+                admissions.add(admission);
+            }
+            return idempotencyService.execute("order:checkout", userId, httpRequest.getHeader(IDEMPOTENCY_KEY_HEADER),
+                    fingerprint.toString(), () -> orderService.checkoutCart(request, userId));
+        } finally {
+            admissions.forEach(OrderAdmissionService.Admission::release);
+        }
+    }
+
+    // 异步下单：凭请求凭证轮询下单结果（QUEUED 排队中 / SUCCESS 成功 / FAILED 失败）
+    @GetMapping("/request/{ticket}")
+    public Result<OrderRequestStatus> getOrderRequestStatus(@PathVariable String ticket, HttpServletRequest request) {
+        Long userId = RequestUtil.getUserId(request);
+        if (userId == null) {
+            return Result.error("用户未登录");
+        }
+        return orderService.getOrderRequestStatus(ticket, userId);
     }
 
 
@@ -63,7 +180,8 @@ public class OrderController {
         if (userId == null) {
             return Result.error("用户未登录");
         }
-        return orderService.cancelOrder(id, userId);
+        return idempotencyService.execute("order:cancel", userId, request.getHeader(IDEMPOTENCY_KEY_HEADER),
+                id.toString(), () -> orderService.cancelOrder(id, userId));
     }
 
     // 分页查询订单列表（支持条件查询：状态、演出ID）
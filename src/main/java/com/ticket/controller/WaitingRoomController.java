@@ -0,0 +1,40 @@
+package com.ticket.controller;
+
+import com.ticket.common.Result;
+import com.ticket.dto.WaitingRoomStatus;
+import com.ticket.service.WaitingRoomService;
+import com.ticket.util.RequestUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 虚拟排队室（用户端）：这两个接口不访问 MySQL，可以承受开抢时的高频轮询
+ */
+@RestController
+@RequestMapping("/api/waiting-room")
+public class WaitingRoomController {
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    // 进入排队，返回前面还有多少人
+    @PostMapping("/{eventId}/join")
+    public Result<WaitingRoomStatus> join(@PathVariable Long eventId, HttpServletRequest request) {
+        Long userId = RequestUtil.getUserId(request);
+        if (userId == null) {
+            return Result.error("用户未登录");
+        }
+        return waitingRoomService.join(eventId, userId);
+    }
+
+    // 轮询排队状态，放行后返回准入令牌
+    @GetMapping("/{eventId}/status")
+    public Result<WaitingRoomStatus> getStatus(@PathVariable Long eventId, HttpServletRequest request) {
+        Long userId = RequestUtil.getUserId(request);
+        if (userId == null) {
+            return Result.error("用户未登录");
+        }
+        return waitingRoomService.getStatus(eventId, userId);
+    }
+}
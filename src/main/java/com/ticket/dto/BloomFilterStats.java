@@ -0,0 +1,24 @@
+package com.ticket.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 演出ID布隆过滤器状态（本节点）
+ */
+@Data
+public class BloomFilterStats {
+    private boolean ready;            // false 表示还没建好，所有ID都放行
+    private long bitSize;
+    private int hashCount;
+    private long insertions;         // 已放入的ID数
+    private long maxKnownId;         // 过滤器里最大的ID
+    private long settledMaxId;       // 大于这个ID的请求直接放行（最近新建、可能还没同步到过滤器的演出）
+    private double configuredFpp;    // 配置的误判率
+    private double estimatedFpp;     // 按当前放入数量估算的误判率
+    private long rejected;           // 被判定为不存在、直接拒绝的请求数
+    private long passed;             // 放行的请求数
+    private Date lastRebuildTime;
+    private long lastRebuildMillis;
+}
@@ -0,0 +1,27 @@
+package com.ticket.dto;
+
+import lombok.Data;
+
+/**
+ * 二级缓存单个命名空间的命中统计（进程启动以来，本节点）
+ */
+@Data
+public class CacheStats {
+    private String namespace;
+    private long l1Size;          // 本地缓存当前条数
+    private long l1Hits;
+    private long l2Hits;          // 本地未命中、Redis 命中
+    private long misses;          // 两级都未命中，回源数据库
+    private long l1Evictions;     // 本地缓存因容量/过期被淘汰的条数
+    private long invalidations;   // 收到的失效通知数
+    private long loads;           // 实际回源次数
+    private long coalesced;       // 合并到别人回源结果上的未命中次数
+    private long staleServed;     // 回源超时/失败时返回旧值的次数
+    private long negativeHits;    // 命中负缓存（已确认不存在）的次数
+    private long negativeSize;    // 本地负缓存当前条数
+    private long bodyHits;        // 直接返回序列化好的响应体的次数
+    private long bodyRenders;     // 重新生成响应体的次数
+    private long bodySize;        // 本地响应体缓存当前条数
+    private double l1HitRate;     // l1Hits / 总请求
+    private double l2HitRate;     // l2Hits / 本地未命中的请求
+}
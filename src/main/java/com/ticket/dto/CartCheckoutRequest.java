@@ -0,0 +1,30 @@
+package com.ticket.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 购物车结算：一次提交多场演出，整单要么全部下单成功，要么全部失败
+ */
+@Data
+public class CartCheckoutRequest {
+
+    @NotEmpty(message = "购物车不能为空")
+    @Valid
+    private List<Item> items;
+
+    @Data
+    public static class Item {
+        @NotNull(message = "演出ID不能为空")
+        private Long eventId;
+
+        @NotNull(message = "购买数量不能为空")
+        @Positive(message = "购买数量必须大于0")
+        private Integer quantity;
+    }
+}
@@ -18,6 +18,7 @@ public class EventDTO {
     private Integer stock;
     private String status;
     private String ticketGrade;
+    private Integer bucketCount;
 
     // 用户端汇总字段：
     private Boolean hasStock; // stock > 0
@@ -0,0 +1,21 @@
+package com.ticket.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 演出搜索索引状态（本节点）
+ */
+@Data
+public class EventSearchStats {
+    private boolean ready;            // false 表示还没建好，搜索走 SQL
+    private int events;               // 索引里的演出数
+    private int deletedOrdinals;      // 修改 / 删除后作废、等待重建清理的序号数
+    private long terms;               // 各字段的词数之和
+    private long postingBytes;        // posting list 压缩后的总字节数
+    private long searches;            // 走索引的搜索次数
+    private long fallbacks;           // 退回 SQL 的搜索次数
+    private Date lastRebuildTime;
+    private long lastRebuildMillis;
+}
@@ -0,0 +1,26 @@
+package com.ticket.dto;
+
+import com.ticket.entity.TicketOrder;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 订单变更事件（发件箱投递给进程内监听器，同时写入 Redis Stream）
+ *
+ * 至少投递一次：监听器可能收到重复事件，需要按 outboxId 去重或保证处理幂等
+ */
+@Data
+public class OrderChangeEvent {
+    public static final String CREATED = "CREATED";
+    public static final String CANCELLED = "CANCELLED"; // 用户取消
+    public static final String EXPIRED = "EXPIRED";     // 超时未支付自动取消
+    public static final String UPDATED = "UPDATED";
+    public static final String DELETED = "DELETED";
+
+    private Long outboxId;
+    private Long orderId;
+    private String eventType;
+    private TicketOrder order;  // 变更后的订单快照
+    private Date occurredTime;
+}
@@ -0,0 +1,24 @@
+package com.ticket.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.Data;
+
+/**
+ * 异步下单请求的处理状态（用户凭请求凭证轮询）
+ */
+@Data
+public class OrderRequestStatus {
+    public static final String QUEUED = "QUEUED";   // 排队中
+    public static final String SUCCESS = "SUCCESS"; // 下单成功
+    public static final String FAILED = "FAILED";   // 下单失败
+
+    private String ticket;   // 请求凭证
+    private Long userId;     // 下单用户（只能查询自己的请求）
+    private Long eventId;
+    private Integer quantity;
+    private String status;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long orderId;    // 下单成功后的订单ID（64位，序列化为字符串）
+    private String message;  // 失败原因
+}
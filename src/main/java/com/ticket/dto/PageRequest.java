@@ -8,6 +8,11 @@ public class PageRequest {
     private Integer size = 10;     // 每页大小，默认10条
     private String sort;           // 排序字段
     private String order;          // 排序方向：asc/desc
+    // 游标分页：不传为页码分页（page/size）；传了则按游标翻页，忽略 page
+    // 第一页传空字符串（cursor=），之后传上一页返回的 nextCursor；关键词搜索按相关度排序，只支持页码分页
+    private String cursor;
+    // 是否需要总数（total/totalPages）：默认不查，列表靠 hasNext 判断是否有下一页；传 true 时总数走短期计数缓存
+    private Boolean withTotal;
 
     public PageRequest(Integer page, Integer size) {
         this.page = page;
@@ -17,4 +22,19 @@ public class PageRequest {
         return (page - 1) * size;
     }
 
+    public boolean isCursorMode() {
+        return cursor != null;
+    }
+
+    public boolean isTotalRequested() {
+        return Boolean.TRUE.equals(withTotal);
+    }
+
+    /**
+     * 实际查询的行数：多查一行，用来判断有没有下一页
+     */
+    public int getFetchSize() {
+        return size + 1;
+    }
+
 }
\ No newline at end of file
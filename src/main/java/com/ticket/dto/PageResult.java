@@ -8,15 +8,38 @@ public class PageResult<T> {
     private List<T> list;          // 当前页数据
     private Integer page;          // 当前页码
     private Integer size;          // 每页大小
-    private Long total;            // 总记录数
-    private Integer totalPages;    // 总页数
+    private Long total;            // 总记录数（没有请求总数时为 null）
+    private Integer totalPages;    // 总页数（同上）
+    private Boolean hasNext;       // 是否有下一页
+    private String nextCursor;     // 游标分页时下一页的游标，null 表示没有下一页（页码分页时始终为 null）
 
     public PageResult(List<T> list, Long total, PageRequest pageRequest) {
         this.list = list;
         this.page = pageRequest.getPage();
         this.size = pageRequest.getSize();
         this.total = total;
-        this.totalPages = (int) Math.ceil((double) total / pageRequest.getSize());
+        if (total != null) {
+            this.totalPages = (int) Math.ceil((double) total / pageRequest.getSize());
+            this.hasNext = (long) pageRequest.getPage() * pageRequest.getSize() < total;
+        }
+    }
+
+    public PageResult(List<T> list, Long total, PageRequest pageRequest, boolean hasNext, String nextCursor) {
+        this(list, total, pageRequest);
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 按 PageRequest.getFetchSize() 多查了一行时调用：去掉多出的一行
+     * @return 是否有下一页（多出的那一行存在）
+     */
+    public static <T> boolean trimToSize(List<T> rows, int size) {
+        if (rows.size() <= size) {
+            return false;
+        }
+        rows.subList(size, rows.size()).clear();
+        return true;
     }
 
 }
\ No newline at end of file
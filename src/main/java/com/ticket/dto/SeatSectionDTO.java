@@ -0,0 +1,16 @@
+package com.ticket.dto;
+
+import lombok.Data;
+
+/**
+ * 座位区信息：管理端初始化座位图时只需传 sectionName、rowCount、seatsPerRow
+ */
+@Data
+public class SeatSectionDTO {
+    private Integer sectionNo;
+    private String sectionName;
+    private Integer rowCount;
+    private Integer seatsPerRow;
+    private Integer available; // 剩余座位数
+    private String seats;      // 座位位图（Base64），每排按64位对齐，1 表示已占用
+}
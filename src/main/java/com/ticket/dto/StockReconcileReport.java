@@ -0,0 +1,33 @@
+package com.ticket.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次库存对账的结果
+ */
+@Data
+public class StockReconcileReport {
+    private Long highWaterMark;     // 本次对到的流水ID
+    private int touchedEvents;      // 上次以来有新流水的演出数
+    private int checkedEvents;      // 本次核对的演出数（有新流水的 + 轮询到的）
+    private int openedEvents;       // 第一次对账、以当前库存建立检查点的演出数
+    private int repairedEvents;
+    private long elapsedMillis;
+    private List<Drift> drifts = new ArrayList<>();
+
+    @Data
+    public static class Drift {
+        public static final String STOCK = "STOCK";  // 数据库库存和流水对不上
+        public static final String GATE = "GATE";    // Redis 闸门和流水对不上
+
+        private Long eventId;
+        private String target;
+        private Integer actual;
+        private Integer expected;
+        private int confirmedRuns;  // 连续几次对账都是同样的差额
+        private boolean repaired;
+    }
+}
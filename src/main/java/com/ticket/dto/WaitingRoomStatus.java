@@ -0,0 +1,16 @@
+package com.ticket.dto;
+
+import lombok.Data;
+
+/**
+ * 排队状态（用户轮询返回）
+ */
+@Data
+public class WaitingRoomStatus {
+    private Long eventId;
+    private Boolean gated;          // 该演出是否开启了排队
+    private Long position;          // 前面还有多少人，0 表示已放行
+    private Boolean admitted;       // 是否已放行
+    private String admissionToken;  // 放行后下单时携带的准入令牌（请求头 X-Admission-Token）
+    private Long tokenExpiresAt;    // 准入令牌过期时间（毫秒时间戳）
+}
@@ -17,6 +17,7 @@ public class Event {
     private Integer stock;//库存
     private String status;//状态
     private String ticketGrade; // 票档
+    private Integer bucketCount; // 库存分桶数（>1 表示库存拆到 event_stock_bucket 的多行上，创建时指定）
     private Date createdTime;
     private Long createdBy;
     private Long updatedBy;
@@ -0,0 +1,20 @@
+package com.ticket.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 演出座位区：一个区 rowCount 排 × seatsPerRow 座，占用情况打包成位图存在 seats 字段
+ */
+@Data
+public class EventSeatSection {
+    private Long eventId;
+    private Integer sectionNo;    // 区编号，从0开始，越小越靠前
+    private String sectionName;   // 区名称，例如 "内场A区"
+    private Integer rowCount;     // 排数
+    private Integer seatsPerRow;  // 每排座位数
+    private byte[] seats;         // 座位位图（SeatBitmap.toBytes），1 表示已占用
+    private Long version;         // 每次修改座位位图换一个新的全局唯一值，节点据此判断本地缓存是否过期
+    private Date updatedTime;
+}
@@ -0,0 +1,13 @@
+package com.ticket.entity;
+
+import lombok.Data;
+
+/**
+ * 演出库存分桶：热门演出的库存拆到多行，分散行锁竞争
+ */
+@Data
+public class EventStockBucket {
+    private Long eventId;
+    private Integer bucketNo; // 桶编号，从0开始
+    private Integer stock;    // 桶内库存（汇总查询时为该演出所有桶之和）
+}
@@ -0,0 +1,17 @@
+package com.ticket.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 订单变更发件箱：和订单状态变更写在同一个事务里，由 OrderOutboxRelay 异步投递
+ */
+@Data
+public class OrderOutbox {
+    private Long id;           // 自增ID，投递顺序
+    private Long orderId;
+    private String eventType;  // CREATED, CANCELLED, EXPIRED, UPDATED, DELETED
+    private String payload;    // 变更后的订单快照（JSON）
+    private Date createdTime;
+}
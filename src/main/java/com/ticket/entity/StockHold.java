@@ -0,0 +1,17 @@
+package com.ticket.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 库存预留：合并器在自己的事务里扣库存时同时写一条，调用方在自己的事务里删掉它才算确认扣减
+ * 调用方回滚或宕机时记录留下来，超时后把库存还回去
+ */
+@Data
+public class StockHold {
+    private Long id;           // IdGenerator 分配
+    private Long eventId;
+    private Integer quantity;
+    private Date createdTime;
+}
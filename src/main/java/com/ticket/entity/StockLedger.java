@@ -0,0 +1,18 @@
+package com.ticket.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 库存流水：每次扣减/回补/调整库存都在同一个事务里追加一条，只增不改
+ */
+@Data
+public class StockLedger {
+    private Long id;           // 自增ID，对账的高水位就是这个ID
+    private Long eventId;
+    private Long orderId;      // 管理员调整库存时为空
+    private Integer delta;     // 库存变化量：扣减为负，回补/加库存为正
+    private String source;     // ORDER_CREATED, ORDER_CANCELLED, ORDER_EXPIRED, EVENT_CREATED, EVENT_UPDATED
+    private Date createdTime;
+}
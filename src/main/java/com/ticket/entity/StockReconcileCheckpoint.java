@@ -0,0 +1,17 @@
+package com.ticket.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 库存对账检查点：每场演出已对到哪条流水（高水位）以及截至该流水的应有库存
+ * eventId = 0 的行是全局游标，lastLedgerId 为已汇总到各演出检查点的流水位置
+ */
+@Data
+public class StockReconcileCheckpoint {
+    private Long eventId;
+    private Long lastLedgerId;
+    private Integer balance;   // 截至 lastLedgerId 的应有库存
+    private Date updatedTime;
+}
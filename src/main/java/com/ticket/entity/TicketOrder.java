@@ -1,18 +1,22 @@
 package com.ticket.entity;
 
 import jakarta.websocket.Decoder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.math.BigDecimal;
 import java.util.Date;
 @Data
 public class TicketOrder {
+    @JsonSerialize(using = ToStringSerializer.class) // 64位ID超出 JS 精度，序列化为字符串
     private Long id;
     private Long userId;
     private Long eventId;
     private Integer quantity;
     private BigDecimal totalPrice;
     private String status; // PENDING, PAID, CANCELLED
+    private String seats; // 对号入座演出分到的座位（区号:排:起始座:张数，从0开始），其他演出为空
     private Long createdBy;
     private Date createdTime;
     private Long updatedBy;  // 最后修改人ID（关联user.id）
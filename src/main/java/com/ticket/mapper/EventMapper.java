@@ -1,50 +1,77 @@
-// src/main/java/com/ticket/mapper/EventMapper.java
-package com.ticket.mapper;
-
-import com.ticket.entity.Event;
-import org.apache.ibatis.annotations.Mapper;
-import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
-
-@Mapper
-public interface EventMapper {
-    // 基础CRUD
-    Event selectById(Long id);
-    int insert(Event event);
-    int update(Event event);
-    int deleteById(Long id);
-
-    // 按城市 + 多个分类查询（用于首页推荐）
-    List<Event> selectByCityAndCategories(@Param("city") String city,
-                                          @Param("categories") List<String> categories);
-    List<Event> selectByCondition(@Param("city") String city,
-                                  @Param("category") String category,
-                                  @Param("offset") int offset,
-                                  @Param("size") int size);
-    Long countByCondition(@Param("city") String city, @Param("category") String category);
-    
-    // 带关键词的条件分页查询
-    List<Event> selectByNameAndCondition(@Param("keyword") String keyword,
-                                         @Param("city") String city,
-                                         @Param("category") String category,
-                                         @Param("offset") int offset,
-                                         @Param("size") int size);
-    Long countByNameAndCondition(@Param("keyword") String keyword,
-                                  @Param("city") String city,
-                                  @Param("category") String category);
-
-
-    int decreaseStock(@Param("eventId") Long eventId,
-                      @Param("quantity") Integer quantity);
-
-    /**
-     * 回滚库存（订单取消时使用，使用乐观锁保证并发安全）
-     * @param eventId 演出ID
-     * @param quantity 回滚数量
-     * @return 影响行数，0表示回滚失败（可能演出不存在）
-     */
-    int increaseStock(@Param("eventId") Long eventId,
-                      @Param("quantity") Integer quantity);
-
+// src/main/java/com/ticket/mapper/EventMapper.java
+package com.ticket.mapper;
+
+import com.ticket.entity.Event;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface EventMapper {
+    // 基础CRUD
+    Event selectById(Long id);
+    // 按ID批量查询（按ID升序返回）
+    List<Event> selectByIds(@Param("ids") List<Long> ids);
+    // 按主键游标取下一批演出ID（库存对账轮询全部演出用）
+    List<Long> selectIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+    // 创建时间早于 before 的演出里最大的ID（布隆过滤器判断哪些ID一定已经提交）
+    Long selectMaxIdCreatedBefore(@Param("before") Date before);
+    // 按主键游标取下一批演出的搜索字段（建内存搜索索引用，只查需要的列）
+    List<Event> selectSearchFieldsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+    int insert(Event event);
+    int update(Event event);
+    int deleteById(Long id);
+
+    // 按城市 + 多个分类查询（用于首页推荐）
+    List<Event> selectByCityAndCategories(@Param("city") String city,
+                                          @Param("categories") List<String> categories);
+    List<Event> selectByCondition(@Param("city") String city,
+                                  @Param("category") String category,
+                                  @Param("offset") int offset,
+                                  @Param("size") int size);
+    Long countByCondition(@Param("city") String city, @Param("category") String category);
+    // 游标分页：取 (cursorTime, cursorId) 之后的 size 条，游标为空取第一页
+    List<Event> selectByConditionAfter(@Param("city") String city,
+                                       @Param("category") String category,
+                                       @Param("cursorTime") Date cursorTime,
+                                       @Param("cursorId") Long cursorId,
+                                       @Param("size") int size);
+    
+    // 带关键词的条件分页查询
+    List<Event> selectByNameAndCondition(@Param("keyword") String keyword,
+                                         @Param("city") String city,
+                                         @Param("category") String category,
+                                         @Param("offset") int offset,
+                                         @Param("size") int size);
+    Long countByNameAndCondition(@Param("keyword") String keyword,
+                                  @Param("city") String city,
+                                  @Param("category") String category);
+
+
+    int decreaseStock(@Param("eventId") Long eventId,
+                      @Param("quantity") Integer quantity);
+
+    /**
+     * 回滚库存（订单取消时使用，使用乐观锁保证并发安全）
+     * @param eventId 演出ID
+     * @param quantity 回滚数量
+     * @return 影响行数，0表示回滚失败（可能演出不存在）
+     */
+    int increaseStock(@Param("eventId") Long eventId,
+                      @Param("quantity") Integer quantity);
+
+    /**
+     * 锁定演出行并读取当前库存（合并提交时使用，必须在事务内调用）
+     * @return 当前库存，演出不存在返回 null
+     */
+    Integer selectStockForUpdate(@Param("eventId") Long eventId);
+
+    /**
+     * 按净变化量调整库存（delta 可正可负，调用方已在行锁下校验过库存足够）
+     */
+    int adjustStock(@Param("eventId") Long eventId,
+                    @Param("delta") Integer delta);
+
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.ticket.mapper;
+
+import com.ticket.entity.EventSeatSection;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface EventSeatSectionMapper {
+    List<EventSeatSection> selectByEventId(@Param("eventId") Long eventId);
+    int insertBatch(List<EventSeatSection> sections);
+    int deleteByEventId(@Param("eventId") Long eventId);
+
+    // 按区编号顺序锁住一场演出的所有区，只读版本号等小字段（选座 / 释放座位前调用，同一场演出串行）
+    List<EventSeatSection> selectVersionsForUpdate(@Param("eventId") Long eventId);
+    // 读最新的整区位图（已持有锁时使用；当前读，不受事务快照影响）
+    EventSeatSection selectSectionForUpdate(@Param("eventId") Long eventId,
+                                            @Param("sectionNo") Integer sectionNo);
+
+    // 只回写一排的位图字节（offset 为该排在位图里的字节偏移），同时换新版本号
+    int updateSeatRow(@Param("eventId") Long eventId,
+                      @Param("sectionNo") Integer sectionNo,
+                      @Param("offset") Integer offset,
+                      @Param("bytes") byte[] bytes,
+                      @Param("version") Long version);
+}
@@ -0,0 +1,34 @@
+package com.ticket.mapper;
+
+import com.ticket.entity.EventStockBucket;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface EventStockBucketMapper {
+    int insertBatch(List<EventStockBucket> buckets);
+    int deleteByEventId(@Param("eventId") Long eventId);
+
+    // 单桶扣减/回补（扣减带 stock >= ? 条件，返回0表示该桶不够）
+    int decreaseStock(@Param("eventId") Long eventId,
+                      @Param("bucketNo") Integer bucketNo,
+                      @Param("quantity") Integer quantity);
+    int increaseStock(@Param("eventId") Long eventId,
+                      @Param("bucketNo") Integer bucketNo,
+                      @Param("quantity") Integer quantity);
+
+    // 不加锁的快照读（扣减前挑桶用）
+    List<EventStockBucket> selectByEventId(@Param("eventId") Long eventId);
+    // 按桶编号顺序锁定全部桶（对账修复使用，固定顺序避免死锁）
+    List<EventStockBucket> selectByEventIdForUpdate(@Param("eventId") Long eventId);
+    // 按桶编号顺序锁定指定的桶（单桶都不够时跨桶扣减使用）
+    List<EventStockBucket> selectByBucketNosForUpdate(@Param("eventId") Long eventId,
+                                                      @Param("bucketNos") List<Integer> bucketNos);
+
+    // 汇总库存
+    Integer sumStock(@Param("eventId") Long eventId);
+    // 批量汇总库存（列表页一次查完），返回的 stock 为每场演出的总和
+    List<EventStockBucket> sumStockByEventIds(@Param("eventIds") List<Long> eventIds);
+}
@@ -0,0 +1,18 @@
+package com.ticket.mapper;
+
+import com.ticket.entity.OrderOutbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface OrderOutboxMapper {
+    int insertBatch(List<OrderOutbox> records);
+
+    // 按ID顺序取最早的一批待投递记录
+    List<OrderOutbox> selectBatch(@Param("limit") int limit);
+
+    // 投递成功后删除
+    int deleteByIds(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,22 @@
+package com.ticket.mapper;
+
+import com.ticket.entity.StockHold;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface StockHoldMapper {
+    int insertBatch(List<StockHold> holds);
+
+    // 确认扣减 / 释放预留：返回0表示已经被别人删掉（已确认或已超时释放）
+    int deleteById(@Param("id") Long id);
+
+    // 写入超过 holdSeconds 秒还没确认的预留（走 created_time 索引）
+    List<StockHold> selectExpired(@Param("holdSeconds") int holdSeconds,
+                                  @Param("limit") int limit);
+
+    // 按演出汇总还没确认的预留数量，返回的 quantity 为合计（对账时把已扣未确认的部分算回去）
+    List<StockHold> sumQuantityByEventIds(@Param("eventIds") List<Long> eventIds);
+}
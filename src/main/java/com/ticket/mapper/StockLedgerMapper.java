@@ -0,0 +1,23 @@
+package com.ticket.mapper;
+
+import com.ticket.entity.StockLedger;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface StockLedgerMapper {
+    int insertBatch(List<StockLedger> records);
+
+    // 已"落定"的最大流水ID：只取最老的未提交写事务开始之前（再往前 settleSeconds 秒）写入的流水，
+    // 这个ID及以下的流水所在事务都已结束，不会再有晚提交的小ID
+    Long selectSettledMaxId(@Param("settleSeconds") int settleSeconds);
+
+    // 按演出汇总 (afterId, upToId] 区间的流水（走主键范围扫描），返回的 delta 为合计，id 为区间内最大流水ID
+    List<StockLedger> sumDeltaGroupByEvent(@Param("afterId") Long afterId,
+                                           @Param("upToId") Long upToId);
+
+    // 单场演出 afterId 之后的流水合计（走 event_id + id 索引，没有流水返回0）
+    Integer sumDeltaAfter(@Param("eventId") Long eventId, @Param("afterId") Long afterId);
+}
@@ -0,0 +1,15 @@
+package com.ticket.mapper;
+
+import com.ticket.entity.StockReconcileCheckpoint;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface StockReconcileCheckpointMapper {
+    List<StockReconcileCheckpoint> selectByEventIds(@Param("eventIds") List<Long> eventIds);
+
+    // 新增或覆盖检查点
+    int upsertBatch(List<StockReconcileCheckpoint> checkpoints);
+}
@@ -4,6 +4,7 @@ import com.ticket.entity.TicketOrder;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -12,6 +13,8 @@ public interface TicketOrderMapper {
     TicketOrder selectById(Long id);
     List<TicketOrder> selectAll();
     int insert(TicketOrder order);
+    // 批量插入（多行 INSERT，订单ID需提前用 IdGenerator 分配）
+    int insertBatch(List<TicketOrder> orders);
     int update(TicketOrder order);
     int deleteById(Long id);
 
@@ -36,6 +39,12 @@ public interface TicketOrderMapper {
     Long countByUserCondition(@Param("userId") Long userId,
                               @Param("status") String status,
                               @Param("eventId") Long eventId);
+    // 用户端游标分页：和页码分页一样按 id 倒序，取 cursorId 之后的 size 条，游标为空取第一页
+    List<TicketOrder> selectByUserConditionAfter(@Param("userId") Long userId,
+                                                 @Param("status") String status,
+                                                 @Param("eventId") Long eventId,
+                                                 @Param("cursorId") Long cursorId,
+                                                 @Param("size") int size);
 
     List<TicketOrder> selectByAdminCondition(@Param("userId") Long userId,
                                              @Param("status") String status,
@@ -46,7 +55,26 @@ public interface TicketOrderMapper {
     Long countByAdminCondition(@Param("userId") Long userId,
                                @Param("status") String status,
                                @Param("eventId") Long eventId);
+    // 管理端游标分页：取 (cursorTime, cursorId) 之后的 size 条，游标为空取第一页
+    List<TicketOrder> selectByAdminConditionAfter(@Param("userId") Long userId,
+                                                  @Param("status") String status,
+                                                  @Param("eventId") Long eventId,
+                                                  @Param("cursorTime") Date cursorTime,
+                                                  @Param("cursorId") Long cursorId,
+                                                  @Param("size") int size);
 
     // 管理端更新订单（只更新允许字段）
     int updateByAdmin(TicketOrder order);
+
+    // 超时取消：按主键游标分页加载待支付订单（只查 id、created_time），避免全表扫描
+    List<TicketOrder> selectPendingAfterId(@Param("lastId") Long lastId, @Param("limit") int limit);
+    // 锁住一批仍处于待支付状态的订单
+    List<TicketOrder> selectPendingByIdsForUpdate(@Param("ids") List<Long> ids);
+    // 批量取消：只取消仍处于待支付状态的订单，返回实际取消的条数
+    int cancelPendingByIds(@Param("ids") List<Long> ids, @Param("updatedBy") Long updatedBy);
+
+    // 限购校准：按演出+用户汇总有效订单（待支付、已支付）的购票数量，按 (演出ID, 用户ID) 游标分页，只在校准时调用
+    List<TicketOrder> sumActiveQuantityAfter(@Param("lastEventId") Long lastEventId,
+                                             @Param("lastUserId") Long lastUserId,
+                                             @Param("limit") int limit);
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.ticket.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -28,6 +29,15 @@ public interface UserMapper {
     Long countByPage(@Param("username") String username,
                      @Param("status") Integer status);
 
+    // 管理端游标分页查询用户：取 (cursorTime, cursorId) 之后的 size 条，游标为空取第一页
+    List<User> selectByPageAfter(
+            @Param("username") String username,
+            @Param("status") Integer status,
+            @Param("cursorTime") Date cursorTime,
+            @Param("cursorId") Long cursorId,
+            @Param("size") int size
+    );
+
     // 修改用户状态（启用/禁用）
     int updateStatus(@Param("id") Long id,
                      @Param("status") Integer status);
@@ -86,15 +86,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             Long userId = Long.valueOf(userIdStr);
 
             // 5. 检查用户是否存在、是否被禁用
-            User user = userMapper.selectById(userId);
-            if (user == null) {
-                sendForbiddenResponse(response, "用户不存在");
-                return;
-            }
-            
-            if (user.getStatus() == 0) {
-                sendForbiddenResponse(response, "用户已被禁用");
-                return;
+            // 排队接口开抢时会被高频轮询，只信任 token，不查库（被禁用的用户排到了也下不了单）
+            if (!shouldSkipUserCheck(requestURI)) {
+                User user = userMapper.selectById(userId);
+                if (user == null) {
+                    sendForbiddenResponse(response, "用户不存在");
+                    return;
+                }
+
+                if (user.getStatus() == 0) {
+                    sendForbiddenResponse(response, "用户已被禁用");
+                    return;
+                }
             }
 
             // 6. 将用户信息存入 UserContext（ThreadLocal，用于在请求线程内共享用户信息）
@@ -152,6 +155,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return false;
     }
 
+    /**
+     * 判断这个路径是否可以跳过查库校验用户状态（只校验 token）
+     */
+    private boolean shouldSkipUserCheck(String requestURI) {
+        return requestURI.startsWith("/api/waiting-room/");
+    }
+
     /**
      * 返回 401 未授权响应
      */
@@ -0,0 +1,29 @@
+package com.ticket.service;
+
+import com.ticket.dto.BloomFilterStats;
+
+/**
+ * 演出ID布隆过滤器（防缓存穿透）：每个节点本地一份，启动时和定时从 event 表重建，
+ * 新建演出通过 Redis 发布/订阅同步到所有节点
+ *
+ * 判定为不存在的ID直接拒绝，不查 Redis 也不查数据库。
+ */
+public interface EventIdFilterService {
+
+    /**
+     * 演出ID是否可能存在（纯内存操作）；过滤器未建好时总是返回 true
+     */
+    boolean mightExist(Long eventId);
+
+    /**
+     * 新建演出后加入过滤器，并广播给其他节点（需要在事务提交后调用）
+     */
+    void add(Long eventId);
+
+    /**
+     * 从 event 表重建（清掉已删除演出的ID）
+     */
+    void rebuild();
+
+    BloomFilterStats stats();
+}
@@ -0,0 +1,29 @@
+package com.ticket.service;
+
+import com.ticket.dto.EventSearchStats;
+import com.ticket.util.EventSearchIndex;
+
+/**
+ * 演出搜索（内存倒排索引）：每个节点本地一份，启动时和定时从 event 表重建，
+ * 演出新建 / 修改 / 删除通过 Redis 发布/订阅通知所有节点从数据库重新加载这个演出
+ */
+public interface EventSearchService {
+
+    /**
+     * 按关键词搜索，可按城市 / 分类过滤，结果按相关度排序
+     * @return 索引没建好（或已关闭）、关键词切不出词时返回 null，调用方退回 SQL 查询
+     */
+    EventSearchIndex.Hits search(String keyword, String city, String category, int offset, int limit);
+
+    /**
+     * 演出变更后从数据库重新加载到索引（不存在则移除），并广播给其他节点（需要在事务提交后调用）
+     */
+    void refresh(Long eventId);
+
+    /**
+     * 从 event 表重建（清掉作废的序号）
+     */
+    void rebuild();
+
+    EventSearchStats stats();
+}
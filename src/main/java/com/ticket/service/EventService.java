@@ -5,6 +5,7 @@ import com.ticket.dto.EventDTO;
 import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
 import com.ticket.entity.Event;
+import com.ticket.util.CachedBody;
 
 import java.util.List;
 
@@ -12,9 +13,17 @@ public interface EventService {
 
     Result<EventDTO> getEventById(Long id);
 
+    // 批量查询演出详情（收藏、订单列表等需要一次补全多个演出），按传入顺序返回，不存在的ID跳过
+    Result<List<EventDTO>> getEventsByIds(List<Long> ids);
+
     // 首页推荐：按城市 + 四大类查询
     Result<List<EventDTO>> getHomeEvents(String city);
 
+    // 演出详情 / 首页推荐的响应体缓存版：返回序列化好的完整响应（Result JSON，可带 gzip）
+    CachedBody getEventBodyById(Long id);
+
+    CachedBody getHomeEventsBody(String city);
+
     Result<String> createEvent(Event event, Long userId);
 
     Result<String> updateEvent(Long id, Event event, Long userId);
@@ -0,0 +1,22 @@
+package com.ticket.service;
+
+import com.ticket.common.Result;
+
+import java.util.function.Supplier;
+
+/**
+ * 请求幂等：客户端超时重试时带上同一个 Idempotency-Key，只真正执行一次
+ *
+ * 第一次的结果保存一段时间（Redis，不可用时退化为本地有界缓存），重试直接返回保存的结果；
+ * 同一个 Key 的并发请求等待正在执行的那一个，不会重复扣库存、重复下单
+ */
+public interface IdempotencyService {
+
+    /**
+     * 幂等执行
+     * @param scope 业务范围，例如 order:create
+     * @param key 客户端传的 Idempotency-Key，为空时直接执行 action
+     * @param fingerprint 请求参数摘要，同一个 Key 带不同参数时拒绝
+     */
+    Result<String> execute(String scope, Long userId, String key, String fingerprint, Supplier<Result<String>> action);
+}
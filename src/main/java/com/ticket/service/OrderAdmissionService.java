@@ -0,0 +1,62 @@
+package com.ticket.service;
+
+/**
+ * 下单接口准入控制
+ *
+ * 1. 每场演出一个令牌桶，放行速率按剩余库存换算（库存越少放进来的请求越少）
+ * 2. 全局并发上限，防止热门演出把数据库连接池打满、拖垮其他接口
+ * 被拒绝的请求快速返回"系统繁忙"，并附带建议的重试时间
+ */
+public interface OrderAdmissionService {
+
+    /**
+     * 尝试准入，被放行的请求处理完后必须调用 {@link Admission#release()}
+     */
+    Admission tryAcquire(Long eventId);
+
+    /**
+     * 准入结果
+     */
+    final class Admission {
+        private static final Admission NO_OP = new Admission(true, 0, null);
+
+        private final boolean admitted;
+        private final long retryAfterMillis;
+        private final Runnable releaser;
+
+        private Admission(boolean admitted, long retryAfterMillis, Runnable releaser) {
+            this.admitted = admitted;
+            this.retryAfterMillis = retryAfterMillis;
+            this.releaser = releaser;
+        }
+
+        /** 放行（未开启准入控制时） */
+        public static Admission noOp() {
+            return NO_OP;
+        }
+
+        /** 放行，release 时执行 releaser 归还并发名额 */
+        public static Admission admitted(Runnable releaser) {
+            return new Admission(true, 0, releaser);
+        }
+
+        /** 拒绝，建议 retryAfterMillis 毫秒后重试 */
+        public static Admission rejected(long retryAfterMillis) {
+            return new Admission(false, retryAfterMillis, null);
+        }
+
+        public boolean isAdmitted() {
+            return admitted;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+
+        public void release() {
+            if (releaser != null) {
+                releaser.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ticket.service;
+
+import com.ticket.dto.OrderChangeEvent;
+
+import java.util.List;
+
+/**
+ * 订单变更监听器：实现并注册为 Spring Bean 即可收到发件箱投递的事件
+ *
+ * 同一订单的事件按发生顺序投递；抛出异常时整批稍后重投
+ */
+public interface OrderChangeListener {
+
+    void onOrderChanged(List<OrderChangeEvent> events);
+}
@@ -0,0 +1,12 @@
+package com.ticket.service;
+
+/**
+ * 待支付订单超时取消：订单创建后登记截止时间，超时未支付的订单由后台批量取消并回补库存
+ */
+public interface OrderExpiryService {
+
+    /**
+     * 登记一个新创建的待支付订单（在订单事务提交后调用）
+     */
+    void schedule(Long orderId);
+}
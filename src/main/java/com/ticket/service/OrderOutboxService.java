@@ -0,0 +1,23 @@
+package com.ticket.service;
+
+import com.ticket.entity.TicketOrder;
+
+import java.util.List;
+
+/**
+ * 订单变更发件箱：订单每次状态变更都在同一个事务里写一条发件箱记录，
+ * 由后台定时批量投递给 OrderChangeListener 和 Redis Stream（ticket:order:changes）
+ */
+public interface OrderOutboxService {
+
+    /**
+     * 记录一次订单变更（需要在订单变更的事务内调用）
+     * @param eventType OrderChangeEvent 中的事件类型
+     */
+    void record(TicketOrder order, String eventType);
+
+    /**
+     * 批量记录（一条多行 INSERT）
+     */
+    void recordAll(List<TicketOrder> orders, String eventType);
+}
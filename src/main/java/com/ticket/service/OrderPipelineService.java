@@ -0,0 +1,37 @@
+package com.ticket.service;
+
+import com.ticket.dto.OrderRequestStatus;
+
+/**
+ * 异步下单流水线
+ *
+ * 请求线程只负责 Redis 预扣库存并把购票命令放入队列，立即返回请求凭证；
+ * 后台工作线程批量消费队列：数据库扣库存 + 批量插入订单，结果写回状态供用户轮询。
+ */
+public interface OrderPipelineService {
+
+    /**
+     * 是否开启异步下单
+     */
+    boolean isEnabled();
+
+    /**
+     * 提交购票命令
+     *
+     * @param reserved 请求线程是否已在 Redis 闸门预扣成功（失败时需要回补）
+     * @return 请求凭证；队列已满或命令登记失败（Redis 出错）时返回 null
+     */
+    String submit(Long userId, Long eventId, Integer quantity, boolean reserved);
+
+    /**
+     * 本节点已受理但还没处理完的命令数（Redis 闸门已预扣、数据库还没扣），不为0时闸门和数据库库存会有差额
+     */
+    int pendingCount();
+
+    /**
+     * 查询请求状态
+     *
+     * @return 状态，凭证不存在或已过期时返回 null
+     */
+    OrderRequestStatus getStatus(String ticket);
+}
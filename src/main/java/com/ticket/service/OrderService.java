@@ -1,7 +1,9 @@
 package com.ticket.service;
 
 import com.ticket.common.Result;
+import com.ticket.dto.CartCheckoutRequest;
 import com.ticket.dto.CreateOrderRequest;
+import com.ticket.dto.OrderRequestStatus;
 import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
 import com.ticket.entity.TicketOrder;
@@ -10,6 +12,12 @@ public interface OrderService {
 
     Result<String> createOrder(CreateOrderRequest request, Long userId);
 
+    // 购物车结算：多场演出在一个事务里下单，任何一场库存不足整单失败
+    Result<String> checkoutCart(CartCheckoutRequest request, Long userId);
+
+    // 异步下单：凭请求凭证查询处理结果（只能查自己的请求）
+    Result<OrderRequestStatus> getOrderRequestStatus(String ticket, Long userId);
+
     Result<TicketOrder> getOrderById(Long id);
 
     Result<String> cancelOrder(Long id, Long userId);
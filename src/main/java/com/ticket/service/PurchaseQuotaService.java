@@ -0,0 +1,25 @@
+package com.ticket.service;
+
+/**
+ * 每人每场限购：下单时在扣库存之前原子地占用额度，全程不查 ticket_order
+ *
+ * 计数在启动时按 ticket_order 里的有效订单（待支付 + 已支付）校准一次，之后随下单/取消增减
+ */
+public interface PurchaseQuotaService {
+
+    /**
+     * 每人每场最多购买张数，0 表示不限购
+     */
+    int getLimit();
+
+    /**
+     * 占用额度
+     * @return false 表示超出限购
+     */
+    boolean tryAcquire(Long eventId, Long userId, int quantity);
+
+    /**
+     * 归还额度
+     */
+    void release(Long eventId, Long userId, int quantity);
+}
@@ -0,0 +1,39 @@
+package com.ticket.service;
+
+import java.util.Map;
+
+/**
+ * 限购计数存储：多节点部署用 Redis（每场演出一个 Hash），单节点可用内存实现
+ * 通过 ticket.order.quota.mode=redis|local 切换
+ */
+public interface PurchaseQuotaStore {
+
+    /**
+     * 原子地检查并累加：已购数量 + quantity 不超过 limit 才累加
+     * @return true 累加成功（存储不可用时也返回 true，降级为不限购）
+     */
+    boolean tryAcquire(Long eventId, Long userId, int quantity, int limit);
+
+    /**
+     * 归还额度（下单失败、取消订单时调用），减到0的计数会被删除
+     */
+    void release(Long eventId, Long userId, int quantity);
+
+    /**
+     * 按数据库里的有效订单校正某场演出的计数：低于有效订单数的调高，不降低、不删除
+     * （计数里可能有已占额度、还没落库的请求，降低会让这些用户超出限购）
+     * @param counts 用户ID -> 有效订单的购票数量
+     */
+    void raise(Long eventId, Map<Long, Integer> counts);
+
+    /**
+     * 校准开始前调用：返回 false 表示不需要校准（计数是完整的）或其他节点正在校准
+     */
+    boolean tryBeginReconcile();
+
+    /**
+     * 校准结束后调用
+     * @param success 全部校正完成时为 true，之后 tryBeginReconcile 不再返回 true
+     */
+    void finishReconcile(boolean success);
+}
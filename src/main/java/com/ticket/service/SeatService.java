@@ -0,0 +1,71 @@
+package com.ticket.service;
+
+import com.ticket.common.Result;
+import com.ticket.dto.SeatSectionDTO;
+
+import java.util.List;
+
+/**
+ * 座位图：对号入座的演出按区/排/座分配连座
+ *
+ * 每个区的占用情况是一张位图，整区存一行。选座 / 释放在订单事务里先锁住这场演出的所有区，
+ * 改完只回写改动的那一排，和订单一起提交或回滚，多节点部署也不会重复卖座。
+ * 各节点缓存位图和版本号，版本号没变就不用重新读整区。
+ */
+public interface SeatService {
+
+    /**
+     * 分到的座位：同一排从 seat 开始的 count 个连座（编号都从0开始）
+     */
+    record SeatAllocation(int sectionNo, int row, int seat, int count) {
+
+        /**
+         * 存到订单上的格式：区号:排:起始座:张数
+         */
+        public String encode() {
+            return sectionNo + ":" + row + ":" + seat + ":" + count;
+        }
+
+        public static SeatAllocation decode(String seats) {
+            if (seats == null || seats.isEmpty()) {
+                return null;
+            }
+            String[] parts = seats.split(":");
+            if (parts.length != 4) {
+                return null;
+            }
+            return new SeatAllocation(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        }
+    }
+
+    // ===== 管理端 =====
+    /**
+     * 初始化座位图（只能在开票前设置，座位总数必须等于演出库存）
+     */
+    Result<String> initSeatMap(Long eventId, List<SeatSectionDTO> sections);
+
+    // ===== 用户端 =====
+    Result<List<SeatSectionDTO>> getSeatMap(Long eventId);
+
+    /**
+     * 是否对号入座（设置了座位图）
+     */
+    boolean isSeated(Long eventId);
+
+    /**
+     * 分配 quantity 个连座，按区编号从前往后找（必须在订单事务内调用，行锁持有到事务结束）
+     * @return 没有足够的连座返回 null
+     */
+    SeatAllocation allocate(Long eventId, int quantity);
+
+    /**
+     * 释放订单上的座位（取消订单、超时取消、扣库存失败时在事务内调用），seats 为空时不处理
+     */
+    void release(Long eventId, String seats);
+
+    /**
+     * 演出删除时清理所有节点内存中的座位图
+     */
+    void evict(Long eventId);
+}
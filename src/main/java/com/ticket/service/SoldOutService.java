@@ -0,0 +1,25 @@
+package com.ticket.service;
+
+/**
+ * 演出售罄标记（每个节点本地一份，通过 Redis 发布/订阅在节点之间同步）
+ *
+ * 演出卖完后，后续的抢票请求在 Controller 里查一下本地标记就直接拒绝，
+ * 不再开启事务、不再执行注定影响0行的 UPDATE。
+ */
+public interface SoldOutService {
+
+    /**
+     * 本地判断演出是否已售罄（纯内存操作，微秒级）
+     */
+    boolean isSoldOut(Long eventId);
+
+    /**
+     * 标记售罄，并广播给其他节点
+     */
+    void markSoldOut(Long eventId);
+
+    /**
+     * 清除售罄标记（有库存还回来或管理员改了库存），并广播给其他节点
+     */
+    void clearSoldOut(Long eventId);
+}
@@ -0,0 +1,41 @@
+package com.ticket.service;
+
+import com.ticket.dto.StockReconcileReport;
+import com.ticket.entity.TicketOrder;
+
+import java.util.List;
+
+/**
+ * 库存流水 + 对账
+ *
+ * 每次库存变化都在同一个事务里追加一条流水（扣减为负、回补为正），
+ * 对账任务按检查点增量汇总流水，核对数据库库存和 Redis 闸门，连续多次出现同样的差额时自动修复
+ */
+public interface StockLedgerService {
+
+    String ORDER_CREATED = "ORDER_CREATED";
+    String ORDER_CANCELLED = "ORDER_CANCELLED";
+    String ORDER_EXPIRED = "ORDER_EXPIRED";
+    String EVENT_CREATED = "EVENT_CREATED";
+    String EVENT_UPDATED = "EVENT_UPDATED";
+
+    /**
+     * 记录下单扣减（需要在扣减库存的事务内调用），每个订单一条
+     */
+    void recordDeduct(List<TicketOrder> orders, String source);
+
+    /**
+     * 记录取消/超时回补（需要在回补库存的事务内调用），每个订单一条
+     */
+    void recordRestore(List<TicketOrder> orders, String source);
+
+    /**
+     * 记录管理员开票/改库存（delta 为新库存减去修改前的可售库存）
+     */
+    void recordAdjust(Long eventId, int delta, String source);
+
+    /**
+     * 立即执行一次对账（定时任务也调用这个方法，同一时刻本节点只跑一个）
+     */
+    StockReconcileReport reconcile();
+}
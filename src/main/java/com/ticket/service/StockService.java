@@ -0,0 +1,99 @@
+package com.ticket.service;
+
+import com.ticket.entity.Event;
+
+import java.util.List;
+
+/**
+ * 库存服务：统一封装 Redis 预扣（库存闸门）和数据库扣减/回补
+ *
+ * 抢票链路：先在 Redis 里原子预扣，预扣失败的请求直接拒绝，不再开启数据库事务；
+ * 只有预扣成功的请求才会走到 event 表的 UPDATE。
+ */
+public interface StockService {
+
+    /**
+     * 单场演出最多分桶数
+     */
+    int MAX_BUCKET_COUNT = 64;
+
+    /**
+     * Redis 预扣结果
+     */
+    enum ReserveResult {
+        RESERVED,  // 预扣成功，后续失败时需要调用 releaseReservation 回补
+        SOLD_OUT,  // 库存不足，直接拒绝
+        BYPASS     // 闸门未加载或 Redis 不可用，降级直接走数据库
+    }
+
+    /**
+     * 在 Redis 中原子预扣库存（不开事务、不访问数据库）
+     */
+    ReserveResult tryReserve(Long eventId, int quantity);
+
+    /**
+     * 回补 Redis 预扣的库存（订单创建失败、取消订单时调用）
+     */
+    void releaseReservation(Long eventId, int quantity);
+
+    /**
+     * 数据库扣减库存，需要在事务内调用
+     * @return true 扣减成功，false 库存不足
+     */
+    boolean deductStock(Long eventId, int quantity);
+
+    /**
+     * 数据库回补库存，需要在事务内调用
+     * @return true 回补成功，false 演出不存在
+     */
+    boolean restoreStock(Long eventId, int quantity);
+
+    /**
+     * 初始化/重置分桶库存：把 stock 平均拆到 bucketCount 个桶里（需要在事务内调用）
+     * bucketCount <= 1 时不分桶，库存只在 event.stock 上
+     */
+    void initBuckets(Long eventId, Integer bucketCount, Integer stock);
+
+    /**
+     * 把分桶演出的 stock 替换为各桶汇总后的实际可售库存（一次查询处理整个列表）
+     * 未分桶的演出保持 event.stock 不变
+     */
+    void fillAvailableStock(List<Event> events);
+
+    /**
+     * 当前实际可售库存（分桶演出为各桶之和），演出不存在返回0
+     */
+    int getAvailableStock(Long eventId);
+
+    /**
+     * 演出开票时把库存加载进 Redis 闸门（覆盖旧值）
+     */
+    void loadStock(Long eventId, Integer stock);
+
+    /**
+     * 演出下架/删除时移除 Redis 闸门，之后的请求降级走数据库
+     */
+    void evictStock(Long eventId);
+
+    /**
+     * 锁住演出库存行（分桶演出锁住全部桶）并返回当前实际可售库存，需要在事务内调用
+     * 管理员改库存、对账修复前使用，锁住之后其他扣减/回补要等本事务结束
+     * @return 可售库存，演出不存在返回 null
+     */
+    Integer lockAvailableStock(Long eventId);
+
+    /**
+     * 对账修复：按差额直接调整数据库库存（delta 可正可负），需要先调用 lockAvailableStock 锁住库存行
+     */
+    void repairStock(Long eventId, int delta);
+
+    /**
+     * Redis 闸门当前值，闸门未加载或 Redis 不可用返回 null
+     */
+    Integer getGateStock(Long eventId);
+
+    /**
+     * 对账修复：按差额调整 Redis 闸门（相对调整，不覆盖并发预扣），闸门不存在时不处理
+     */
+    void adjustGate(Long eventId, int delta);
+}
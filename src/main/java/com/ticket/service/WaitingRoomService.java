@@ -0,0 +1,32 @@
+package com.ticket.service;
+
+import com.ticket.common.Result;
+import com.ticket.dto.WaitingRoomStatus;
+
+/**
+ * 虚拟排队室：热门演出开抢时把瞬时涌入的用户变成有序队列，按固定速率放行
+ *
+ * 排队和轮询都不访问 MySQL；放行后发放短期有效的准入令牌，下单时校验
+ */
+public interface WaitingRoomService {
+
+    // ===== 管理端 =====
+    Result<String> open(Long eventId, Integer ratePerSecond);
+
+    Result<String> close(Long eventId);
+
+    // ===== 用户端 =====
+    /**
+     * 该演出是否开启了排队（读本地缓存，每秒刷新）
+     */
+    boolean isGated(Long eventId);
+
+    Result<WaitingRoomStatus> join(Long eventId, Long userId);
+
+    Result<WaitingRoomStatus> getStatus(Long eventId, Long userId);
+
+    /**
+     * 校验准入令牌
+     */
+    boolean verifyAdmissionToken(Long eventId, Long userId, String token);
+}
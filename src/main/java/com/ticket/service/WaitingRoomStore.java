@@ -0,0 +1,49 @@
+package com.ticket.service;
+
+import java.util.Map;
+
+/**
+ * 排队数据存储：多节点部署用 Redis（有序集合），单节点可用内存实现
+ * 通过 ticket.waiting-room.mode=redis|local 切换
+ *
+ * 排队模型：每个用户进入队列时领取一个递增序号，放行进度是一个"已放行到第几号"的水位线，
+ * 前面还有多少人 = 序号 - 水位线，查询是 O(1) 的，不需要对队列做排名计算
+ */
+public interface WaitingRoomStore {
+
+    /**
+     * 开启排队
+     * @param ratePerSecond 每秒放行人数
+     */
+    void open(Long eventId, int ratePerSecond);
+
+    /**
+     * 关闭排队（清理该演出的队列数据）
+     */
+    void close(Long eventId);
+
+    /**
+     * 所有开启排队的演出及其放行速率
+     */
+    Map<Long, Integer> listRooms();
+
+    /**
+     * 进入队列，重复进入返回原来的序号
+     */
+    long join(Long eventId, Long userId);
+
+    /**
+     * 用户的排队序号，未排队返回 null
+     */
+    Long getSequence(Long eventId, Long userId);
+
+    /**
+     * 当前放行水位线：序号小于等于它的用户已放行
+     */
+    long getAdmitted(Long eventId);
+
+    /**
+     * 推进放行水位线（不超过已发出的最大序号），多节点时由存储保证同一秒只推进一次
+     */
+    void advance(Long eventId, int count);
+}
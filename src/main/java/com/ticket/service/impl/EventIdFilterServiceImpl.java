@@ -0,0 +1,211 @@
+package com.ticket.service.impl;
+
+import com.ticket.dto.BloomFilterStats;
+import com.ticket.mapper.EventMapper;
+import com.ticket.service.EventIdFilterService;
+import com.ticket.util.BloomFilter;
+import com.ticket.util.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自增ID不按提交顺序出现：建过滤器时可能已经扫到 101，100 的事务却还没提交；新建演出的广播也可能丢。
+ * 所以过滤器只对"一定已经提交"的ID范围下结论：重建前先查出创建时间早于 settle-seconds 秒前的最大ID
+ * （这之前插入的行，事务早已结束，随后的全表扫描一定能读到），不超过它且过滤器里没有的ID才拒绝，
+ * 更大的ID一律放行交给负缓存兜底，新演出不会因为提交乱序或广播丢失被误拒。
+ * 重建期间新加的ID同时写进新旧两个过滤器。
+ */
+@Slf4j
+@Service
+public class EventIdFilterServiceImpl implements EventIdFilterService, MessageListener {
+
+    private static final String CHANNEL = "ticket:event:id-added";
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    @Value("${ticket.event.bloom.enabled:true}")
+    private boolean enabled;
+    @Value("${ticket.event.bloom.expected-insertions:1000000}")
+    private long expectedInsertions;
+    @Value("${ticket.event.bloom.fpp:0.001}")
+    private double fpp;
+    @Value("${ticket.event.bloom.settle-seconds:60}")
+    private long settleSeconds;
+
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 一个建好的过滤器、它一定覆盖到的ID上界和它里面的最大ID
+     */
+    private static final class Snapshot {
+        final BloomFilter filter;
+        // 不超过这个ID的演出在建过滤器时都已提交，过滤器里没有就是不存在
+        final long settledMaxId;
+        final AtomicLong maxKnownId = new AtomicLong();
+
+        Snapshot(BloomFilter filter, long settledMaxId) {
+            this.filter = filter;
+            this.settledMaxId = settledMaxId;
+        }
+
+        void add(long eventId) {
+            filter.put(eventId);
+            maxKnownId.accumulateAndGet(eventId, Math::max);
+        }
+    }
+
+    private volatile Snapshot current;
+    // 正在重建的过滤器，重建期间 add 同时写入
+    private volatile Snapshot building;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private volatile Date lastRebuildTime;
+    private volatile long lastRebuildMillis;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public boolean mightExist(Long eventId) {
+        if (eventId == null || eventId <= 0) {
+            return false;
+        }
+        Snapshot snapshot = current;
+        if (!enabled || snapshot == null
+                || eventId > snapshot.settledMaxId
+                || snapshot.filter.mightContain(eventId)) {
+            passed.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public void add(Long eventId) {
+        addLocal(eventId);
+        redisUtil.publish(CHANNEL, eventId.toString());
+    }
+
+    /**
+     * 接收其他节点（也包括自己）广播的新建演出ID
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            addLocal(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            log.warn("演出ID广播消息格式错误, body={}", body);
+        }
+    }
+
+    private void addLocal(long eventId) {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            snapshot.add(eventId);
+        }
+        Snapshot next = building;
+        if (next != null) {
+            next.add(eventId);
+        }
+    }
+
+    /**
+     * 定时重建：清掉已删除演出的ID，也补上丢失的广播
+     */
+    @Scheduled(fixedDelayString = "${ticket.event.bloom.rebuild-millis:3600000}",
+            initialDelayString = "${ticket.event.bloom.rebuild-millis:3600000}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        if (!rebuildLock.tryLock()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            // 实际演出数超过预计时按实际数量的 1.5 倍建，保证误判率不超过配置值
+            Long count = eventMapper.countByCondition(null, null);
+            long insertions = Math.max(expectedInsertions, count == null ? 0 : count + count / 2);
+            // 必须在扫描之前查：扫描开始时这些行都已提交，扫描一定能读到
+            Long settled = eventMapper.selectMaxIdCreatedBefore(
+                    new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(settleSeconds)));
+            Snapshot next = new Snapshot(BloomFilter.create(insertions, fpp), settled == null ? 0 : settled);
+            building = next;
+            long lastId = 0;
+            while (true) {
+                List<Long> ids = eventMapper.selectIdsAfter(lastId, LOAD_PAGE_SIZE);
+                for (Long id : ids) {
+                    next.add(id);
+                }
+                if (ids.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+            }
+            current = next;
+            lastRebuildTime = new Date();
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            log.info("演出ID布隆过滤器重建完成, 演出数={}, 位数={}, 哈希函数={}, 耗时={}ms",
+                    next.filter.insertions(), next.filter.bitSize(), next.filter.hashCount(), lastRebuildMillis);
+        } catch (Exception e) {
+            // 建失败时保留旧的过滤器（启动时失败则全部放行）
+            log.warn("演出ID布隆过滤器重建失败, error={}", e.getMessage());
+        } finally {
+            building = null;
+            rebuildLock.unlock();
+        }
+    }
+
+    @Override
+    public BloomFilterStats stats() {
+        BloomFilterStats stats = new BloomFilterStats();
+        Snapshot snapshot = current;
+        stats.setReady(enabled && snapshot != null);
+        stats.setConfiguredFpp(fpp);
+        stats.setRejected(rejected.sum());
+        stats.setPassed(passed.sum());
+        stats.setLastRebuildTime(lastRebuildTime);
+        stats.setLastRebuildMillis(lastRebuildMillis);
+        if (snapshot != null) {
+            stats.setBitSize(snapshot.filter.bitSize());
+            stats.setHashCount(snapshot.filter.hashCount());
+            stats.setInsertions(snapshot.filter.insertions());
+            stats.setMaxKnownId(snapshot.maxKnownId.get());
+            stats.setSettledMaxId(snapshot.settledMaxId);
+            stats.setEstimatedFpp(snapshot.filter.estimatedFpp());
+        }
+        return stats;
+    }
+}
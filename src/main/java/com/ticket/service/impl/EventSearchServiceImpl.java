@@ -0,0 +1,196 @@
+package com.ticket.service.impl;
+
+import com.ticket.dto.EventSearchStats;
+import com.ticket.entity.Event;
+import com.ticket.mapper.EventMapper;
+import com.ticket.service.EventSearchService;
+import com.ticket.util.EventSearchIndex;
+import com.ticket.util.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 重建期间的演出变更同时写进新旧两个索引；重建扫描数据库时只补索引里还没有的演出，
+ * 不会用扫描时读到的旧数据覆盖实时变更。
+ * 同一时刻只处理一个演出的刷新（读库 + 写索引），避免先读到的旧数据后写进索引。
+ */
+@Slf4j
+@Service
+public class EventSearchServiceImpl implements EventSearchService, MessageListener {
+
+    private static final String CHANNEL = "ticket:event:search-changed";
+    private static final int LOAD_PAGE_SIZE = 2_000;
+
+    @Value("${ticket.event.search.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private volatile EventSearchIndex current;
+    // 正在重建的索引，重建期间的变更同时写入
+    private volatile EventSearchIndex building;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private volatile Date lastRebuildTime;
+    private volatile long lastRebuildMillis;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public EventSearchIndex.Hits search(String keyword, String city, String category, int offset, int limit) {
+        EventSearchIndex index = current;
+        EventSearchIndex.Hits hits = enabled && index != null
+                ? index.search(keyword, city, category, offset, limit)
+                : null;
+        if (hits == null) {
+            fallbacks.increment();
+        } else {
+            searches.increment();
+        }
+        return hits;
+    }
+
+    @Override
+    public void refresh(Long eventId) {
+        refreshLocal(eventId);
+        redisUtil.publish(CHANNEL, eventId.toString());
+    }
+
+    /**
+     * 接收其他节点（也包括自己）广播的演出变更
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            refreshLocal(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            log.warn("演出搜索变更广播消息格式错误, body={}", body);
+        }
+    }
+
+    private void refreshLocal(long eventId) {
+        if (current == null && building == null) {
+            return;
+        }
+        refreshLock.lock();
+        try {
+            Event event = eventMapper.selectById(eventId);
+            apply(current, eventId, event);
+            apply(building, eventId, event);
+        } catch (Exception e) {
+            // 读库失败时这个演出的索引暂时是旧的，等下次重建修正
+            log.warn("演出搜索索引刷新失败, eventId={}, error={}", eventId, e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void apply(EventSearchIndex index, long eventId, Event event) {
+        if (index == null) {
+            return;
+        }
+        if (event == null) {
+            index.remove(eventId);
+        } else {
+            put(index, event, true);
+        }
+    }
+
+    private void put(EventSearchIndex index, Event event, boolean overwrite) {
+        long createdTime = event.getCreatedTime() == null ? 0 : event.getCreatedTime().getTime();
+        index.put(event.getId(), event.getName(), event.getVenue(), event.getDescription(),
+                event.getCity(), event.getCategory(), createdTime, overwrite);
+    }
+
+    /**
+     * 定时重建：清掉修改 / 删除留下的作废序号，也补上丢失的广播
+     */
+    @Scheduled(fixedDelayString = "${ticket.event.search.rebuild-millis:3600000}",
+            initialDelayString = "${ticket.event.search.rebuild-millis:3600000}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        if (!rebuildLock.tryLock()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            EventSearchIndex next = new EventSearchIndex();
+            building = next;
+            long lastId = 0;
+            while (true) {
+                List<Event> events = eventMapper.selectSearchFieldsAfter(lastId, LOAD_PAGE_SIZE);
+                for (Event event : events) {
+                    put(next, event, false);
+                }
+                if (events.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                lastId = events.get(events.size() - 1).getId();
+            }
+            next.trim();
+            current = next;
+            lastRebuildTime = new Date();
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            log.info("演出搜索索引重建完成, 演出数={}, 词数={}, posting字节数={}, 耗时={}ms",
+                    next.size(), next.termCount(), next.postingBytes(), lastRebuildMillis);
+        } catch (Exception e) {
+            // 建失败时保留旧的索引（启动时失败则搜索走 SQL）
+            log.warn("演出搜索索引重建失败, error={}", e.getMessage());
+        } finally {
+            building = null;
+            rebuildLock.unlock();
+        }
+    }
+
+    @Override
+    public EventSearchStats stats() {
+        EventSearchStats stats = new EventSearchStats();
+        EventSearchIndex index = current;
+        stats.setReady(enabled && index != null);
+        stats.setSearches(searches.sum());
+        stats.setFallbacks(fallbacks.sum());
+        stats.setLastRebuildTime(lastRebuildTime);
+        stats.setLastRebuildMillis(lastRebuildMillis);
+        if (index != null) {
+            stats.setEvents(index.size());
+            stats.setDeletedOrdinals(index.deletedOrdinals());
+            stats.setTerms(index.termCount());
+            stats.setPostingBytes(index.postingBytes());
+        }
+        return stats;
+    }
+}
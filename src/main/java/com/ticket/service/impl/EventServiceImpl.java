@@ -1,6 +1,7 @@
 package com.ticket.service.impl;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ticket.common.EventCategoryConstant;
 import com.ticket.common.Result;
 import com.ticket.dto.EventDTO;
@@ -8,16 +9,33 @@ import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
 import com.ticket.entity.Event;
 import com.ticket.mapper.EventMapper;
+import com.ticket.service.EventIdFilterService;
+import com.ticket.service.EventSearchService;
 import com.ticket.service.EventService;
+import com.ticket.service.SeatService;
+import com.ticket.service.StockLedgerService;
+import com.ticket.service.StockService;
 import com.ticket.util.AuditUtil;
+import com.ticket.util.CachedBody;
+import com.ticket.util.CountCache;
 import com.ticket.util.EventConvertor;
-import com.ticket.util.RedisUtil;
+import com.ticket.util.EventSearchIndex;
+import com.ticket.util.PageCursor;
+import com.ticket.util.TransactionUtil;
+import com.ticket.util.TwoLevelCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -25,55 +43,160 @@ public class EventServiceImpl implements EventService {
 
     private static final long CACHE_EXPIRE_MINUTES = 5; // 首页演出缓存过期时间：5分钟
     private static final long EVENT_DETAIL_CACHE_EXPIRE_MINUTES = 10; // 演出详情缓存过期时间：10分钟
+    private static final String EVENT_DETAIL_CACHE = "event:detail"; // 二级缓存命名空间
+    private static final String HOME_EVENTS_CACHE = "home:events";
 
     @Autowired
     private EventMapper eventMapper;
     @Autowired
     private EventConvertor eventConvertor;
     @Autowired
-    private RedisUtil redisUtil;
+    private StockService stockService;
+    @Autowired
+    private SeatService seatService;
+    @Autowired
+    private StockLedgerService stockLedgerService;
+    @Autowired
+    private TwoLevelCache twoLevelCache;
+    @Autowired
+    private EventIdFilterService eventIdFilterService;
+    @Autowired
+    private EventSearchService eventSearchService;
+    @Autowired
+    private CountCache countCache;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ticket.cache.body.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+    @Value("${ticket.event.batch.max-size:100}")
+    private int batchMaxSize;
 
     @Override
     public Result<EventDTO> getEventById(Long id) {
-        // 1. 构建缓存 Key：event:detail:123
-        String cacheKey = redisUtil.buildKey("event", "detail", id.toString());
-        
-        // 2. 先查 Redis 缓存
-        EventDTO cachedDTO = redisUtil.get(cacheKey, new TypeReference<EventDTO>() {});
-        if (cachedDTO != null) {
-            // 缓存命中，直接返回
-            return Result.success(cachedDTO);
+        // 布隆过滤器判定不存在的ID直接拒绝（防止遍历ID的请求穿透到 Redis 和数据库）
+        if (!eventIdFilterService.mightExist(id)) {
+            return Result.error("演出不存在");
         }
-        
-        // 3. 缓存未命中，查数据库
+        // 再查二级缓存（本地 → Redis），Key：event:detail:123；
+        // 未命中时同一个演出只有一个请求查数据库（Redis 10分钟过期，本地按配置的 TTL），不存在的ID记短期负缓存
+        EventDTO dto = twoLevelCache.getOrLoad(EVENT_DETAIL_CACHE, id.toString(), new TypeReference<EventDTO>() {},
+                EVENT_DETAIL_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES, () -> loadEventDetail(id));
+        if (dto == null) {
+            return Result.error("演出不存在");
+        }
+        return Result.success(dto);
+    }
+
+    @Override
+    public Result<List<EventDTO>> getEventsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Result.error("演出ID不能为空");
+        }
+        if (ids.size() > batchMaxSize) {
+            return Result.error("一次最多查询" + batchMaxSize + "个演出");
+        }
+        // 去重保序，布隆过滤器判定不存在的直接跳过
+        List<String> cacheIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(eventIdFilterService::mightExist)
+                .map(String::valueOf)
+                .toList();
+        // 和详情共用 event:detail 缓存：本地 → Redis 一次 MGET → 未命中的一次 IN 查询回源
+        Map<String, EventDTO> events = twoLevelCache.getOrLoadAll(EVENT_DETAIL_CACHE, cacheIds,
+                new TypeReference<EventDTO>() {}, EVENT_DETAIL_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES,
+                this::loadEventDetails);
+        return Result.success(new ArrayList<>(events.values()));
+    }
+
+    @Override
+    public CachedBody getEventBodyById(Long id) {
+        // 命中时直接返回字节；未命中走 getEventById（布隆过滤器 + 二级缓存 + 回源合并）再序列化一次
+        return twoLevelCache.getOrRenderBody(EVENT_DETAIL_CACHE, id.toString(), () -> renderBody(getEventById(id)));
+    }
+
+    @Override
+    public CachedBody getHomeEventsBody(String city) {
+        if (city == null || city.isEmpty()) {
+            city = "北京";
+        }
+        String homeCity = city;
+        return twoLevelCache.getOrRenderBody(HOME_EVENTS_CACHE, homeCity, () -> renderBody(getHomeEvents(homeCity)));
+    }
+
+    /**
+     * 序列化完整响应；错误结果（例如演出不存在）只用于本次响应，不缓存
+     */
+    private CachedBody renderBody(Result<?> result) {
+        return CachedBody.render(objectMapper, result, gzipMinBytes, result.getCode() == 200);
+    }
+
+    /**
+     * 回源：查数据库组装用户端演出详情，演出不存在返回 null
+     */
+    private EventDTO loadEventDetail(Long id) {
         Event event = eventMapper.selectById(id);
         if (event == null) {
-            return Result.error("演出不存在");
+            return null;
         }
-        
-        // 4. 转换为 DTO 并设置用户端库存信息
+        stockService.fillAvailableStock(Collections.singletonList(event));
+        return toUserDetail(event);
+    }
+
+    /**
+     * 批量回源：一次 IN 查询，返回 演出ID → 用户端演出详情，不存在的ID不在结果里
+     */
+    private Map<String, EventDTO> loadEventDetails(List<String> ids) {
+        List<Long> eventIds = ids.stream().map(Long::valueOf).toList();
+        List<Event> events = eventMapper.selectByIds(eventIds);
+        stockService.fillAvailableStock(events);
+        Map<String, EventDTO> result = new HashMap<>();
+        for (Event event : events) {
+            result.put(event.getId().toString(), toUserDetail(event));
+        }
+        return result;
+    }
+
+    private EventDTO toUserDetail(Event event) {
+        // 转换为 DTO 并设置用户端库存信息
         EventDTO dto = eventConvertor.toDTO(event);
         // 用户端：只返回是否有库存（布尔值），隐藏具体库存数字
         setUserSideStockInfo(dto, event);
 
         // 是否开票：根据 status 判断，例如 PUBLISHED=已开票
         dto.setIssued("PUBLISHED".equals(event.getStatus()));
-
-        // 5. 存入 Redis 缓存（10分钟过期）
-        redisUtil.set(cacheKey, dto, EVENT_DETAIL_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES);
-        
-        return Result.success(dto);
+        return dto;
     }
 
     @Override
     @Transactional
     public Result<String> createEvent(Event event, Long userId) {
+        Integer bucketCount = event.getBucketCount();
+        if (bucketCount != null && (bucketCount < 0 || bucketCount > StockService.MAX_BUCKET_COUNT)) {
+            return Result.error("库存分桶数必须在0到" + StockService.MAX_BUCKET_COUNT + "之间");
+        }
         try {
             // 替换直接设置createdBy的方式，使用工具类统一处理
             AuditUtil.setCreateAuditFields(event, userId);  // 需要改造AuditUtil支持传入userId
             eventMapper.insert(event);
+            // 分桶库存：创建时按 bucketCount 把库存拆到多行
+            stockService.initBuckets(event.getId(), event.getBucketCount(), event.getStock());
+            stockLedgerService.recordAdjust(event.getId(), event.getStock() == null ? 0 : event.getStock(),
+                    StockLedgerService.EVENT_CREATED);
+            // 提交后加入ID布隆过滤器和搜索索引，并清掉这个ID可能残留的负缓存和所在城市的首页缓存
+            Long eventId = event.getId();
+            TransactionUtil.afterCommit(() -> {
+                eventIdFilterService.add(eventId);
+                eventSearchService.refresh(eventId);
+            });
+            evictEventCaches(eventId, event.getCity());
+            // 开票的演出在事务提交后把库存加载进 Redis 闸门
+            syncStockGate(event.getId(), event);
             return Result.success("演出创建成功，演出ID: " + event.getId());
         } catch (Exception e) {
+            // 返回错误也要回滚，不能留下有库存没流水的演出
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return Result.error("演出创建失败: " + e.getMessage());
         }
     }
@@ -89,16 +212,33 @@ public class EventServiceImpl implements EventService {
             // TODO：还是去学一些关于权限管理的框架或者概念RBAC，可以自己用AOP实现一个小的权限管理框架
             // TODO: Satoken(比SpringSecurity简单配置一些)
             event.setId(id);
+            // 分桶数只在创建时指定，更新时沿用原值；管理员改了库存则按新库存重新分桶
+            event.setBucketCount(existingEvent.getBucketCount());
+            // 锁住库存行读取修改前的可售库存，改完后把差值记入库存流水
+            Integer stockBefore = stockService.lockAvailableStock(id);
+            // 对号入座的演出库存必须和座位图一致，只能通过重新设置座位图改座位数
+            if (seatService.isSeated(id) && !Objects.equals(event.getStock(), stockBefore)) {
+                return Result.error("对号入座的演出不能直接修改库存，请重新设置座位图");
+            }
+            stockService.initBuckets(id, existingEvent.getBucketCount(), event.getStock());
             // 替换直接设置updatedBy的方式，使用工具类统一处理
             AuditUtil.setUpdateAuditFields(event, userId);  // 改造AuditUtil支持传入userId
             eventMapper.update(event);
+            int stockAfter = event.getStock() == null ? 0 : event.getStock();
+            stockLedgerService.recordAdjust(id, stockAfter - (stockBefore == null ? 0 : stockBefore),
+                    StockLedgerService.EVENT_UPDATED);
             
-            // 更新成功后，删除缓存（下次查询会重新从数据库加载最新数据）
-            String cacheKey = redisUtil.buildKey("event", "detail", id.toString());
-            redisUtil.delete(cacheKey);
+            // 事务提交后删除缓存并通知所有节点（下次查询会重新从数据库加载最新数据）
+            evictEventCaches(id, existingEvent.getCity(), event.getCity());
+            // 名称、场馆、城市等可能变化，提交后刷新搜索索引
+            TransactionUtil.afterCommit(() -> eventSearchService.refresh(id));
+            // 库存或开票状态可能变化，同步 Redis 闸门
+            syncStockGate(id, event);
             
             return Result.success("演出更新成功");
         } catch (Exception e) {
+            // 返回错误前标记回滚：库存改了而流水没写进去正是对账要抓的差额，不能提交
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return Result.error("演出更新失败: " + e.getMessage());
         }
     }
@@ -114,8 +254,12 @@ public class EventServiceImpl implements EventService {
             eventMapper.deleteById(id);
             
             // 删除成功后，删除缓存
-            String cacheKey = redisUtil.buildKey("event", "detail", id.toString());
-            redisUtil.delete(cacheKey);
+            evictEventCaches(id, event.getCity());
+            TransactionUtil.afterCommit(() -> {
+                stockService.evictStock(id);
+                seatService.evict(id);
+                eventSearchService.refresh(id);
+            });
             
             return Result.success("演出删除成功");
         } catch (Exception e) {
@@ -123,6 +267,34 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    /**
+     * 事务提交后失效演出详情、所在城市的首页缓存和列表总数缓存（都会广播给其他节点）
+     */
+    private void evictEventCaches(Long id, String... cities) {
+        TransactionUtil.afterCommit(() -> {
+            twoLevelCache.evict(EVENT_DETAIL_CACHE, id.toString());
+            countCache.invalidate(CountCache.EVENTS);
+            for (String city : cities) {
+                if (city != null && !city.isEmpty()) {
+                    twoLevelCache.evict(HOME_EVENTS_CACHE, city);
+                }
+            }
+        });
+    }
+
+    /**
+     * 同步 Redis 库存闸门：已开票（PUBLISHED）的演出加载库存，其他状态移除闸门
+     * 在事务提交后执行，避免回滚后闸门里留下没落库的库存
+     */
+    private void syncStockGate(Long id, Event event) {
+        if ("PUBLISHED".equals(event.getStatus())) {
+            Integer stock = event.getStock();
+            TransactionUtil.afterCommit(() -> stockService.loadStock(id, stock));
+        } else {
+            TransactionUtil.afterCommit(() -> stockService.evictStock(id));
+        }
+    }
+
     private void validatePageParams(PageRequest pageRequest) {
         if (pageRequest.getPage() == null || pageRequest.getPage() < 1) {
             pageRequest.setPage(1);
@@ -135,6 +307,31 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    /**
+     * 按条件查询当前页（多查一行）：传了游标走 seek 查询（从上一页最后一行往后取），否则按页码 LIMIT offset, size
+     */
+    private List<Event> selectEventsByCondition(String city, String category, PageRequest pageRequest) {
+        if (!pageRequest.isCursorMode()) {
+            return eventMapper.selectByCondition(city, category, pageRequest.getOffset(), pageRequest.getFetchSize());
+        }
+        PageCursor cursor = PageCursor.decode(pageRequest.getCursor());
+        return eventMapper.selectByConditionAfter(city, category,
+                cursor == null ? null : cursor.getCreatedTime(),
+                cursor == null ? null : cursor.getId(),
+                pageRequest.getFetchSize());
+    }
+
+    /**
+     * 没有请求总数返回 null
+     */
+    private Long countEventsByCondition(String city, String category, PageRequest pageRequest) {
+        if (!pageRequest.isTotalRequested()) {
+            return null;
+        }
+        return countCache.count(CountCache.EVENTS, CountCache.key("condition", city, category),
+                () -> eventMapper.countByCondition(city, category));
+    }
+
     /**
      * 设置用户端库存信息：只返回是否有库存（布尔值），隐藏具体库存数字
      * @param dto EventDTO对象
@@ -151,15 +348,12 @@ public class EventServiceImpl implements EventService {
     public PageResult<EventDTO> getEventsByConditionAndPage(String city, String category, PageRequest pageRequest) {
         validatePageParams(pageRequest); // 复用分页参数验证
 
-        // 1. 查询符合条件的总条数
-        Long total = eventMapper.countByCondition(city, category);
-        // 2. 查询当前页的条件数据
-        List<Event> events = eventMapper.selectByCondition(
-                city,
-                category,
-                pageRequest.getOffset(),
-                pageRequest.getSize()
-        );
+        // 1. 查询当前页的条件数据（页码分页或游标分页），多查一行判断是否有下一页
+        List<Event> events = selectEventsByCondition(city, category, pageRequest);
+        boolean hasNext = PageResult.trimToSize(events, pageRequest.getSize());
+        // 2. 请求了总数才查，同一组条件短时间内走计数缓存
+        Long total = countEventsByCondition(city, category, pageRequest);
+        stockService.fillAvailableStock(events);
 
         // 转换为DTO并设置用户端库存信息（隐藏具体库存数字）
         List<EventDTO> dtoList = eventConvertor.toDTOList(events);
@@ -167,7 +361,8 @@ public class EventServiceImpl implements EventService {
             setUserSideStockInfo(dtoList.get(i), events.get(i));
         }
         
-        return new PageResult<>(dtoList, total, pageRequest);
+        return new PageResult<>(dtoList, total, pageRequest, hasNext,
+                PageCursor.next(pageRequest, events, hasNext, Event::getCreatedTime, Event::getId));
     }
 
     @Override
@@ -177,39 +372,47 @@ public class EventServiceImpl implements EventService {
             city = "北京";
         }
         
-        // 构建缓存 Key
-        String cacheKey = redisUtil.buildKey("home", "events", city);
-        
-        // 1. 先查 Redis 缓存
-        List<EventDTO> cachedList = redisUtil.get(cacheKey, new TypeReference<List<EventDTO>>() {});
-        if (cachedList != null) {
-            // 缓存命中，直接返回
-            return Result.success(cachedList);
-        }
-        
-        // 2. 缓存未命中，查数据库
+        // 先查二级缓存（本地 → Redis），Key：home:events:北京；未命中时同一个城市只有一个请求查数据库
+        String homeCity = city;
+        List<EventDTO> dtoList = twoLevelCache.getOrLoad(HOME_EVENTS_CACHE, homeCity,
+                new TypeReference<List<EventDTO>>() {}, CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES,
+                () -> loadHomeEvents(homeCity));
+        return Result.success(dtoList);
+    }
+
+    /**
+     * 回源：查数据库组装首页演出列表
+     */
+    private List<EventDTO> loadHomeEvents(String city) {
         List<String> categories = Arrays.asList(EventCategoryConstant.getHomeCategories());
         List<Event> events = eventMapper.selectByCityAndCategories(city, categories);
-        
+        stockService.fillAvailableStock(events);
+
         // 转换为DTO并设置用户端库存信息（隐藏具体库存数字）
         List<EventDTO> dtoList = eventConvertor.toDTOList(events);
         for (int i = 0; i < dtoList.size(); i++) {
             setUserSideStockInfo(dtoList.get(i), events.get(i));
         }
-        
-        // 3. 存入 Redis 缓存
-        redisUtil.set(cacheKey, dtoList, CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES);
-        
-        return Result.success(dtoList);
+        return dtoList;
     }
 
     @Override
     public PageResult<EventDTO> searchEventsByNameAndCondition(String keyword, String city, String category, PageRequest pageRequest) {
         validatePageParams(pageRequest);
 
+        // 优先走内存倒排索引（按相关度排序，总数由索引直接算出），当前页的演出详情走二级缓存批量读取
+        EventSearchIndex.Hits hits = eventSearchService.search(keyword, city, category,
+                pageRequest.getOffset(), pageRequest.getSize());
+        if (hits != null) {
+            List<String> ids = hits.getEventIds().stream().map(String::valueOf).toList();
+            Map<String, EventDTO> events = twoLevelCache.getOrLoadAll(EVENT_DETAIL_CACHE, ids,
+                    new TypeReference<EventDTO>() {}, EVENT_DETAIL_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES,
+                    this::loadEventDetails);
+            return new PageResult<>(new ArrayList<>(events.values()), hits.getTotal(), pageRequest);
+        }
+
+        // 索引没建好或关键词切不出词时退回 SQL（前后通配符的 LIKE 会全表扫描，只作兜底）
         // 1. 查询符合条件的总条数
-        // TODO：这个地方可能sql会比较慢，在数据量比较大的情况下，前后都有通配符会导致全表扫描查询，后面有时间可以看看怎么优化
-        // TODO：而且total其实直接从下面的数据获取list的大小就好了，这样会导致重复查询
         Long total = eventMapper.countByNameAndCondition(keyword, city, category);
         
         // 2. 查询当前页的条件数据
@@ -220,6 +423,7 @@ public class EventServiceImpl implements EventService {
                 pageRequest.getOffset(),
                 pageRequest.getSize()
         );
+        stockService.fillAvailableStock(events);
 
         // 转换为DTO并设置用户端库存信息（隐藏具体库存数字）
         List<EventDTO> dtoList = eventConvertor.toDTOList(events);
@@ -236,6 +440,8 @@ public class EventServiceImpl implements EventService {
         if (event == null) {
             return Result.error("演出不存在");
         }
+        // 分桶演出：返回各桶汇总后的实际库存
+        stockService.fillAvailableStock(Collections.singletonList(event));
         EventDTO dto = eventConvertor.toDTO(event);
         // 管理端：保留完整库存信息，不隐藏
         dto.setHasStock(event.getStock() != null && event.getStock() > 0);
@@ -248,15 +454,12 @@ public class EventServiceImpl implements EventService {
     public PageResult<EventDTO> getEventsByConditionAndPageForAdmin(String city, String category, PageRequest pageRequest) {
         validatePageParams(pageRequest);
 
-        // 1. 查询符合条件的总条数
-        Long total = eventMapper.countByCondition(city, category);
-        // 2. 查询当前页的条件数据
-        List<Event> events = eventMapper.selectByCondition(
-                city,
-                category,
-                pageRequest.getOffset(),
-                pageRequest.getSize()
-        );
+        // 1. 查询当前页的条件数据（页码分页或游标分页），多查一行判断是否有下一页
+        List<Event> events = selectEventsByCondition(city, category, pageRequest);
+        boolean hasNext = PageResult.trimToSize(events, pageRequest.getSize());
+        // 2. 请求了总数才查，同一组条件短时间内走计数缓存
+        Long total = countEventsByCondition(city, category, pageRequest);
+        stockService.fillAvailableStock(events);
 
         // 转换为DTO（管理端：保留完整库存信息，不隐藏）
         List<EventDTO> dtoList = eventConvertor.toDTOList(events);
@@ -269,7 +472,8 @@ public class EventServiceImpl implements EventService {
             // stock 字段保留，不设置为 null
         }
         
-        return new PageResult<>(dtoList, total, pageRequest);
+        return new PageResult<>(dtoList, total, pageRequest, hasNext,
+                PageCursor.next(pageRequest, events, hasNext, Event::getCreatedTime, Event::getId));
     }
 }
 
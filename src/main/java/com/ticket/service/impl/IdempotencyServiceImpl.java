@@ -0,0 +1,205 @@
+package com.ticket.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.ticket.common.Result;
+import com.ticket.service.IdempotencyService;
+import com.ticket.util.RedisUtil;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    private static final int CLAIM_ATTEMPTS = 3;
+
+    @Value("${ticket.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+    @Value("${ticket.idempotency.processing-ttl-seconds:30}")
+    private long processingTtlSeconds;
+    @Value("${ticket.idempotency.wait-millis:5000}")
+    private long waitMillis;
+    @Value("${ticket.idempotency.local-max-entries:10000}")
+    private int localMaxEntries;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    // 本节点正在执行的请求：同一个 Key 的并发重复请求直接等它的结果
+    private final Map<String, CompletableFuture<Result<String>>> inFlight = new ConcurrentHashMap<>();
+
+    // Redis 不可用时的本地结果缓存：按访问顺序淘汰，超过上限丢弃最久未用的
+    // 用 ReentrantLock 而不是 synchronized：虚拟线程在 synchronized 上竞争会钉住载体线程
+    private final ReentrantLock localResultsLock = new ReentrantLock();
+    private final Map<String, StoredResult> localResults = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredResult> eldest) {
+            return size() > localMaxEntries;
+        }
+    };
+
+    /**
+     * 保存的结果：completed=false 表示其他节点正在处理
+     */
+    @Data
+    static class StoredResult {
+        private String fingerprint;
+        private boolean completed;
+        private Result<String> result;
+        private long expiresAt;
+    }
+
+    @Override
+    public Result<String> execute(String scope, Long userId, String key, String fingerprint,
+                                  Supplier<Result<String>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return Result.error("Idempotency-Key 长度不能超过" + MAX_KEY_LENGTH);
+        }
+        String id = redisUtil.buildKey("idempotency", scope, userId.toString(), key);
+
+        CompletableFuture<Result<String>> mine = new CompletableFuture<>();
+        CompletableFuture<Result<String>> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Result<String> result = executeOnce(id, fingerprint, action);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private Result<String> executeOnce(String id, String fingerprint, Supplier<Result<String>> action) {
+        StoredResult existing = lookup(id);
+        if (existing != null) {
+            return replay(id, existing, fingerprint);
+        }
+
+        // 跨节点占位：拿到占位的节点才执行
+        StoredResult processing = new StoredResult();
+        processing.setFingerprint(fingerprint);
+        Boolean claimed = null;
+        for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+            claimed = redisUtil.setIfAbsent(id, processing, processingTtlSeconds, TimeUnit.SECONDS);
+            if (!Boolean.FALSE.equals(claimed)) {
+                break;
+            }
+            existing = redisUtil.get(id, new TypeReference<StoredResult>() {});
+            if (existing != null) {
+                return replay(id, existing, fingerprint);
+            }
+            // 占位没抢到又读不到：对方刚释放、刚过期或者读失败了，重新抢占位，不能不占位就执行
+        }
+        if (Boolean.FALSE.equals(claimed)) {
+            return Result.error("请求处理中，请稍后重试");
+        }
+        // claimed 为 null 说明 Redis 不可用，只靠本节点去重
+
+        Result<String> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            // 执行失败（事务已回滚），释放占位，允许客户端重试
+            if (Boolean.TRUE.equals(claimed)) {
+                redisUtil.delete(id);
+            }
+            throw e;
+        }
+
+        StoredResult completed = new StoredResult();
+        completed.setFingerprint(fingerprint);
+        completed.setCompleted(true);
+        completed.setResult(result);
+        completed.setExpiresAt(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds));
+        redisUtil.set(id, completed, ttlSeconds, TimeUnit.SECONDS);
+        localResultsLock.lock();
+        try {
+            localResults.put(id, completed);
+        } finally {
+            localResultsLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 重复请求：参数一致时返回第一次的结果，其他节点还在处理就等它完成
+     */
+    private Result<String> replay(String id, StoredResult existing, String fingerprint) {
+        if (existing.getFingerprint() != null && !existing.getFingerprint().equals(fingerprint)) {
+            return Result.error("Idempotency-Key 已被其他请求使用");
+        }
+        if (existing.isCompleted()) {
+            return existing.getResult();
+        }
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            StoredResult current = redisUtil.get(id, new TypeReference<StoredResult>() {});
+            if (current == null) {
+                // 占位已释放（对方执行失败），让客户端重试
+                break;
+            }
+            if (current.isCompleted()) {
+                return current.getResult();
+            }
+        }
+        return Result.error("请求处理中，请稍后重试");
+    }
+
+    private StoredResult lookup(String id) {
+        localResultsLock.lock();
+        try {
+            StoredResult local = localResults.get(id);
+            if (local != null) {
+                if (local.getExpiresAt() > System.currentTimeMillis()) {
+                    return local;
+                }
+                localResults.remove(id);
+            }
+        } finally {
+            localResultsLock.unlock();
+        }
+        return redisUtil.get(id, new TypeReference<StoredResult>() {});
+    }
+
+    private Result<String> await(CompletableFuture<Result<String>> running) {
+        try {
+            return running.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return Result.error("请求处理中，请稍后重试");
+        } catch (ExecutionException e) {
+            return Result.error("请求处理失败，请重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.error("请求处理中，请稍后重试");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.ticket.service.impl;
+
+import com.ticket.service.PurchaseQuotaStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单节点限购计数：演出ID -> (用户ID -> 已购数量)，检查和累加在 compute 里原子完成
+ */
+@Component
+@ConditionalOnProperty(name = "ticket.order.quota.mode", havingValue = "local", matchIfMissing = true)
+public class LocalPurchaseQuotaStore implements PurchaseQuotaStore {
+
+    private final Map<Long, Map<Long, Integer>> counts = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(Long eventId, Long userId, int quantity, int limit) {
+        boolean[] acquired = new boolean[1];
+        counts.computeIfAbsent(eventId, id -> new ConcurrentHashMap<>()).compute(userId, (id, used) -> {
+            int current = used == null ? 0 : used;
+            if (current + quantity > limit) {
+                return used;
+            }
+            acquired[0] = true;
+            return current + quantity;
+        });
+        return acquired[0];
+    }
+
+    @Override
+    public void release(Long eventId, Long userId, int quantity) {
+        Map<Long, Integer> eventCounts = counts.get(eventId);
+        if (eventCounts == null) {
+            return;
+        }
+        // 返回 null 时 compute 会删除该用户的计数
+        eventCounts.computeIfPresent(userId, (id, used) -> used - quantity > 0 ? used - quantity : null);
+    }
+
+    @Override
+    public void raise(Long eventId, Map<Long, Integer> eventCounts) {
+        Map<Long, Integer> current = counts.computeIfAbsent(eventId, id -> new ConcurrentHashMap<>());
+        eventCounts.forEach((userId, quantity) -> current.merge(userId, quantity, Math::max));
+    }
+
+    /**
+     * 计数在内存里，每次启动都是空的，都要校准（单节点，不存在其他节点）
+     */
+    @Override
+    public boolean tryBeginReconcile() {
+        return true;
+    }
+
+    @Override
+    public void finishReconcile(boolean success) {
+        // 没有需要记录的状态
+    }
+}
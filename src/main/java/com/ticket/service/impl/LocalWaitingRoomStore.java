@@ -0,0 +1,74 @@
+package com.ticket.service.impl;
+
+import com.ticket.service.WaitingRoomStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单节点排队存储：全部在内存里
+ */
+@Component
+@ConditionalOnProperty(name = "ticket.waiting-room.mode", havingValue = "local", matchIfMissing = true)
+public class LocalWaitingRoomStore implements WaitingRoomStore {
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    private static final class Room {
+        volatile int ratePerSecond;
+        final AtomicLong sequence = new AtomicLong();
+        final AtomicLong admitted = new AtomicLong();
+        final Map<Long, Long> userSequences = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void open(Long eventId, int ratePerSecond) {
+        rooms.computeIfAbsent(eventId, id -> new Room()).ratePerSecond = ratePerSecond;
+    }
+
+    @Override
+    public void close(Long eventId) {
+        rooms.remove(eventId);
+    }
+
+    @Override
+    public Map<Long, Integer> listRooms() {
+        Map<Long, Integer> result = new HashMap<>();
+        rooms.forEach((eventId, room) -> result.put(eventId, room.ratePerSecond));
+        return result;
+    }
+
+    @Override
+    public long join(Long eventId, Long userId) {
+        Room room = rooms.get(eventId);
+        if (room == null) {
+            return 0;
+        }
+        return room.userSequences.computeIfAbsent(userId, id -> room.sequence.incrementAndGet());
+    }
+
+    @Override
+    public Long getSequence(Long eventId, Long userId) {
+        Room room = rooms.get(eventId);
+        return room == null ? null : room.userSequences.get(userId);
+    }
+
+    @Override
+    public long getAdmitted(Long eventId) {
+        Room room = rooms.get(eventId);
+        return room == null ? 0 : room.admitted.get();
+    }
+
+    @Override
+    public void advance(Long eventId, int count) {
+        Room room = rooms.get(eventId);
+        if (room == null) {
+            return;
+        }
+        room.admitted.getAndUpdate(current -> Math.min(current + count, room.sequence.get()));
+    }
+}
@@ -0,0 +1,136 @@
+package com.ticket.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ticket.service.OrderAdmissionService;
+import com.ticket.service.StockService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 准入控制实现：全部基于 CAS，不加锁，单机即可工作（不依赖 Redis）
+ *
+ * 令牌桶采用 GCRA（通用信元速率算法）：每个桶只有一个 AtomicLong，记录"理论到达时间"，
+ * 放行一个请求就把它往后推一个发放间隔，一次 CAS 完成判断和扣令牌。
+ * 不同演出的桶互相独立，天然分散了竞争。
+ * 桶放在有容量上限、闲置过期的 Caffeine 里：演出ID来自客户端，不存在的ID由调用方先用布隆过滤器挡掉，
+ * 误判漏进来的也不会让桶无限增长。
+ */
+@Service
+public class OrderAdmissionServiceImpl implements OrderAdmissionService {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${ticket.order.admission.enabled:true}")
+    private boolean enabled;
+    @Value("${ticket.order.admission.max-concurrency:200}")
+    private int maxConcurrency;
+    @Value("${ticket.order.admission.rate-per-stock:2.0}")
+    private double ratePerStock;
+    @Value("${ticket.order.admission.min-rate:5}")
+    private double minRate;
+    @Value("${ticket.order.admission.max-rate:2000}")
+    private double maxRate;
+    @Value("${ticket.order.admission.burst-seconds:0.2}")
+    private double burstSeconds;
+    @Value("${ticket.order.admission.stock-refresh-millis:1000}")
+    private long stockRefreshMillis;
+    @Value("${ticket.order.admission.max-events:10000}")
+    private long maxEvents;
+    @Value("${ticket.order.admission.idle-seconds:600}")
+    private long idleSeconds;
+
+    @Autowired
+    private StockService stockService;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Cache<Long, TokenBucket> buckets;
+
+    @PostConstruct
+    public void init() {
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxEvents)
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public Admission tryAcquire(Long eventId) {
+        if (!enabled) {
+            return Admission.noOp();
+        }
+        // 1. 演出令牌桶
+        TokenBucket bucket = buckets.get(eventId, id -> new TokenBucket());
+        bucket.refreshRateIfStale(eventId);
+        long waitNanos = bucket.tryTake();
+        if (waitNanos > 0) {
+            return Admission.rejected(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+        // 2. 全局并发上限
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxConcurrency) {
+                return Admission.rejected(1000);
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return Admission.admitted(inFlight::decrementAndGet);
+    }
+
+    /**
+     * 单场演出的令牌桶（GCRA）
+     */
+    private final class TokenBucket {
+        // 理论到达时间（纳秒）：下一个请求"按速率"应该到达的时间
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        private final AtomicLong lastRefresh = new AtomicLong();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long intervalNanos = (long) (NANOS_PER_SECOND / maxRate);
+
+        /**
+         * 尝试取一个令牌
+         * @return 0 表示放行，否则为建议等待的纳秒数
+         */
+        long tryTake() {
+            long interval = intervalNanos;
+            long tolerance = Math.max(interval, (long) (burstSeconds * NANOS_PER_SECOND));
+            while (true) {
+                long now = System.nanoTime();
+                long tat = theoreticalArrival.get();
+                long newTat = Math.max(tat, now) + interval;
+                long allowAt = newTat - tolerance;
+                if (allowAt > now) {
+                    return allowAt - now;
+                }
+                if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * 按剩余库存重新计算发放速率；过期后只由一个线程去刷新，其他线程继续用旧速率
+         */
+        void refreshRateIfStale(Long eventId) {
+            long now = System.currentTimeMillis();
+            if (now - lastRefresh.get() < stockRefreshMillis || !refreshing.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int remaining = stockService.getAvailableStock(eventId);
+                double rate = Math.min(maxRate, Math.max(minRate, remaining * ratePerStock));
+                intervalNanos = (long) (NANOS_PER_SECOND / rate);
+                lastRefresh.set(now);
+            } finally {
+                refreshing.set(false);
+            }
+        }
+    }
+}
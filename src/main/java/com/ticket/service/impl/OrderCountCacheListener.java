@@ -0,0 +1,29 @@
+package com.ticket.service.impl;
+
+import com.ticket.dto.OrderChangeEvent;
+import com.ticket.service.OrderChangeListener;
+import com.ticket.util.CountCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 订单变更后失效订单列表的总数缓存
+ *
+ * 所有订单写入（下单、取消、超时关闭、修改、删除）都会在同一事务里写发件箱，
+ * 所以挂在发件箱投递上就不会漏；一批事件只失效一次，下单高峰时不会每单广播一次。
+ */
+@Component
+public class OrderCountCacheListener implements OrderChangeListener {
+
+    @Autowired
+    private CountCache countCache;
+
+    @Override
+    public void onOrderChanged(List<OrderChangeEvent> events) {
+        if (!events.isEmpty()) {
+            countCache.invalidate(CountCache.ORDERS);
+        }
+    }
+}
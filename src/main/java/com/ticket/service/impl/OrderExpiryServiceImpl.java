@@ -0,0 +1,193 @@
+package com.ticket.service.impl;
+
+import com.ticket.dto.OrderChangeEvent;
+import com.ticket.entity.TicketOrder;
+import com.ticket.mapper.TicketOrderMapper;
+import com.ticket.service.OrderExpiryService;
+import com.ticket.service.OrderOutboxService;
+import com.ticket.service.PurchaseQuotaService;
+import com.ticket.service.SeatService;
+import com.ticket.service.StockLedgerService;
+import com.ticket.service.StockService;
+import com.ticket.util.TimingWheel;
+import com.ticket.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 待支付订单超时取消
+ *
+ * 启动时按主键游标加载所有 PENDING 订单，之后新订单提交后登记进来；到期的订单放在时间轮里，
+ * 定时任务每格推进一次，把到期订单按批取消：一批一个事务，同一场演出的库存合并成一次回补。
+ */
+@Slf4j
+@Service
+public class OrderExpiryServiceImpl implements OrderExpiryService {
+
+    private static final int WHEEL_SIZE = 60;        // 每层60格
+    private static final int LOAD_PAGE_SIZE = 1000;  // 启动加载时每页条数
+    private static final long RETRY_DELAY_MILLIS = 60_000; // 取消失败的批次1分钟后重试
+
+    @Value("${ticket.order.expiry.enabled:true}")
+    private boolean enabled;
+    @Value("${ticket.order.expiry.timeout-minutes:15}")
+    private long timeoutMinutes;
+    @Value("${ticket.order.expiry.tick-millis:1000}")
+    private long tickMillis;
+    @Value("${ticket.order.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private TicketOrderMapper ticketOrderMapper;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private PurchaseQuotaService purchaseQuotaService;
+    @Autowired
+    private SeatService seatService;
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+    @Autowired
+    private StockLedgerService stockLedgerService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 时间轮只由定时任务线程操作；请求线程登记的订单先放进这个队列
+    private final Queue<PendingOrder> inbox = new ConcurrentLinkedQueue<>();
+    private TimingWheel<Long> wheel;
+
+    private record PendingOrder(Long orderId, long deadline) {
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+        loadPendingOrders();
+    }
+
+    @Override
+    public void schedule(Long orderId) {
+        if (!enabled || orderId == null) {
+            return;
+        }
+        inbox.offer(new PendingOrder(orderId, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes)));
+    }
+
+    /**
+     * 推进时间轮，取消到期的订单
+     */
+    @Scheduled(fixedDelayString = "${ticket.order.expiry.tick-millis:1000}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> expired = new ArrayList<>();
+        PendingOrder pending;
+        while ((pending = inbox.poll()) != null) {
+            if (!wheel.add(pending.orderId(), pending.deadline())) {
+                expired.add(pending.orderId());
+            }
+        }
+        wheel.advance(System.currentTimeMillis(), expired::add);
+
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            List<Long> batch = expired.subList(from, Math.min(from + batchSize, expired.size()));
+            try {
+                Integer cancelled = transactionTemplate.execute(status -> cancelExpired(batch));
+                if (cancelled != null && cancelled > 0) {
+                    log.info("超时取消待支付订单 {} 个", cancelled);
+                }
+            } catch (Exception e) {
+                log.warn("超时取消订单失败，稍后重试, batchSize={}, error={}", batch.size(), e.getMessage());
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+                batch.forEach(orderId -> inbox.offer(new PendingOrder(orderId, retryAt)));
+            }
+        }
+    }
+
+    /**
+     * 事务内执行：锁住仍是 PENDING 的订单（已支付/已取消的自然被过滤掉），批量改状态，按演出合并回补库存
+     */
+    private int cancelExpired(List<Long> orderIds) {
+        List<TicketOrder> orders = ticketOrderMapper.selectPendingByIdsForUpdate(orderIds);
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(orders.size());
+        List<TicketOrder> released = new ArrayList<>(orders);
+        // 按演出ID排序回补，和其他事务保持一致的加锁顺序
+        Map<Long, Integer> quantityByEvent = new TreeMap<>();
+        Map<Long, List<String>> seatsByEvent = new HashMap<>();
+        for (TicketOrder order : orders) {
+            ids.add(order.getId());
+            quantityByEvent.merge(order.getEventId(), order.getQuantity(), Integer::sum);
+            if (order.getSeats() != null) {
+                seatsByEvent.computeIfAbsent(order.getEventId(), k -> new ArrayList<>()).add(order.getSeats());
+            }
+        }
+        // updatedBy 为空表示系统自动取消
+        int cancelled = ticketOrderMapper.cancelPendingByIds(ids, null);
+        orders.forEach(order -> order.setStatus("CANCELLED"));
+        orderOutboxService.recordAll(orders, OrderChangeEvent.EXPIRED);
+        stockLedgerService.recordRestore(orders, StockLedgerService.ORDER_EXPIRED);
+        // 提交后归还限购额度
+        TransactionUtil.afterCommit(() -> released.forEach(order ->
+                purchaseQuotaService.release(order.getEventId(), order.getUserId(), order.getQuantity())));
+
+        quantityByEvent.forEach((eventId, quantity) -> {
+            // 座位在事务内释放，和下单一样先锁座位区再锁库存
+            seatsByEvent.getOrDefault(eventId, List.of()).forEach(seats -> seatService.release(eventId, seats));
+            if (!stockService.restoreStock(eventId, quantity)) {
+                // 演出已被删除，没有库存可回补
+                log.warn("超时取消回补库存失败，演出不存在, eventId={}, quantity={}", eventId, quantity);
+                return;
+            }
+            TransactionUtil.afterCommit(() -> stockService.releaseReservation(eventId, quantity));
+        });
+        return cancelled;
+    }
+
+    /**
+     * 按主键游标分页加载所有待支付订单（走 status + id 索引，不做全表扫描）
+     */
+    private void loadPendingOrders() {
+        long timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        long now = System.currentTimeMillis();
+        long lastId = 0;
+        int loaded = 0;
+        try {
+            while (true) {
+                List<TicketOrder> page = ticketOrderMapper.selectPendingAfterId(lastId, LOAD_PAGE_SIZE);
+                for (TicketOrder order : page) {
+                    long createdTime = order.getCreatedTime() == null ? now : order.getCreatedTime().getTime();
+                    inbox.offer(new PendingOrder(order.getId(), createdTime + timeoutMillis));
+                    lastId = order.getId();
+                }
+                loaded += page.size();
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+            }
+            log.info("加载待支付订单 {} 个", loaded);
+        } catch (Exception e) {
+            log.error("加载待支付订单失败，已加载 {} 个", loaded, e);
+        }
+    }
+}
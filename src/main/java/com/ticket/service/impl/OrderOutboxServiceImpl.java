@@ -0,0 +1,165 @@
+package com.ticket.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ticket.dto.OrderChangeEvent;
+import com.ticket.entity.OrderOutbox;
+import com.ticket.entity.TicketOrder;
+import com.ticket.exception.BusinessException;
+import com.ticket.mapper.OrderOutboxMapper;
+import com.ticket.service.OrderChangeListener;
+import com.ticket.service.OrderOutboxService;
+import com.ticket.util.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 发件箱写入 + 投递
+ *
+ * 投递：按发件箱ID顺序取一批，先交给所有监听器，再写入 Redis Stream，全部成功才删除这批记录；
+ * 任何一步失败整批留在表里下次重投（至少一次）。多节点时用 Redis 锁选出一个节点投递，
+ * 单线程按ID顺序投递保证同一订单的事件有序。
+ */
+@Slf4j
+@Service
+public class OrderOutboxServiceImpl implements OrderOutboxService {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String STREAM_KEY = "ticket:order:changes";
+    private static final String RELAY_LOCK_KEY = "ticket:order:outbox-relay";
+    private static final int MAX_ROUNDS_PER_TICK = 20;
+
+    /**
+     * 投递锁：自己持有则续期，否则尝试抢占
+     */
+    private static final RedisScript<Long> RELAY_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end " +
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end " +
+            "return 0",
+            Long.class);
+
+    @Value("${ticket.outbox.batch-size:200}")
+    private int batchSize;
+    @Value("${ticket.outbox.stream-enabled:true}")
+    private boolean streamEnabled;
+    @Value("${ticket.outbox.stream-max-len:100000}")
+    private long streamMaxLen;
+    @Value("${ticket.outbox.lock-millis:10000}")
+    private long lockMillis;
+
+    @Autowired
+    private OrderOutboxMapper orderOutboxMapper;
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired(required = false)
+    private List<OrderChangeListener> listeners = Collections.emptyList();
+
+    private final String nodeToken = UUID.randomUUID().toString();
+
+    @Override
+    public void record(TicketOrder order, String eventType) {
+        recordAll(Collections.singletonList(order), eventType);
+    }
+
+    @Override
+    public void recordAll(List<TicketOrder> orders, String eventType) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<OrderOutbox> records = new ArrayList<>(orders.size());
+        for (TicketOrder order : orders) {
+            OrderOutbox record = new OrderOutbox();
+            record.setOrderId(order.getId());
+            record.setEventType(eventType);
+            try {
+                record.setPayload(OBJECT_MAPPER.writeValueAsString(order));
+            } catch (Exception e) {
+                // 抛异常让订单变更一起回滚，保证变更和发件箱记录同时存在
+                throw new BusinessException("订单变更记录失败");
+            }
+            records.add(record);
+        }
+        orderOutboxMapper.insertBatch(records);
+    }
+
+    /**
+     * 定时投递发件箱记录
+     */
+    @Scheduled(fixedDelayString = "${ticket.outbox.relay-millis:500}")
+    public void relay() {
+        Long locked = redisUtil.execute(RELAY_LOCK_SCRIPT, Collections.singletonList(RELAY_LOCK_KEY),
+                nodeToken, String.valueOf(lockMillis));
+        if (locked != null && locked == 0) {
+            // 其他节点正在投递；Redis 不可用（null）时本节点照常投递
+            return;
+        }
+        for (int round = 0; round < MAX_ROUNDS_PER_TICK; round++) {
+            List<OrderOutbox> batch = orderOutboxMapper.selectBatch(batchSize);
+            if (batch.isEmpty() || !deliver(batch)) {
+                return;
+            }
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (OrderOutbox record : batch) {
+                ids.add(record.getId());
+            }
+            orderOutboxMapper.deleteByIds(ids);
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private boolean deliver(List<OrderOutbox> batch) {
+        List<OrderChangeEvent> events = new ArrayList<>(batch.size());
+        List<Map<String, String>> streamRecords = new ArrayList<>(batch.size());
+        for (OrderOutbox record : batch) {
+            OrderChangeEvent event = new OrderChangeEvent();
+            event.setOutboxId(record.getId());
+            event.setOrderId(record.getOrderId());
+            event.setEventType(record.getEventType());
+            event.setOccurredTime(record.getCreatedTime());
+            try {
+                event.setOrder(OBJECT_MAPPER.readValue(record.getPayload(), TicketOrder.class));
+            } catch (Exception e) {
+                log.warn("发件箱记录解析失败, outboxId={}, error={}", record.getId(), e.getMessage());
+            }
+            events.add(event);
+
+            Map<String, String> fields = new HashMap<>();
+            fields.put("outboxId", record.getId().toString());
+            fields.put("orderId", record.getOrderId().toString());
+            fields.put("eventType", record.getEventType());
+            fields.put("payload", record.getPayload());
+            if (record.getCreatedTime() != null) {
+                fields.put("occurredTime", String.valueOf(record.getCreatedTime().getTime()));
+            }
+            streamRecords.add(fields);
+        }
+
+        for (OrderChangeListener listener : listeners) {
+            try {
+                listener.onOrderChanged(events);
+            } catch (Exception e) {
+                log.error("订单变更监听器处理失败，稍后重投, listener={}, batchSize={}",
+                        listener.getClass().getSimpleName(), events.size(), e);
+                return false;
+            }
+        }
+        if (streamEnabled && !redisUtil.streamAddAll(STREAM_KEY, streamRecords, streamMaxLen)) {
+            return false;
+        }
+        return true;
+    }
+}
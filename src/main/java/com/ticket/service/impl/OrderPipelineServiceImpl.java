@@ -0,0 +1,433 @@
+package com.ticket.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.ticket.dto.OrderChangeEvent;
+import com.ticket.dto.OrderRequestStatus;
+import com.ticket.entity.Event;
+import com.ticket.entity.TicketOrder;
+import com.ticket.mapper.EventMapper;
+import com.ticket.mapper.TicketOrderMapper;
+import com.ticket.service.OrderExpiryService;
+import com.ticket.service.OrderOutboxService;
+import com.ticket.service.OrderPipelineService;
+import com.ticket.service.PurchaseQuotaService;
+import com.ticket.service.SeatService;
+import com.ticket.service.StockLedgerService;
+import com.ticket.service.StockService;
+import com.ticket.util.IdGenerator;
+import com.ticket.util.RedisUtil;
+import com.ticket.util.ThreadFactories;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 队列在内存里，节点崩溃时队列里的命令会丢：每条命令入队前先登记到 Redis（按节点分一个 Hash），
+ * 处理完写出最终状态后删除。节点重启时先扫一遍本节点留下的登记：订单已落库的补成下单成功，
+ * 没落库的判为失败并回补 Redis 预扣和限购额度，客户端轮询不会一直停在排队中。
+ * 登记按 ticket.id.node-id 区分节点，这个值本来就要求每个节点唯一（订单ID里带着它）。
+ */
+@Slf4j
+@Service
+public class OrderPipelineServiceImpl implements OrderPipelineService {
+
+    private static final long STATUS_EXPIRE_MINUTES = 30; // 请求状态保留30分钟，足够客户端轮询
+
+    @Value("${ticket.order.async.enabled:false}")
+    private boolean enabled;
+    @Value("${ticket.order.async.workers:4}")
+    private int workers;
+    @Value("${ticket.order.async.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${ticket.order.async.batch-size:100}")
+    private int batchSize;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    @Value("${ticket.id.node-id:0}")
+    private long nodeId;
+
+    @Autowired
+    private TicketOrderMapper ticketOrderMapper;
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private OrderExpiryService orderExpiryService;
+    @Autowired
+    private PurchaseQuotaService purchaseQuotaService;
+    @Autowired
+    private SeatService seatService;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+    @Autowired
+    private StockLedgerService stockLedgerService;
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PurchaseCommand> queue;
+    private ExecutorService executor;
+    private volatile boolean running;
+    // 已入队、还没处理完的命令数（队列里的 + 工作线程正在处理的）
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // 本地状态：Redis 不可用时兜底，同时给本节点的轮询省一次网络往返
+    private final Map<String, OrderRequestStatus> localStatus = new ConcurrentHashMap<>();
+    private final Map<String, Long> localStatusTime = new ConcurrentHashMap<>();
+
+    /**
+     * 购票命令（请求线程产生，工作线程消费）
+     */
+    private record PurchaseCommand(String ticket, Long orderId, Long userId, Long eventId, Integer quantity, boolean reserved) {
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        recoverPending();
+        executor = Executors.newFixedThreadPool(workers, ThreadFactories.named("order-pipeline-", virtualThreads));
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            executor.submit(this::drainLoop);
+        }
+        log.info("异步下单流水线已启动, workers={}, queueCapacity={}, batchSize={}", workers, queueCapacity, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        // 停止接收新命令，工作线程把队列里剩余的命令处理完再退出
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("异步下单流水线关闭超时, 剩余命令数={}", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String submit(Long userId, Long eventId, Integer quantity, boolean reserved) {
+        if (!running) {
+            return null;
+        }
+        String ticket = UUID.randomUUID().toString().replace("-", "");
+        OrderRequestStatus status = new OrderRequestStatus();
+        status.setTicket(ticket);
+        status.setUserId(userId);
+        status.setEventId(eventId);
+        status.setQuantity(quantity);
+        status.setStatus(OrderRequestStatus.QUEUED);
+        saveStatus(status);
+
+        // 入队时就分配好订单ID，批量插入时直接带上
+        PurchaseCommand command = new PurchaseCommand(ticket, idGenerator.nextId(), userId, eventId, quantity, reserved);
+        // 先登记再入队：登记不上（Redis 出错）就不受理，否则节点崩溃后没人能补偿这条命令
+        if (!redisUtil.hashPut(buildPendingKey(), ticket, command)) {
+            removeStatus(ticket);
+            return null;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(command)) {
+            // 队列已满：直接拒绝，由调用方回补预扣库存
+            pending.decrementAndGet();
+            redisUtil.hashDelete(buildPendingKey(), ticket);
+            removeStatus(ticket);
+            return null;
+        }
+        return ticket;
+    }
+
+    @Override
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public OrderRequestStatus getStatus(String ticket) {
+        // 本节点受理的请求由本节点的工作线程处理，本地状态就是最新的
+        OrderRequestStatus local = localStatus.get(ticket);
+        if (local != null) {
+            return local;
+        }
+        // 其他节点受理的请求只能从 Redis 查
+        return redisUtil.get(buildStatusKey(ticket), new TypeReference<OrderRequestStatus>() {});
+    }
+
+    /**
+     * 工作线程主循环：阻塞等待第一条命令，然后尽量多取一些凑成一批
+     */
+    private void drainLoop() {
+        List<PurchaseCommand> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PurchaseCommand first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("异步下单批处理异常, batchSize={}", batch.size(), e);
+            } finally {
+                pending.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 一批命令放在一个事务里：逐条扣库存，成功的订单一次性批量插入
+     * 批量事务失败时退化为逐条处理，避免一条坏数据拖垮整批
+     *
+     * 先按演出ID排序（同一演出内保持到达顺序）：整批事务会持有多场演出的行锁，
+     * 各工作线程都按演出ID从小到大加锁，不会出现 A 锁 X 等 Y、B 锁 Y 等 X 的死锁
+     */
+    private void processBatch(List<PurchaseCommand> arrived) {
+        List<PurchaseCommand> batch = new ArrayList<>(arrived);
+        batch.sort(Comparator.comparing(PurchaseCommand::eventId));
+        List<OrderRequestStatus> results;
+        try {
+            results = transactionTemplate.execute(status -> createOrders(batch));
+        } catch (Exception e) {
+            log.warn("批量下单失败，改为逐条处理, batchSize={}, error={}", batch.size(), e.getMessage());
+            results = new ArrayList<>(batch.size());
+            for (PurchaseCommand command : batch) {
+                try {
+                    results.addAll(transactionTemplate.execute(status -> createOrders(List.of(command))));
+                } catch (Exception single) {
+                    results.add(failed(command, "创建订单失败"));
+                }
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PurchaseCommand command = batch.get(i);
+            OrderRequestStatus result = results != null && i < results.size()
+                    ? results.get(i) : failed(command, "创建订单失败");
+            // 每条命令单独收尾：前面一条补偿出错不能让后面的命令一直停在排队中
+            try {
+                complete(command, result);
+            } catch (Exception e) {
+                log.error("异步下单结果处理异常, ticket={}, status={}", command.ticket(), result.getStatus(), e);
+            }
+        }
+    }
+
+    /**
+     * 单条命令收尾：失败的补偿预扣和限购额度，成功的登记支付截止时间
+     * 补偿出错也要把最终状态写出去，客户端轮询不会一直看到排队中
+     */
+    private void complete(PurchaseCommand command, OrderRequestStatus result) {
+        try {
+            if (OrderRequestStatus.FAILED.equals(result.getStatus())) {
+                // 下单失败，补偿 Redis 预扣并归还限购额度
+                if (command.reserved()) {
+                    stockService.releaseReservation(result.getEventId(), result.getQuantity());
+                }
+                purchaseQuotaService.release(result.getEventId(), result.getUserId(), result.getQuantity());
+            }
+            if (result.getOrderId() != null) {
+                // 已提交的订单登记支付截止时间
+                orderExpiryService.schedule(result.getOrderId());
+            }
+        } finally {
+            saveStatus(result);
+            redisUtil.hashDelete(buildPendingKey(), command.ticket());
+        }
+    }
+
+    /**
+     * 启动时（还没受理新命令）处理本节点上次运行留下的登记：这些命令所在的内存队列已经没了
+     * 已经写出最终状态的只是没来得及删登记；订单ID是入队时分配的，查得到订单说明事务已提交
+     */
+    private void recoverPending() {
+        Map<String, PurchaseCommand> commands = redisUtil.hashEntries(buildPendingKey(), new TypeReference<PurchaseCommand>() {});
+        if (commands.isEmpty()) {
+            return;
+        }
+        int succeeded = 0;
+        int failed = 0;
+        for (PurchaseCommand command : commands.values()) {
+            try {
+                OrderRequestStatus status = redisUtil.get(buildStatusKey(command.ticket()), new TypeReference<OrderRequestStatus>() {});
+                if (status != null && !OrderRequestStatus.QUEUED.equals(status.getStatus())) {
+                    redisUtil.hashDelete(buildPendingKey(), command.ticket());
+                    continue;
+                }
+                OrderRequestStatus result;
+                if (ticketOrderMapper.selectById(command.orderId()) != null) {
+                    result = newStatus(command);
+                    result.setStatus(OrderRequestStatus.SUCCESS);
+                    result.setOrderId(command.orderId());
+                    result.setMessage("抢票成功，订单ID：" + command.orderId());
+                    succeeded++;
+                } else {
+                    result = failed(command, "系统繁忙，下单未完成，请重新抢票");
+                    failed++;
+                }
+                complete(command, result);
+            } catch (Exception e) {
+                // 留着登记，下次启动再处理
+                log.error("恢复未完成的下单命令失败, ticket={}", command.ticket(), e);
+            }
+        }
+        if (succeeded + failed > 0) {
+            log.warn("恢复上次未处理完的下单命令, 成功={}, 失败={}", succeeded, failed);
+        }
+    }
+
+    /**
+     * 事务内执行：返回的结果和命令一一对应
+     */
+    private List<OrderRequestStatus> createOrders(List<PurchaseCommand> commands) {
+        List<OrderRequestStatus> results = new ArrayList<>(commands.size());
+        List<TicketOrder> orders = new ArrayList<>(commands.size());
+        List<OrderRequestStatus> pending = new ArrayList<>(commands.size());
+        // 同一批里同一场演出只查一次
+        Map<Long, Event> events = new HashMap<>();
+
+        for (PurchaseCommand command : commands) {
+            Event event = events.computeIfAbsent(command.eventId(), eventMapper::selectById);
+            if (event == null) {
+                results.add(failed(command, "演出不存在"));
+                continue;
+            }
+            if (event.getPrice() == null) {
+                results.add(failed(command, "演出价格未设置"));
+                continue;
+            }
+            SeatService.SeatAllocation seats = null;
+            if (seatService.isSeated(command.eventId())) {
+                seats = seatService.allocate(command.eventId(), command.quantity());
+                if (seats == null) {
+                    results.add(failed(command, "没有足够的连座，请减少购票数量"));
+                    continue;
+                }
+            }
+            if (!stockService.deductStock(command.eventId(), command.quantity())) {
+                if (seats != null) {
+                    seatService.release(command.eventId(), seats.encode());
+                }
+                results.add(failed(command, "库存不足，抢票失败"));
+                continue;
+            }
+
+            TicketOrder order = new TicketOrder();
+            order.setId(command.orderId());
+            order.setUserId(command.userId());
+            order.setEventId(command.eventId());
+            order.setQuantity(command.quantity());
+            order.setTotalPrice(event.getPrice().multiply(new BigDecimal(command.quantity())));
+            order.setStatus("PENDING");
+            order.setSeats(seats == null ? null : seats.encode());
+            order.setCreatedBy(command.userId());
+            orders.add(order);
+
+            OrderRequestStatus success = newStatus(command);
+            success.setStatus(OrderRequestStatus.SUCCESS);
+            results.add(success);
+            pending.add(success);
+        }
+
+        if (!orders.isEmpty()) {
+            // 多行 INSERT，一次往返写入整批订单
+            ticketOrderMapper.insertBatch(orders);
+            orderOutboxService.recordAll(orders, OrderChangeEvent.CREATED);
+            stockLedgerService.recordDeduct(orders, StockLedgerService.ORDER_CREATED);
+            for (int i = 0; i < orders.size(); i++) {
+                pending.get(i).setOrderId(orders.get(i).getId());
+                pending.get(i).setMessage("抢票成功，订单ID：" + orders.get(i).getId());
+            }
+        }
+        return results;
+    }
+
+    private OrderRequestStatus failed(PurchaseCommand command, String message) {
+        OrderRequestStatus status = newStatus(command);
+        status.setStatus(OrderRequestStatus.FAILED);
+        status.setMessage(message);
+        return status;
+    }
+
+    private OrderRequestStatus newStatus(PurchaseCommand command) {
+        OrderRequestStatus status = new OrderRequestStatus();
+        status.setTicket(command.ticket());
+        status.setUserId(command.userId());
+        status.setEventId(command.eventId());
+        status.setQuantity(command.quantity());
+        return status;
+    }
+
+    private void saveStatus(OrderRequestStatus status) {
+        localStatus.put(status.getTicket(), status);
+        localStatusTime.put(status.getTicket(), System.currentTimeMillis());
+        redisUtil.set(buildStatusKey(status.getTicket()), status, STATUS_EXPIRE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void removeStatus(String ticket) {
+        localStatus.remove(ticket);
+        localStatusTime.remove(ticket);
+        redisUtil.delete(buildStatusKey(ticket));
+    }
+
+    /**
+     * 定时清理过期的本地状态，防止内存无限增长
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpiredStatus() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(STATUS_EXPIRE_MINUTES);
+        localStatusTime.entrySet().removeIf(entry -> {
+            if (entry.getValue() < expireBefore) {
+                localStatus.remove(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private String buildPendingKey() {
+        // order:pipeline:pending:{节点ID}
+        return redisUtil.buildKey("order", "pipeline", "pending", String.valueOf(nodeId));
+    }
+
+    private String buildStatusKey(String ticket) {
+        // order:request:xxxx
+        return redisUtil.buildKey("order", "request", ticket);
+    }
+}
@@ -1,7 +1,10 @@
 package com.ticket.service.impl;
 
 import com.ticket.common.Result;
+import com.ticket.dto.CartCheckoutRequest;
 import com.ticket.dto.CreateOrderRequest;
+import com.ticket.dto.OrderChangeEvent;
+import com.ticket.dto.OrderRequestStatus;
 import com.ticket.dto.PageRequest;
 import com.ticket.dto.PageResult;
 import com.ticket.entity.Event;
@@ -9,27 +12,66 @@ import com.ticket.entity.TicketOrder;
 import com.ticket.exception.BusinessException;
 import com.ticket.mapper.EventMapper;
 import com.ticket.mapper.TicketOrderMapper;
+import com.ticket.service.OrderExpiryService;
+import com.ticket.service.OrderOutboxService;
+import com.ticket.service.OrderPipelineService;
 import com.ticket.service.OrderService;
+import com.ticket.service.PurchaseQuotaService;
+import com.ticket.service.SeatService;
+import com.ticket.service.StockLedgerService;
+import com.ticket.service.StockService;
+import com.ticket.util.CountCache;
+import com.ticket.util.IdGenerator;
+import com.ticket.util.PageCursor;
+import com.ticket.util.TransactionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final int MAX_CART_EVENTS = 20; // 购物车一次最多结算的演出场数
+
     @Autowired
     private TicketOrderMapper ticketOrderMapper;
     @Autowired
     private EventMapper eventMapper;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private OrderPipelineService orderPipelineService;
+    @Autowired
+    private OrderExpiryService orderExpiryService;
+    @Autowired
+    private PurchaseQuotaService purchaseQuotaService;
+    @Autowired
+    private SeatService seatService;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+    @Autowired
+    private StockLedgerService stockLedgerService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private CountCache countCache;
 
 
     @Override
-    @Transactional
     public Result<String> createOrder(CreateOrderRequest request, Long userId) {
-        // TODO：创建订单链路是否太长，是不是可以做异步处理优化？
+        // 创建订单链路较长：开启 ticket.order.async.enabled 后请求线程只做预扣 + 入队，其余交给 OrderPipelineService
         // 1. 基本参数校验
         if (request == null || request.getEventId() == null || request.getQuantity() == null) {
             return Result.error("参数不完整");
@@ -40,18 +82,81 @@ public class OrderServiceImpl implements OrderService {
             return Result.error("购票数量必须大于0");
         }
 
-        // 2. 尝试扣减库存（并发安全关键点）
+        // 2. 每人每场限购：在扣库存之前原子占用额度（Redis/内存计数，不查订单表）
+        if (!purchaseQuotaService.tryAcquire(eventId, userId, quantity)) {
+            return Result.error("每人每场限购" + purchaseQuotaService.getLimit() + "张");
+        }
+
+        // 3. Redis 预扣库存（库存闸门）：售罄的请求在这里直接拒绝，不开数据库事务
+        StockService.ReserveResult reserve = stockService.tryReserve(eventId, quantity);
+        if (reserve == StockService.ReserveResult.SOLD_OUT) {
+            purchaseQuotaService.release(eventId, userId, quantity);
+            return Result.error("库存不足，抢票失败");
+        }
+        boolean reserved = reserve == StockService.ReserveResult.RESERVED;
+
+        // 4. 异步模式：请求线程到此为止，把购票命令放入队列，返回请求凭证供轮询
+        if (orderPipelineService.isEnabled()) {
+            String ticket = orderPipelineService.submit(userId, eventId, quantity, reserved);
+            if (ticket == null) {
+                if (reserved) {
+                    stockService.releaseReservation(eventId, quantity);
+                }
+                purchaseQuotaService.release(eventId, userId, quantity);
+                return Result.error("系统繁忙，请稍后重试");
+            }
+            Result<String> queued = Result.success(ticket);
+            queued.setMessage("排队中，请凭请求凭证查询下单结果");
+            return queued;
+        }
+
+        // 5. 同步模式：只有预扣成功（或闸门降级）的请求才进入数据库事务
+        Result<String> result;
+        try {
+            result = transactionTemplate.execute(status -> doCreateOrder(eventId, quantity, userId));
+        } catch (RuntimeException e) {
+            // 事务已回滚，补偿 Redis 预扣和限购额度
+            if (reserved) {
+                stockService.releaseReservation(eventId, quantity);
+            }
+            purchaseQuotaService.release(eventId, userId, quantity);
+            throw e;
+        }
+        if (result == null || result.getCode() != 200) {
+            if (reserved) {
+                stockService.releaseReservation(eventId, quantity);
+            }
+            purchaseQuotaService.release(eventId, userId, quantity);
+        }
+        return result;
+    }
+
+    /**
+     * 数据库部分：扣减库存 + 创建订单（在 transactionTemplate 开启的事务内执行）
+     */
+    private Result<String> doCreateOrder(Long eventId, Integer quantity, Long userId) {
+        // 1. 尝试扣减库存（并发安全关键点）
         // 对应 SQL: UPDATE event SET stock = stock - ? WHERE id = ? AND stock >= ?
         // TODO：可以去了解了解分布式锁、乐观锁、悲观锁的概念，再回去看看mysql对锁的使用，行锁表锁
         // TODO：其他的一些思考注意点：现实是一个账号只能抢一张票，如果想做难度高的，可以做抢多张票，但是需要实名认证，本质上也是一人一单，也就是你替别人抢的时候，如果那个人也在抢，应该怎么办
         // TODO：如果一人一单的话，是不是还要先查是否买过这个票务的票了...还有很多可以值得思考的地方可以去看看卓滢学姐的周报，我觉得很有意思
-        int rows = eventMapper.decreaseStock(eventId, quantity);
-        if (rows == 0) {
+        // 对号入座的演出先占连座：锁住该演出的座位区，占座随订单事务一起提交或回滚
+        SeatService.SeatAllocation seats = null;
+        if (seatService.isSeated(eventId)) {
+            seats = seatService.allocate(eventId, quantity);
+            if (seats == null) {
+                return Result.error("没有足够的连座，请减少购票数量");
+            }
+        }
+        if (!stockService.deductStock(eventId, quantity)) {
             // 扣减失败，说明库存不足或其他人已经抢完
+            if (seats != null) {
+                seatService.release(eventId, seats.encode());
+            }
             return Result.error("库存不足，抢票失败");
         }
 
-        // 3. 查询演出价格，计算总价
+        // 2. 查询演出价格，计算总价
         Event event = eventMapper.selectById(eventId);
         if (event == null) {
             // 理论上不应该出现：库存刚扣完，演出却查不到
@@ -64,13 +169,15 @@ public class OrderServiceImpl implements OrderService {
 
         BigDecimal totalPrice = event.getPrice().multiply(new BigDecimal(quantity));
 
-        // 4. 创建订单
+        // 3. 创建订单
         TicketOrder order = new TicketOrder();
+        order.setId(idGenerator.nextId());
         order.setUserId(userId);
         order.setEventId(eventId);
         order.setQuantity(quantity);
         order.setTotalPrice(totalPrice);
         order.setStatus("PENDING"); // 或者根据业务设为 "PAID"
+        order.setSeats(seats == null ? null : seats.encode());
         order.setCreatedBy(userId); // 记录下单人
 
 
@@ -79,11 +186,156 @@ public class OrderServiceImpl implements OrderService {
             // 插入订单失败，抛异常触发事务回滚（库存也会回滚）
             throw new BusinessException("创建订单失败");
         }
-
-        // 5. 返回结果（这里返回简单提示 + 订单ID）
+        orderOutboxService.record(order, OrderChangeEvent.CREATED);
+        stockLedgerService.recordDeduct(List.of(order), StockLedgerService.ORDER_CREATED);
+        // 提交后登记支付截止时间，超时未支付自动取消
+        TransactionUtil.afterCommit(() -> orderExpiryService.schedule(order.getId()));
+
+        // 4. 返回结果（这里返回简单提示 + 订单ID）
+        if (seats != null) {
+            return Result.success("抢票成功，订单ID：" + order.getId() + "，座位：" + order.getSeats());
+        }
         return Result.success("抢票成功，订单ID：" + order.getId());
     }
 
+    @Override
+    public Result<String> checkoutCart(CartCheckoutRequest request, Long userId) {
+        if (request == null || request.getItems() == null || request.getItems().isEmpty()) {
+            return Result.error("购物车不能为空");
+        }
+        // 1. 同一场演出合并数量，并按演出ID升序排列：所有事务都按这个顺序加行锁，并发结算不会互相死锁
+        Map<Long, Integer> lines = new TreeMap<>();
+        for (CartCheckoutRequest.Item item : request.getItems()) {
+            if (item.getEventId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                return Result.error("购物车商品参数不正确");
+            }
+            lines.merge(item.getEventId(), item.getQuantity(), Integer::sum);
+        }
+        if (lines.size() > MAX_CART_EVENTS) {
+            return Result.error("一次最多结算" + MAX_CART_EVENTS + "场演出");
+        }
+
+        // 2. 逐场占用限购额度、Redis 预扣库存；任何一场失败立即整单失败，不开数据库事务
+        Map<Long, Integer> acquired = new LinkedHashMap<>();
+        Map<Long, Integer> reserved = new LinkedHashMap<>();
+        Result<String> rejected = null;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            Long eventId = line.getKey();
+            Integer quantity = line.getValue();
+            if (!purchaseQuotaService.tryAcquire(eventId, userId, quantity)) {
+                rejected = Result.error("每人每场限购" + purchaseQuotaService.getLimit() + "张，演出ID：" + eventId);
+                break;
+            }
+            acquired.put(eventId, quantity);
+            StockService.ReserveResult reserve = stockService.tryReserve(eventId, quantity);
+            if (reserve == StockService.ReserveResult.SOLD_OUT) {
+                rejected = Result.error("库存不足，抢票失败，演出ID：" + eventId);
+                break;
+            }
+            if (reserve == StockService.ReserveResult.RESERVED) {
+                reserved.put(eventId, quantity);
+            }
+        }
+        if (rejected != null) {
+            releaseCart(userId, acquired, reserved);
+            return rejected;
+        }
+
+        // 3. 一个事务内按演出ID升序扣库存，订单一条多行 INSERT 写入
+        Result<String> result;
+        try {
+            result = transactionTemplate.execute(status -> {
+                Result<String> created = doCheckoutCart(lines, userId);
+                if (created.getCode() != 200) {
+                    status.setRollbackOnly();
+                }
+                return created;
+            });
+        } catch (RuntimeException e) {
+            releaseCart(userId, acquired, reserved);
+            throw e;
+        }
+        if (result == null || result.getCode() != 200) {
+            releaseCart(userId, acquired, reserved);
+        }
+        return result;
+    }
+
+    /**
+     * 购物车数据库部分（在 transactionTemplate 开启的事务内执行）
+     */
+    private Result<String> doCheckoutCart(Map<Long, Integer> lines, Long userId) {
+        Map<Long, Event> events = new HashMap<>();
+        for (Event event : eventMapper.selectByIds(new ArrayList<>(lines.keySet()))) {
+            events.put(event.getId(), event);
+        }
+        List<TicketOrder> orders = new ArrayList<>(lines.size());
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            Event event = events.get(line.getKey());
+            if (event == null) {
+                return Result.error("演出不存在，演出ID：" + line.getKey());
+            }
+            if (event.getPrice() == null) {
+                return Result.error("演出价格未设置，演出ID：" + line.getKey());
+            }
+            // 整单失败时事务回滚，已占的座位随之回滚
+            String seats = null;
+            if (seatService.isSeated(line.getKey())) {
+                SeatService.SeatAllocation allocation = seatService.allocate(line.getKey(), line.getValue());
+                if (allocation == null) {
+                    return Result.error("没有足够的连座，演出：" + event.getName());
+                }
+                seats = allocation.encode();
+            }
+            // lines 按演出ID升序，扣减的行锁也按这个顺序获取
+            if (!stockService.deductStock(line.getKey(), line.getValue())) {
+                return Result.error("库存不足，抢票失败，演出：" + event.getName());
+            }
+            TicketOrder order = new TicketOrder();
+            order.setId(idGenerator.nextId());
+            order.setUserId(userId);
+            order.setEventId(line.getKey());
+            order.setQuantity(line.getValue());
+            order.setTotalPrice(event.getPrice().multiply(new BigDecimal(line.getValue())));
+            order.setStatus("PENDING");
+            order.setSeats(seats);
+            order.setCreatedBy(userId);
+            orders.add(order);
+        }
+
+        if (ticketOrderMapper.insertBatch(orders) != orders.size()) {
+            throw new BusinessException("创建订单失败");
+        }
+        orderOutboxService.recordAll(orders, OrderChangeEvent.CREATED);
+        stockLedgerService.recordDeduct(orders, StockLedgerService.ORDER_CREATED);
+        List<Long> orderIds = new ArrayList<>(orders.size());
+        for (TicketOrder order : orders) {
+            orderIds.add(order.getId());
+        }
+        TransactionUtil.afterCommit(() -> orderIds.forEach(orderExpiryService::schedule));
+        return Result.success("抢票成功，订单ID：" + orderIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * 购物车结算失败：归还已占用的限购额度和 Redis 预扣
+     */
+    private void releaseCart(Long userId, Map<Long, Integer> acquired, Map<Long, Integer> reserved) {
+        reserved.forEach(stockService::releaseReservation);
+        acquired.forEach((eventId, quantity) -> purchaseQuotaService.release(eventId, userId, quantity));
+    }
+
+    @Override
+    public Result<OrderRequestStatus> getOrderRequestStatus(String ticket, Long userId) {
+        OrderRequestStatus status = orderPipelineService.getStatus(ticket);
+        if (status == null) {
+            return Result.error("请求不存在或已过期");
+        }
+        if (!status.getUserId().equals(userId)) {
+            return Result.error("无权查看此请求");
+        }
+        return Result.success(status);
+    }
+
     @Override
     public Result<TicketOrder> getOrderById(Long id) {
         TicketOrder order = ticketOrderMapper.selectById(id);
@@ -106,17 +358,29 @@ public class OrderServiceImpl implements OrderService {
         if (!"PENDING".equals(order.getStatus())) {
             return Result.error("只能取消待支付的订单");
         }
-        
+
+        // 先按状态条件更新：和超时取消任务并发时只有一方能取消成功，库存不会被回补两次
+        if (ticketOrderMapper.cancelPendingByIds(List.of(id), userId) <= 0) {
+            return Result.error("只能取消待支付的订单");
+        }
+        order.setStatus("CANCELLED");
+        order.setUpdatedBy(userId);
+        orderOutboxService.record(order, OrderChangeEvent.CANCELLED);
+
+        // 释放座位和下单时一样先于库存加锁，和订单事务一起提交
+        seatService.release(order.getEventId(), order.getSeats());
         // 回滚库存（使用乐观锁保证并发安全）
-        // TODO：这里为什么会有并发呀
-        int stockRows = eventMapper.increaseStock(order.getEventId(), order.getQuantity());
-        if (stockRows == 0) {
-            // 回滚失败，可能演出不存在（理论上不应该发生）
-            return Result.error("回滚库存失败，演出不存在");
+        if (!stockService.restoreStock(order.getEventId(), order.getQuantity())) {
+            // 回滚失败，可能演出不存在（理论上不应该发生），抛异常让订单状态一起回滚
+            throw new BusinessException("回滚库存失败，演出不存在");
         }
+        stockLedgerService.recordRestore(List.of(order), StockLedgerService.ORDER_CANCELLED);
 
-        // 更新订单状态
-        ticketOrderMapper.updateStatus(id, "CANCELLED", userId);
+        // 事务提交后再把库存还给 Redis 闸门（事务回滚则不回补）
+        TransactionUtil.afterCommit(() -> {
+            stockService.releaseReservation(order.getEventId(), order.getQuantity());
+            purchaseQuotaService.release(order.getEventId(), userId, order.getQuantity());
+        });
         return Result.success("订单取消成功");
 
 
@@ -132,16 +396,32 @@ public class OrderServiceImpl implements OrderService {
             pageRequest.setSize(10);
         }
         int offset = (pageRequest.getPage() - 1) * pageRequest.getSize();
-        int size = pageRequest.getSize();
+        // 多查一行判断是否有下一页
+        int fetchSize = pageRequest.getFetchSize();
 
-        // 查询总数 + 当前页数据
+        // 查询当前页数据
         // TODO：Mybatis分页插件同理
-        Long total = ticketOrderMapper.countByUserCondition(userId, status, eventId);
-        List<TicketOrder> list = ticketOrderMapper.selectByUserCondition(
-                userId, status, eventId, offset, size
-        );
-
-        return new PageResult<>(list, total, pageRequest);
+        List<TicketOrder> list;
+        if (pageRequest.isCursorMode()) {
+            // 游标分页：按 id 倒序从上一页最后一单往后取
+            PageCursor cursor = PageCursor.decode(pageRequest.getCursor());
+            list = ticketOrderMapper.selectByUserConditionAfter(
+                    userId, status, eventId, cursor == null ? null : cursor.getId(), fetchSize
+            );
+        } else {
+            list = ticketOrderMapper.selectByUserCondition(
+                    userId, status, eventId, offset, fetchSize
+            );
+        }
+        boolean hasNext = PageResult.trimToSize(list, pageRequest.getSize());
+        // 请求了总数才查，同一组条件短时间内走计数缓存（订单变更经发件箱投递后失效）
+        Long total = pageRequest.isTotalRequested()
+                ? countCache.count(CountCache.ORDERS, CountCache.key("user", userId, status, eventId),
+                        () -> ticketOrderMapper.countByUserCondition(userId, status, eventId))
+                : null;
+
+        return new PageResult<>(list, total, pageRequest, hasNext,
+                PageCursor.next(pageRequest, list, hasNext, TicketOrder::getCreatedTime, TicketOrder::getId));
     }
 
     @Override
@@ -164,8 +444,11 @@ public class OrderServiceImpl implements OrderService {
         updateOrder.setStatus(orderParam.getStatus()); // 要改的状态
         updateOrder.setUpdatedBy(userId); // 操作人ID
 
-        // 4. 执行更新
+        // 4. 执行更新，同一事务内写发件箱
         ticketOrderMapper.update(updateOrder);
+        existingOrder.setStatus(updateOrder.getStatus());
+        existingOrder.setUpdatedBy(userId);
+        orderOutboxService.record(existingOrder, OrderChangeEvent.UPDATED);
         return Result.success("订单状态更新成功");
     }
 
@@ -182,15 +465,34 @@ public class OrderServiceImpl implements OrderService {
             pageRequest.setSize(10);
         }
         int offset = (pageRequest.getPage() - 1) * pageRequest.getSize();
-        int size = pageRequest.getSize();
-
-        // 2. 查询总数 + 当前页数据
-        Long total = ticketOrderMapper.countByAdminCondition(userId, status, eventId);
-        List<TicketOrder> list = ticketOrderMapper.selectByAdminCondition(
-                userId, status, eventId, offset, size
-        );
-
-        return new PageResult<>(list, total, pageRequest);
+        // 多查一行判断是否有下一页
+        int fetchSize = pageRequest.getFetchSize();
+
+        // 2. 查询当前页数据
+        List<TicketOrder> list;
+        if (pageRequest.isCursorMode()) {
+            // 游标分页：按 (created_time, id) seek，翻到多深都只扫描 size 行
+            PageCursor cursor = PageCursor.decode(pageRequest.getCursor());
+            list = ticketOrderMapper.selectByAdminConditionAfter(
+                    userId, status, eventId,
+                    cursor == null ? null : cursor.getCreatedTime(),
+                    cursor == null ? null : cursor.getId(),
+                    fetchSize
+            );
+        } else {
+            list = ticketOrderMapper.selectByAdminCondition(
+                    userId, status, eventId, offset, fetchSize
+            );
+        }
+        boolean hasNext = PageResult.trimToSize(list, pageRequest.getSize());
+        // 3. 请求了总数才查，走计数缓存
+        Long total = pageRequest.isTotalRequested()
+                ? countCache.count(CountCache.ORDERS, CountCache.key("admin", userId, status, eventId),
+                        () -> ticketOrderMapper.countByAdminCondition(userId, status, eventId))
+                : null;
+
+        return new PageResult<>(list, total, pageRequest, hasNext,
+                PageCursor.next(pageRequest, list, hasNext, TicketOrder::getCreatedTime, TicketOrder::getId));
     }
 
     @Override
@@ -207,6 +509,13 @@ public class OrderServiceImpl implements OrderService {
         if (rows <= 0) {
             return Result.error("更新订单失败");
         }
+        if (order.getStatus() != null && !order.getStatus().isEmpty()) {
+            exist.setStatus(order.getStatus());
+        }
+        if (order.getUpdatedBy() != null) {
+            exist.setUpdatedBy(order.getUpdatedBy());
+        }
+        orderOutboxService.record(exist, OrderChangeEvent.UPDATED);
         return Result.success("更新订单成功");
     }
 
@@ -221,6 +530,7 @@ public class OrderServiceImpl implements OrderService {
             return Result.error("只能删除已取消的订单");
         }
         ticketOrderMapper.deleteById(id);
+        orderOutboxService.record(order, OrderChangeEvent.DELETED);
         return Result.success("订单删除成功");
     }
 }
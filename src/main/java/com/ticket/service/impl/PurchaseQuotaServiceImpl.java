@@ -0,0 +1,91 @@
+package com.ticket.service.impl;
+
+import com.ticket.entity.TicketOrder;
+import com.ticket.mapper.TicketOrderMapper;
+import com.ticket.service.PurchaseQuotaService;
+import com.ticket.service.PurchaseQuotaStore;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+public class PurchaseQuotaServiceImpl implements PurchaseQuotaService {
+
+    private static final int RECONCILE_PAGE_SIZE = 1000;
+
+    @Value("${ticket.order.quota.max-per-user:0}")
+    private int limit;
+
+    @Autowired
+    private PurchaseQuotaStore purchaseQuotaStore;
+    @Autowired
+    private TicketOrderMapper ticketOrderMapper;
+
+    /**
+     * 计数不完整时（首次部署、Redis 数据丢失、单节点内存计数重启）按有效订单校准，下单链路不查库
+     *
+     * 只调高不降低：滚动重启时其他节点还在下单，计数里有已占额度、还没落库的请求（异步下单队列里的），
+     * 覆盖或删除计数会让这些用户超出限购。按 (演出, 用户) 分页汇总，每页按演出分组校正。
+     */
+    @PostConstruct
+    public void reconcile() {
+        if (limit <= 0 || !purchaseQuotaStore.tryBeginReconcile()) {
+            return;
+        }
+        boolean success = false;
+        try {
+            long lastEventId = 0;
+            long lastUserId = 0;
+            long total = 0;
+            while (true) {
+                List<TicketOrder> rows = ticketOrderMapper.sumActiveQuantityAfter(lastEventId, lastUserId, RECONCILE_PAGE_SIZE);
+                Map<Long, Map<Long, Integer>> counts = new HashMap<>();
+                for (TicketOrder row : rows) {
+                    counts.computeIfAbsent(row.getEventId(), id -> new HashMap<>()).put(row.getUserId(), row.getQuantity());
+                }
+                counts.forEach(purchaseQuotaStore::raise);
+                total += rows.size();
+                if (rows.size() < RECONCILE_PAGE_SIZE) {
+                    break;
+                }
+                TicketOrder last = rows.get(rows.size() - 1);
+                lastEventId = last.getEventId();
+                lastUserId = last.getUserId();
+            }
+            success = true;
+            log.info("限购计数校准完成，记录 {} 条", total);
+        } catch (Exception e) {
+            log.error("限购计数校准失败", e);
+        } finally {
+            purchaseQuotaStore.finishReconcile(success);
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public boolean tryAcquire(Long eventId, Long userId, int quantity) {
+        if (limit <= 0) {
+            return true;
+        }
+        return purchaseQuotaStore.tryAcquire(eventId, userId, quantity, limit);
+    }
+
+    @Override
+    public void release(Long eventId, Long userId, int quantity) {
+        if (limit <= 0) {
+            return;
+        }
+        purchaseQuotaStore.release(eventId, userId, quantity);
+    }
+}
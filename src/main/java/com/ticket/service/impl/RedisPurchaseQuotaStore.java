@@ -0,0 +1,131 @@
+package com.ticket.service.impl;
+
+import com.ticket.service.PurchaseQuotaStore;
+import com.ticket.util.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点限购计数：quota:{eventId} Hash，字段为用户ID，值为已购数量
+ *
+ * 启动校准只在计数不完整时做一次：quota:reconciled:v1 标记校准完成（不过期，和计数在同一个 Redis 里，
+ * Redis 数据丢失时标记一起丢失，下次启动的节点重新校准）；校准期间用 quota:reconcile-lock 保证只有一个节点在做。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ticket.order.quota.mode", havingValue = "redis")
+public class RedisPurchaseQuotaStore implements PurchaseQuotaStore {
+
+    /**
+     * 检查并累加：超出限购返回 0，成功返回 1
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local used = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0') " +
+            "if used + tonumber(ARGV[2]) > tonumber(ARGV[3]) then return 0 end " +
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+            "return 1",
+            Long.class);
+
+    /**
+     * 归还额度：计数不存在时不处理，减到0删除字段
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+            "local left = redis.call('HINCRBY', KEYS[1], ARGV[1], -tonumber(ARGV[2])) " +
+            "if left <= 0 then redis.call('HDEL', KEYS[1], ARGV[1]) end " +
+            "return 1",
+            Long.class);
+
+    /**
+     * 逐个用户调高计数：ARGV 为 用户ID, 数量, 用户ID, 数量...，当前计数小于数量时才写入
+     */
+    private static final RedisScript<Long> RAISE_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do " +
+            "  local used = tonumber(redis.call('HGET', KEYS[1], ARGV[i]) or '0') " +
+            "  if used < tonumber(ARGV[i + 1]) then redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    private static final String RECONCILE_VERSION = "v1";
+    private static final long RECONCILE_LOCK_MINUTES = 10;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    private final String nodeToken = UUID.randomUUID().toString();
+
+    @Override
+    public boolean tryAcquire(Long eventId, Long userId, int quantity, int limit) {
+        Long result = redisUtil.execute(ACQUIRE_SCRIPT, Collections.singletonList(buildKey(eventId)),
+                userId.toString(), String.valueOf(quantity), String.valueOf(limit));
+        if (result == null) {
+            log.warn("限购计数不可用，本次不限购, eventId={}, userId={}", eventId, userId);
+            return true;
+        }
+        return result == 1;
+    }
+
+    @Override
+    public void release(Long eventId, Long userId, int quantity) {
+        redisUtil.execute(RELEASE_SCRIPT, Collections.singletonList(buildKey(eventId)),
+                userId.toString(), String.valueOf(quantity));
+    }
+
+    @Override
+    public void raise(Long eventId, Map<Long, Integer> counts) {
+        List<String> args = new ArrayList<>(counts.size() * 2);
+        counts.forEach((userId, quantity) -> {
+            args.add(userId.toString());
+            args.add(quantity.toString());
+        });
+        if (redisUtil.execute(RAISE_SCRIPT, Collections.singletonList(buildKey(eventId)),
+                args.toArray(new String[0])) == null) {
+            throw new IllegalStateException("限购计数校正失败, eventId=" + eventId);
+        }
+    }
+
+    @Override
+    public boolean tryBeginReconcile() {
+        if (!Boolean.FALSE.equals(redisUtil.hasKey(buildReconciledKey()))) {
+            // 已校准过；Redis 不可用（null）时也不校准
+            return false;
+        }
+        return Boolean.TRUE.equals(redisUtil.setIfAbsent(buildReconcileLockKey(), nodeToken,
+                RECONCILE_LOCK_MINUTES, TimeUnit.MINUTES));
+    }
+
+    @Override
+    public void finishReconcile(boolean success) {
+        if (success) {
+            redisUtil.set(buildReconciledKey(), RECONCILE_VERSION);
+        }
+        redisUtil.delete(buildReconcileLockKey());
+    }
+
+    private String buildReconciledKey() {
+        // quota:reconciled:v1
+        return redisUtil.buildKey("quota", "reconciled", RECONCILE_VERSION);
+    }
+
+    private String buildReconcileLockKey() {
+        // quota:reconcile-lock
+        return redisUtil.buildKey("quota", "reconcile-lock");
+    }
+
+    private String buildKey(Long eventId) {
+        // quota:123
+        return redisUtil.buildKey("quota", eventId.toString());
+    }
+}
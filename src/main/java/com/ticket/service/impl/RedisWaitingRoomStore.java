@@ -0,0 +1,119 @@
+package com.ticket.service.impl;
+
+import com.ticket.service.WaitingRoomStore;
+import com.ticket.util.RedisUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多节点排队存储：
+ * waiting:rooms            Hash    演出ID -> 每秒放行人数
+ * waiting:seq:{eventId}    String  已发出的最大序号
+ * waiting:queue:{eventId}  ZSet    成员为用户ID，分数为排队序号
+ * waiting:admitted:{eventId} String 放行水位线
+ * waiting:tick:{eventId}   String  推进水位线的短锁，保证多个节点同一秒只推进一次
+ */
+@Component
+@ConditionalOnProperty(name = "ticket.waiting-room.mode", havingValue = "redis")
+public class RedisWaitingRoomStore implements WaitingRoomStore {
+
+    private static final String ROOMS_KEY = "waiting:rooms";
+
+    /**
+     * 入队：已在队列中返回原序号，否则领取新序号并写入有序集合
+     */
+    private static final RedisScript<Long> JOIN_SCRIPT = new DefaultRedisScript<>(
+            "local seq = redis.call('ZSCORE', KEYS[1], ARGV[1]) " +
+            "if seq then return tonumber(seq) end " +
+            "seq = redis.call('INCR', KEYS[2]) " +
+            "redis.call('ZADD', KEYS[1], seq, ARGV[1]) " +
+            "return seq",
+            Long.class);
+
+    /**
+     * 推进水位线：拿到本秒的短锁才推进，且不超过已发出的最大序号
+     */
+    private static final RedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[3], '1', 'NX', 'PX', ARGV[2]) then return -1 end " +
+            "local max = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "local admitted = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+            "local target = math.min(admitted + tonumber(ARGV[1]), max) " +
+            "redis.call('SET', KEYS[2], target) " +
+            "return target",
+            Long.class);
+
+    private static final long TICK_LOCK_MILLIS = 900; // 略小于1秒的调度周期
+
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public void open(Long eventId, int ratePerSecond) {
+        stringRedisTemplate.opsForHash().put(ROOMS_KEY, eventId.toString(), String.valueOf(ratePerSecond));
+    }
+
+    @Override
+    public void close(Long eventId) {
+        stringRedisTemplate.opsForHash().delete(ROOMS_KEY, eventId.toString());
+        stringRedisTemplate.delete(Arrays.asList(seqKey(eventId), queueKey(eventId), admittedKey(eventId)));
+    }
+
+    @Override
+    public Map<Long, Integer> listRooms() {
+        Map<Long, Integer> result = new HashMap<>();
+        stringRedisTemplate.opsForHash().entries(ROOMS_KEY).forEach((eventId, rate) ->
+                result.put(Long.valueOf(eventId.toString()), Integer.valueOf(rate.toString())));
+        return result;
+    }
+
+    @Override
+    public long join(Long eventId, Long userId) {
+        Long seq = redisUtil.execute(JOIN_SCRIPT, Arrays.asList(queueKey(eventId), seqKey(eventId)), userId.toString());
+        return seq == null ? 0 : seq;
+    }
+
+    @Override
+    public Long getSequence(Long eventId, Long userId) {
+        Double score = stringRedisTemplate.opsForZSet().score(queueKey(eventId), userId.toString());
+        return score == null ? null : score.longValue();
+    }
+
+    @Override
+    public long getAdmitted(Long eventId) {
+        String admitted = stringRedisTemplate.opsForValue().get(admittedKey(eventId));
+        return admitted == null ? 0 : Long.parseLong(admitted);
+    }
+
+    @Override
+    public void advance(Long eventId, int count) {
+        List<String> keys = Arrays.asList(seqKey(eventId), admittedKey(eventId), tickKey(eventId));
+        redisUtil.execute(ADVANCE_SCRIPT, keys, String.valueOf(count), String.valueOf(TICK_LOCK_MILLIS));
+    }
+
+    private String seqKey(Long eventId) {
+        return redisUtil.buildKey("waiting", "seq", eventId.toString());
+    }
+
+    private String queueKey(Long eventId) {
+        return redisUtil.buildKey("waiting", "queue", eventId.toString());
+    }
+
+    private String admittedKey(Long eventId) {
+        return redisUtil.buildKey("waiting", "admitted", eventId.toString());
+    }
+
+    private String tickKey(Long eventId) {
+        return redisUtil.buildKey("waiting", "tick", eventId.toString());
+    }
+}
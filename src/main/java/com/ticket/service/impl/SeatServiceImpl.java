@@ -0,0 +1,296 @@
+package com.ticket.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ticket.common.Result;
+import com.ticket.dto.SeatSectionDTO;
+import com.ticket.entity.Event;
+import com.ticket.entity.EventSeatSection;
+import com.ticket.mapper.EventMapper;
+import com.ticket.mapper.EventSeatSectionMapper;
+import com.ticket.service.SeatService;
+import com.ticket.service.StockService;
+import com.ticket.util.IdGenerator;
+import com.ticket.util.RedisUtil;
+import com.ticket.util.SeatBitmap;
+import com.ticket.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点下座位图以数据库为准：选座 / 释放座位都在订单事务里先锁住这场演出的所有区，
+ * 在位图里改完后只回写改动的那一排，随订单一起提交或回滚，不同节点不会分到同一个座位。
+ *
+ * 每个节点缓存各区的位图和版本号，加锁后版本号一致就直接用缓存，不一致（其他节点改过、本节点事务回滚过）
+ * 才重新读整区位图。版本号每次修改都换一个新的全局唯一值（IdGenerator），回滚过的版本号不会再出现。
+ * 设置座位图、删除演出通过 Redis 发布/订阅通知所有节点清掉缓存；缓存另有 cache-ttl-seconds 过期兜底。
+ */
+@Slf4j
+@Service
+public class SeatServiceImpl implements SeatService, MessageListener {
+
+    private static final String CHANNEL = "ticket:seat:changed";
+    private static final int MAX_ROWS = 1000;
+    private static final int MAX_SEATS_PER_ROW = 1000;
+    private static final long MAX_CACHED_EVENTS = 10_000;
+
+    // 没有座位图的演出也缓存一个空对象，下单时不用每次查库
+    private static final List<Section> NOT_SEATED = Collections.emptyList();
+
+    @Value("${ticket.seat.cache-ttl-seconds:5}")
+    private long cacheTtlSeconds;
+
+    @Autowired
+    private EventSeatSectionMapper eventSeatSectionMapper;
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    // 演出ID -> 各区座位位图（按区编号排序）
+    private Cache<Long, List<Section>> seatMaps;
+
+    private static final class Section {
+        final int sectionNo;
+        final String sectionName;
+        final SeatBitmap bitmap;
+        // 位图对应的数据库版本号，只在持有这个区的行锁时修改
+        volatile long version;
+
+        Section(int sectionNo, String sectionName, SeatBitmap bitmap, long version) {
+            this.sectionNo = sectionNo;
+            this.sectionName = sectionName;
+            this.bitmap = bitmap;
+            this.version = version;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        seatMaps = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_EVENTS)
+                .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    @Transactional
+    public Result<String> initSeatMap(Long eventId, List<SeatSectionDTO> sections) {
+        Event event = eventMapper.selectById(eventId);
+        if (event == null) {
+            return Result.error("演出不存在");
+        }
+        if ("PUBLISHED".equals(event.getStatus())) {
+            return Result.error("演出已开票，不能修改座位图");
+        }
+        if (sections == null || sections.isEmpty()) {
+            return Result.error("座位区不能为空");
+        }
+        // 锁住库存行读当前库存：和修改演出（同样先锁库存行）串行，座位总数核对时库存不会被改
+        Integer available = stockService.lockAvailableStock(eventId);
+        List<EventSeatSection> rows = new ArrayList<>(sections.size());
+        int total = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            SeatSectionDTO dto = sections.get(i);
+            if (dto.getRowCount() == null || dto.getRowCount() <= 0 || dto.getRowCount() > MAX_ROWS
+                    || dto.getSeatsPerRow() == null || dto.getSeatsPerRow() <= 0 || dto.getSeatsPerRow() > MAX_SEATS_PER_ROW) {
+                return Result.error("排数和每排座位数必须在1到" + MAX_ROWS + "之间");
+            }
+            EventSeatSection section = new EventSeatSection();
+            section.setEventId(eventId);
+            section.setSectionNo(i);
+            section.setSectionName(dto.getSectionName() == null ? String.valueOf(i + 1) : dto.getSectionName());
+            section.setRowCount(dto.getRowCount());
+            section.setSeatsPerRow(dto.getSeatsPerRow());
+            section.setSeats(new SeatBitmap(dto.getRowCount(), dto.getSeatsPerRow()).toBytes());
+            section.setVersion(idGenerator.nextId());
+            rows.add(section);
+            total += dto.getRowCount() * dto.getSeatsPerRow();
+        }
+        int stock = available == null ? 0 : available;
+        if (total != stock) {
+            return Result.error("座位总数(" + total + ")必须等于演出库存(" + stock + ")");
+        }
+
+        eventSeatSectionMapper.deleteByEventId(eventId);
+        eventSeatSectionMapper.insertBatch(rows);
+        TransactionUtil.afterCommit(() -> evict(eventId));
+        return Result.success("座位图设置成功，共" + total + "个座位");
+    }
+
+    @Override
+    public Result<List<SeatSectionDTO>> getSeatMap(Long eventId) {
+        List<Section> sections = getSections(eventId);
+        if (sections.isEmpty()) {
+            return Result.error("该演出不是对号入座");
+        }
+        List<SeatSectionDTO> result = new ArrayList<>(sections.size());
+        for (Section section : sections) {
+            SeatSectionDTO dto = new SeatSectionDTO();
+            dto.setSectionNo(section.sectionNo);
+            dto.setSectionName(section.sectionName);
+            dto.setRowCount(section.bitmap.getRows());
+            dto.setSeatsPerRow(section.bitmap.getSeatsPerRow());
+            dto.setAvailable(section.bitmap.available());
+            dto.setSeats(Base64.getEncoder().encodeToString(section.bitmap.toBytes()));
+            result.add(dto);
+        }
+        return Result.success(result);
+    }
+
+    @Override
+    public boolean isSeated(Long eventId) {
+        return !getSections(eventId).isEmpty();
+    }
+
+    @Override
+    public SeatAllocation allocate(Long eventId, int quantity) {
+        for (Section section : lockSections(eventId)) {
+            long start = section.bitmap.allocate(quantity);
+            if (start >= 0) {
+                int seatsPerRow = section.bitmap.getSeatsPerRow();
+                int row = (int) (start / seatsPerRow);
+                persistRow(eventId, section, row);
+                return new SeatAllocation(section.sectionNo, row, (int) (start % seatsPerRow), quantity);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void release(Long eventId, String seats) {
+        SeatAllocation allocation = SeatAllocation.decode(seats);
+        if (allocation == null) {
+            return;
+        }
+        for (Section section : lockSections(eventId)) {
+            if (section.sectionNo == allocation.sectionNo()) {
+                section.bitmap.release(allocation.row(), allocation.seat(), allocation.count());
+                persistRow(eventId, section, allocation.row());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void evict(Long eventId) {
+        seatMaps.invalidate(eventId);
+        redisUtil.publish(CHANNEL, eventId.toString());
+    }
+
+    /**
+     * 接收其他节点（也包括自己）广播的座位图变更
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            seatMaps.invalidate(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            log.warn("座位图变更广播消息格式错误, body={}", body);
+        }
+    }
+
+    private List<Section> getSections(Long eventId) {
+        return seatMaps.get(eventId, this::loadSections);
+    }
+
+    /**
+     * 锁住这场演出的所有区（当前事务结束才释放），返回和数据库一致的位图
+     * 版本号和缓存不一致的区重新读位图；区的数量变了（重新设置过座位图）整场重新加载
+     */
+    private List<Section> lockSections(Long eventId) {
+        List<EventSeatSection> locked = eventSeatSectionMapper.selectVersionsForUpdate(eventId);
+        if (locked.isEmpty()) {
+            seatMaps.put(eventId, NOT_SEATED);
+            return NOT_SEATED;
+        }
+        List<Section> cached = seatMaps.getIfPresent(eventId);
+        if (cached == null || cached.size() != locked.size()) {
+            cached = new ArrayList<>(locked.size());
+            for (EventSeatSection row : locked) {
+                cached.add(readSection(eventId, row.getSectionNo()));
+            }
+            seatMaps.put(eventId, cached);
+            return cached;
+        }
+        List<Section> sections = new ArrayList<>(cached);
+        boolean changed = false;
+        for (int i = 0; i < locked.size(); i++) {
+            EventSeatSection row = locked.get(i);
+            Section section = sections.get(i);
+            if (section.sectionNo != row.getSectionNo() || section.version != versionOf(row)) {
+                sections.set(i, readSection(eventId, row.getSectionNo()));
+                changed = true;
+            }
+        }
+        if (changed) {
+            seatMaps.put(eventId, sections);
+        }
+        return sections;
+    }
+
+    /**
+     * 加锁读（当前读）整区位图：REPEATABLE READ 下普通 SELECT 读的是事务快照，可能看不到其他节点刚提交的修改
+     */
+    private Section readSection(Long eventId, int sectionNo) {
+        return toSection(eventSeatSectionMapper.selectSectionForUpdate(eventId, sectionNo));
+    }
+
+    /**
+     * 只回写改动的一排，换新版本号；事务回滚后数据库里还是旧版本号，下次加锁时发现不一致会重新读
+     */
+    private void persistRow(Long eventId, Section section, int row) {
+        long version = idGenerator.nextId();
+        eventSeatSectionMapper.updateSeatRow(eventId, section.sectionNo,
+                section.bitmap.rowByteOffset(row), section.bitmap.rowBytes(row), version);
+        section.version = version;
+    }
+
+    /**
+     * 不加锁加载座位图（展示和判断是否对号入座用，选座前会加锁校验版本号）
+     */
+    private List<Section> loadSections(Long eventId) {
+        List<EventSeatSection> rows = eventSeatSectionMapper.selectByEventId(eventId);
+        if (rows.isEmpty()) {
+            return NOT_SEATED;
+        }
+        List<Section> sections = new ArrayList<>(rows.size());
+        for (EventSeatSection row : rows) {
+            sections.add(toSection(row));
+        }
+        return sections;
+    }
+
+    private static Section toSection(EventSeatSection row) {
+        SeatBitmap bitmap = new SeatBitmap(row.getRowCount(), row.getSeatsPerRow());
+        bitmap.loadBytes(row.getSeats());
+        return new Section(row.getSectionNo(), row.getSectionName(), bitmap, versionOf(row));
+    }
+
+    private static long versionOf(EventSeatSection row) {
+        return row.getVersion() == null ? 0 : row.getVersion();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ticket.service.impl;
+
+import com.ticket.service.SoldOutService;
+import com.ticket.util.ConcurrentBitSet;
+import com.ticket.util.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+public class SoldOutServiceImpl implements SoldOutService, MessageListener {
+
+    private static final String CHANNEL = "ticket:stock:sold-out";
+    private static final String MARK = "1";
+    private static final String CLEAR = "0";
+
+    @Value("${ticket.stock.sold-out.capacity:1048576}")
+    private int capacity;
+
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    // 演出ID在位图范围内用位图，超出范围的放到 Set 里兜底
+    private ConcurrentBitSet soldOutBits;
+    private final Set<Long> soldOutOverflow = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        soldOutBits = new ConcurrentBitSet(capacity);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public boolean isSoldOut(Long eventId) {
+        if (eventId == null) {
+            return false;
+        }
+        if (soldOutBits.inRange(eventId)) {
+            return soldOutBits.get(eventId);
+        }
+        return soldOutOverflow.contains(eventId);
+    }
+
+    @Override
+    public void markSoldOut(Long eventId) {
+        if (setLocal(eventId, true)) {
+            // 只有本地状态真正变化时才广播，避免售罄后每个失败请求都发一次消息
+            redisUtil.publish(CHANNEL, MARK + ":" + eventId);
+            log.info("演出已售罄, eventId={}", eventId);
+        }
+    }
+
+    @Override
+    public void clearSoldOut(Long eventId) {
+        setLocal(eventId, false);
+        // 其他节点的状态可能和本节点不同，清除总是广播
+        redisUtil.publish(CHANNEL, CLEAR + ":" + eventId);
+    }
+
+    /**
+     * 接收其他节点（也包括自己）广播的标记变化
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator < 0) {
+            return;
+        }
+        try {
+            Long eventId = Long.valueOf(body.substring(separator + 1));
+            setLocal(eventId, MARK.equals(body.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            log.warn("售罄广播消息格式错误, body={}", body);
+        }
+    }
+
+    /**
+     * 定期清空本地标记：防止广播消息乱序（先清后标）导致标记一直残留；
+     * 清空后第一个扣减失败的请求会重新标记，代价只是每个周期每场演出一次数据库 UPDATE
+     */
+    @Scheduled(fixedDelayString = "${ticket.stock.sold-out.reset-millis:10000}")
+    public void resetLocal() {
+        soldOutBits.clearAll();
+        soldOutOverflow.clear();
+    }
+
+    /**
+     * @return true 表示本地状态发生了变化
+     */
+    private boolean setLocal(Long eventId, boolean soldOut) {
+        if (soldOutBits.inRange(eventId)) {
+            return soldOut ? soldOutBits.set(eventId) : soldOutBits.clear(eventId);
+        }
+        return soldOut ? soldOutOverflow.add(eventId) : soldOutOverflow.remove(eventId);
+    }
+}
@@ -0,0 +1,460 @@
+package com.ticket.service.impl;
+
+import com.ticket.dto.StockReconcileReport;
+import com.ticket.entity.Event;
+import com.ticket.entity.StockHold;
+import com.ticket.entity.StockLedger;
+import com.ticket.entity.StockReconcileCheckpoint;
+import com.ticket.entity.TicketOrder;
+import com.ticket.exception.BusinessException;
+import com.ticket.mapper.EventMapper;
+import com.ticket.mapper.StockHoldMapper;
+import com.ticket.mapper.StockLedgerMapper;
+import com.ticket.mapper.StockReconcileCheckpointMapper;
+import com.ticket.service.OrderPipelineService;
+import com.ticket.service.StockLedgerService;
+import com.ticket.service.StockService;
+import com.ticket.util.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 库存流水 + 增量对账
+ *
+ * 对账不扫 ticket_order：每场演出在 stock_reconcile_checkpoint 里记着"对到哪条流水、当时应有多少库存"，
+ * 每次只按主键范围汇总上次之后的新流水，再核对有新流水的演出和一小批轮询到的演出：
+ *   应有库存 = 检查点余额 + 检查点之后的流水合计（走 event_id + id 索引）
+ * 可售库存和流水合计在同一个可重复读快照里读取，两边看到的是同一批已提交的事务。
+ * 合并提交模式下扣减先在合并器事务里提交、流水随订单事务提交，中间这段由 stock_hold 预留记着，核对时按预留加回去。
+ * 连续 confirm-runs 次看到同样的差额才修复，
+ * 修复时锁住库存行重新计算一次，差额不变才调整。多节点时用 Redis 锁保证同一时刻只有一个节点对账。
+ *
+ * 高水位只推进到"最老的未提交写事务开始之前"写入的流水（查 information_schema.innodb_trx）：
+ * 流水ID是自增的，长事务晚提交时它的小ID可能落在按写入时间算出的高水位之前，永远不会被汇总；
+ * 按未提交事务的开始时间截止，高水位及以下的流水都已落定。查不到（没有 PROCESS 权限等）时本次不推进，
+ * 核对仍按检查点之后的全部流水计算，不会出错，只是检查点不前进。
+ * 异步下单队列里的命令已经在 Redis 闸门预扣、还没扣数据库，队列不为空时不修复闸门。
+ */
+@Slf4j
+@Service
+public class StockLedgerServiceImpl implements StockLedgerService {
+
+    private static final String RECONCILE_LOCK_KEY = "ticket:stock:reconcile";
+    // 全局游标在检查点表里的 eventId
+    private static final long CURSOR_EVENT_ID = 0L;
+    private static final int CHECK_BATCH_SIZE = 100;
+
+    /**
+     * 对账锁：自己持有则续期，否则尝试抢占
+     */
+    private static final RedisScript<Long> RECONCILE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end " +
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end " +
+            "return 0",
+            Long.class);
+
+    @Value("${ticket.stock.reconcile.enabled:true}")
+    private boolean enabled;
+    @Value("${ticket.stock.reconcile.settle-seconds:10}")
+    private int settleSeconds;
+    @Value("${ticket.stock.reconcile.scan-chunk:100000}")
+    private long scanChunk;
+    @Value("${ticket.stock.reconcile.sweep-size:200}")
+    private int sweepSize;
+    @Value("${ticket.stock.reconcile.confirm-runs:2}")
+    private int confirmRuns;
+    @Value("${ticket.stock.reconcile.auto-repair:true}")
+    private boolean autoRepair;
+    @Value("${ticket.stock.reconcile.lock-millis:300000}")
+    private long lockMillis;
+
+    @Autowired
+    private StockLedgerMapper stockLedgerMapper;
+    @Autowired
+    private StockReconcileCheckpointMapper checkpointMapper;
+    @Autowired
+    private StockHoldMapper stockHoldMapper;
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private RedisUtil redisUtil;
+    // 流水线本身依赖流水服务，这里延迟注入避免循环依赖
+    @Lazy
+    @Autowired
+    private OrderPipelineService orderPipelineService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 只读快照：可售库存和流水合计在同一个一致性视图里读
+    private TransactionTemplate snapshotTemplate;
+    // 修复：先锁库存行，之后每条语句都读最新提交的流水
+    private TransactionTemplate repairTemplate;
+
+    private final String nodeToken = UUID.randomUUID().toString();
+    private final ReentrantLock runLock = new ReentrantLock();
+    // 以下状态只在持有 runLock 时访问
+    private final Map<Long, Suspect> stockSuspects = new HashMap<>();
+    private final Map<Long, Suspect> gateSuspects = new HashMap<>();
+    private long sweepCursor;
+
+    /**
+     * 上次对账看到的差额和连续出现次数
+     */
+    private record Suspect(int drift, int runs) {
+    }
+
+    /**
+     * 快照里读到的一场演出：expected 为空表示还没有检查点
+     */
+    private record Observation(Long eventId, int available, Integer expected, int tail) {
+    }
+
+    @PostConstruct
+    public void init() {
+        snapshotTemplate = new TransactionTemplate(transactionManager);
+        snapshotTemplate.setReadOnly(true);
+        snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        repairTemplate = new TransactionTemplate(transactionManager);
+        repairTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Override
+    public void recordDeduct(List<TicketOrder> orders, String source) {
+        recordOrders(orders, -1, source);
+    }
+
+    @Override
+    public void recordRestore(List<TicketOrder> orders, String source) {
+        recordOrders(orders, 1, source);
+    }
+
+    private void recordOrders(List<TicketOrder> orders, int sign, String source) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<StockLedger> records = new ArrayList<>(orders.size());
+        for (TicketOrder order : orders) {
+            records.add(newLedger(order.getEventId(), order.getId(), sign * order.getQuantity(), source));
+        }
+        stockLedgerMapper.insertBatch(records);
+    }
+
+    @Override
+    public void recordAdjust(Long eventId, int delta, String source) {
+        if (delta == 0) {
+            return;
+        }
+        stockLedgerMapper.insertBatch(Collections.singletonList(newLedger(eventId, null, delta, source)));
+    }
+
+    private StockLedger newLedger(Long eventId, Long orderId, int delta, String source) {
+        StockLedger record = new StockLedger();
+        record.setEventId(eventId);
+        record.setOrderId(orderId);
+        record.setDelta(delta);
+        record.setSource(source);
+        return record;
+    }
+
+    /**
+     * 定时对账
+     */
+    @Scheduled(fixedDelayString = "${ticket.stock.reconcile.interval-millis:60000}",
+            initialDelayString = "${ticket.stock.reconcile.interval-millis:60000}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            StockReconcileReport report = reconcile();
+            log.info("库存对账完成, 高水位={}, 有新流水演出={}, 核对={}, 差额={}, 修复={}, 耗时={}ms",
+                    report.getHighWaterMark(), report.getTouchedEvents(), report.getCheckedEvents(),
+                    report.getDrifts().size(), report.getRepairedEvents(), report.getElapsedMillis());
+        } catch (BusinessException e) {
+            log.debug("跳过本次库存对账: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("库存对账失败，下次重试, error={}", e.getMessage());
+        }
+    }
+
+    @Override
+    public StockReconcileReport reconcile() {
+        if (!runLock.tryLock()) {
+            throw new BusinessException("库存对账正在进行中");
+        }
+        try {
+            Long locked = redisUtil.execute(RECONCILE_LOCK_SCRIPT, Collections.singletonList(RECONCILE_LOCK_KEY),
+                    nodeToken, String.valueOf(lockMillis));
+            if (locked != null && locked == 0) {
+                // Redis 不可用（null）时本节点照常对账，修复前会锁行重新核对
+                throw new BusinessException("其他节点正在进行库存对账");
+            }
+            return doReconcile();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private StockReconcileReport doReconcile() {
+        long start = System.currentTimeMillis();
+        StockReconcileReport report = new StockReconcileReport();
+
+        // 1. 把上次之后已落定的流水按演出汇总进检查点
+        Set<Long> toCheck = new TreeSet<>();
+        long highWaterMark = advanceCheckpoints(toCheck);
+        report.setHighWaterMark(highWaterMark);
+        report.setTouchedEvents(toCheck.size());
+
+        // 2. 再轮询一小批演出，覆盖没有新流水但被人直接改过库存的情况
+        List<Long> sweep = eventMapper.selectIdsAfter(sweepCursor, sweepSize);
+        sweepCursor = sweep.size() < sweepSize ? 0 : sweep.get(sweep.size() - 1);
+        toCheck.addAll(sweep);
+
+        // 3. 分批核对
+        List<Long> eventIds = new ArrayList<>(toCheck);
+        for (int from = 0; from < eventIds.size(); from += CHECK_BATCH_SIZE) {
+            checkBatch(eventIds.subList(from, Math.min(from + CHECK_BATCH_SIZE, eventIds.size())),
+                    highWaterMark, report);
+        }
+        report.setCheckedEvents(eventIds.size());
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    /**
+     * 按主键区间分段汇总新流水，每段一个事务（检查点和全局游标一起提交，中途失败下次从断点继续）
+     * @param touched 收集有新流水的演出ID
+     * @return 本次对到的流水ID（高水位）
+     */
+    private long advanceCheckpoints(Set<Long> touched) {
+        List<StockReconcileCheckpoint> cursors =
+                checkpointMapper.selectByEventIds(Collections.singletonList(CURSOR_EVENT_ID));
+        Long settled;
+        try {
+            settled = stockLedgerMapper.selectSettledMaxId(settleSeconds);
+        } catch (Exception e) {
+            // 读不到未提交事务时不能确定哪些流水已落定，本次不推进
+            log.warn("查询已落定流水失败，本次不推进高水位, error={}", e.getMessage());
+            return cursors.isEmpty() ? 0 : cursors.get(0).getLastLedgerId();
+        }
+        if (cursors.isEmpty()) {
+            // 第一次对账：不回放历史流水，各演出在核对时按当前库存建立检查点
+            long start = settled == null ? 0 : settled;
+            checkpointMapper.upsertBatch(Collections.singletonList(newCheckpoint(CURSOR_EVENT_ID, start, 0)));
+            return start;
+        }
+        long from = cursors.get(0).getLastLedgerId();
+        if (settled == null || settled <= from) {
+            return from;
+        }
+        while (from < settled) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(from + scanChunk, settled);
+            transactionTemplate.executeWithoutResult(status -> advanceChunk(chunkFrom, chunkTo, touched));
+            from = chunkTo;
+        }
+        return settled;
+    }
+
+    private void advanceChunk(long from, long to, Set<Long> touched) {
+        List<StockLedger> sums = stockLedgerMapper.sumDeltaGroupByEvent(from, to);
+        List<StockReconcileCheckpoint> updates = new ArrayList<>(sums.size() + 1);
+        if (!sums.isEmpty()) {
+            List<Long> eventIds = new ArrayList<>(sums.size());
+            for (StockLedger sum : sums) {
+                eventIds.add(sum.getEventId());
+            }
+            Map<Long, StockReconcileCheckpoint> checkpoints = loadCheckpoints(eventIds);
+            for (StockLedger sum : sums) {
+                touched.add(sum.getEventId());
+                StockReconcileCheckpoint checkpoint = checkpoints.get(sum.getEventId());
+                if (checkpoint == null || checkpoint.getLastLedgerId() >= to) {
+                    // 还没有检查点的演出在核对阶段按当前库存建立
+                    continue;
+                }
+                checkpoint.setBalance(checkpoint.getBalance() + sum.getDelta());
+                checkpoint.setLastLedgerId(to);
+                updates.add(checkpoint);
+            }
+        }
+        updates.add(newCheckpoint(CURSOR_EVENT_ID, to, 0));
+        checkpointMapper.upsertBatch(updates);
+    }
+
+    private void checkBatch(List<Long> eventIds, long highWaterMark, StockReconcileReport report) {
+        List<Observation> observations = snapshotTemplate.execute(status -> {
+            List<Event> events = eventMapper.selectByIds(eventIds);
+            stockService.fillAvailableStock(events);
+            Map<Long, Integer> holds = loadHolds(eventIds);
+            Map<Long, StockReconcileCheckpoint> checkpoints = loadCheckpoints(eventIds);
+            List<Observation> result = new ArrayList<>(events.size());
+            for (Event event : events) {
+                StockReconcileCheckpoint checkpoint = checkpoints.get(event.getId());
+                long mark = checkpoint == null ? highWaterMark : checkpoint.getLastLedgerId();
+                Integer tail = stockLedgerMapper.sumDeltaAfter(event.getId(), mark);
+                int tailSum = tail == null ? 0 : tail;
+                // 已扣未确认的预留还没有流水，加回去再比
+                int available = (event.getStock() == null ? 0 : event.getStock()) + holds.getOrDefault(event.getId(), 0);
+                Integer expected = checkpoint == null ? null : checkpoint.getBalance() + tailSum;
+                result.add(new Observation(event.getId(), available, expected, tailSum));
+            }
+            return result;
+        });
+        if (observations == null) {
+            return;
+        }
+
+        List<StockReconcileCheckpoint> opened = new ArrayList<>();
+        for (Observation observation : observations) {
+            if (observation.expected() == null) {
+                // 没有检查点：以快照里的库存为准倒推高水位处的余额
+                opened.add(newCheckpoint(observation.eventId(), highWaterMark,
+                        observation.available() - observation.tail()));
+                continue;
+            }
+            checkDrift(StockReconcileReport.Drift.STOCK, stockSuspects, observation.eventId(),
+                    observation.available(), observation.expected(), report);
+            Integer gate = stockService.getGateStock(observation.eventId());
+            if (gate != null) {
+                checkDrift(StockReconcileReport.Drift.GATE, gateSuspects, observation.eventId(),
+                        gate, observation.expected(), report);
+            }
+        }
+        if (!opened.isEmpty()) {
+            checkpointMapper.upsertBatch(opened);
+            report.setOpenedEvents(report.getOpenedEvents() + opened.size());
+        }
+    }
+
+    private void checkDrift(String target, Map<Long, Suspect> suspects, Long eventId,
+                            int actual, int expected, StockReconcileReport report) {
+        int drift = actual - expected;
+        if (drift == 0) {
+            suspects.remove(eventId);
+            return;
+        }
+        Suspect previous = suspects.get(eventId);
+        int runs = previous != null && previous.drift() == drift ? previous.runs() + 1 : 1;
+        suspects.put(eventId, new Suspect(drift, runs));
+
+        StockReconcileReport.Drift item = new StockReconcileReport.Drift();
+        item.setEventId(eventId);
+        item.setTarget(target);
+        item.setActual(actual);
+        item.setExpected(expected);
+        item.setConfirmedRuns(runs);
+        if (autoRepair && runs >= confirmRuns && repairable(target)) {
+            boolean repaired = StockReconcileReport.Drift.STOCK.equals(target)
+                    ? repairStock(eventId, drift)
+                    : repairGate(eventId, drift);
+            item.setRepaired(repaired);
+            if (repaired) {
+                suspects.remove(eventId);
+                report.setRepairedEvents(report.getRepairedEvents() + 1);
+            }
+        }
+        report.getDrifts().add(item);
+        log.warn("库存对账发现差额, target={}, eventId={}, actual={}, expected={}, runs={}, repaired={}",
+                target, eventId, actual, expected, runs, item.isRepaired());
+    }
+
+    /**
+     * 闸门在异步下单队列不为空时一定和数据库有差额（已预扣、未落库），这时不修复，只报告
+     */
+    private boolean repairable(String target) {
+        return !StockReconcileReport.Drift.GATE.equals(target)
+                || !orderPipelineService.isEnabled()
+                || orderPipelineService.pendingCount() == 0;
+    }
+
+    /**
+     * 锁住库存行后重新计算差额，和确认过的差额一致才调整数据库库存
+     */
+    private boolean repairStock(Long eventId, int drift) {
+        try {
+            Boolean repaired = repairTemplate.execute(status -> {
+                Integer available = stockService.lockAvailableStock(eventId);
+                List<StockReconcileCheckpoint> checkpoints =
+                        checkpointMapper.selectByEventIds(Collections.singletonList(eventId));
+                if (available == null || checkpoints.isEmpty()) {
+                    return false;
+                }
+                StockReconcileCheckpoint checkpoint = checkpoints.get(0);
+                Integer tail = stockLedgerMapper.sumDeltaAfter(eventId, checkpoint.getLastLedgerId());
+                int expected = checkpoint.getBalance() + (tail == null ? 0 : tail);
+                int held = loadHolds(Collections.singletonList(eventId)).getOrDefault(eventId, 0);
+                if (available + held - expected != drift) {
+                    // 差额变了，说明还有变化没落定，下次再确认
+                    return false;
+                }
+                stockService.repairStock(eventId, -drift);
+                return true;
+            });
+            if (Boolean.TRUE.equals(repaired)) {
+                log.error("库存对账已修复数据库库存, eventId={}, 调整量={}", eventId, -drift);
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("修复数据库库存失败, eventId={}, error={}", eventId, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * 闸门按差额相对调整（INCRBY），不会覆盖修复期间的并发预扣
+     */
+    private boolean repairGate(Long eventId, int drift) {
+        stockService.adjustGate(eventId, -drift);
+        log.error("库存对账已修复 Redis 闸门, eventId={}, 调整量={}", eventId, -drift);
+        return true;
+    }
+
+    private Map<Long, Integer> loadHolds(List<Long> eventIds) {
+        Map<Long, Integer> holds = new HashMap<>();
+        for (StockHold hold : stockHoldMapper.sumQuantityByEventIds(eventIds)) {
+            holds.put(hold.getEventId(), hold.getQuantity());
+        }
+        return holds;
+    }
+
+    private Map<Long, StockReconcileCheckpoint> loadCheckpoints(List<Long> eventIds) {
+        Map<Long, StockReconcileCheckpoint> checkpoints = new HashMap<>();
+        for (StockReconcileCheckpoint checkpoint : checkpointMapper.selectByEventIds(eventIds)) {
+            checkpoints.put(checkpoint.getEventId(), checkpoint);
+        }
+        return checkpoints;
+    }
+
+    private StockReconcileCheckpoint newCheckpoint(Long eventId, long lastLedgerId, int balance) {
+        StockReconcileCheckpoint checkpoint = new StockReconcileCheckpoint();
+        checkpoint.setEventId(eventId);
+        checkpoint.setLastLedgerId(lastLedgerId);
+        checkpoint.setBalance(balance);
+        return checkpoint;
+    }
+}
@@ -0,0 +1,440 @@
+package com.ticket.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.ticket.entity.Event;
+import com.ticket.entity.EventStockBucket;
+import com.ticket.entity.StockHold;
+import com.ticket.exception.BusinessException;
+import com.ticket.mapper.EventMapper;
+import com.ticket.mapper.EventStockBucketMapper;
+import com.ticket.mapper.StockHoldMapper;
+import com.ticket.service.SoldOutService;
+import com.ticket.service.StockService;
+import com.ticket.util.RedisUtil;
+import com.ticket.util.TransactionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Service
+public class StockServiceImpl implements StockService {
+
+    /**
+     * 预扣脚本：Key 不存在返回 -1（闸门未加载），已售罄返回 -2，库存不够本次数量返回 -3，否则扣减并返回剩余库存
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return -1 end " +
+            "stock = tonumber(stock) " +
+            "if stock <= 0 then return -2 end " +
+            "local quantity = tonumber(ARGV[1]) " +
+            "if stock < quantity then return -3 end " +
+            "return redis.call('DECRBY', KEYS[1], quantity)",
+            Long.class);
+
+    /**
+     * 回补脚本：只在 Key 存在时回补，避免闸门被移除后又被回补"复活"成一个错误的值
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "return redis.call('INCRBY', KEYS[1], tonumber(ARGV[1]))",
+            Long.class);
+
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private EventStockBucketMapper eventStockBucketMapper;
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private StockUpdateCombiner stockUpdateCombiner;
+    @Autowired
+    private SoldOutService soldOutService;
+    @Autowired
+    private StockHoldMapper stockHoldMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${ticket.stock.combiner.hold-seconds:60}")
+    private int holdSeconds;
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    // 当前事务已锁住的桶：演出ID → 桶编号位图（一个 long，所以最多 64 个桶）
+    private static final Object HELD_BUCKETS = new Object();
+
+    // 演出分桶数缓存（分桶数创建后不变，删除演出时清理）
+    private final Map<Long, Integer> bucketCounts = new ConcurrentHashMap<>();
+
+    @Override
+    public ReserveResult tryReserve(Long eventId, int quantity) {
+        Long remain = redisUtil.execute(RESERVE_SCRIPT,
+                Collections.singletonList(buildGateKey(eventId)), String.valueOf(quantity));
+        if (remain == null || remain == -1) {
+            // Redis 不可用或闸门未加载：降级走数据库，由 UPDATE ... AND stock >= ? 兜底
+            return ReserveResult.BYPASS;
+        }
+        if (remain == -2) {
+            soldOutService.markSoldOut(eventId);
+            return ReserveResult.SOLD_OUT;
+        }
+        if (remain == -3) {
+            return ReserveResult.SOLD_OUT;
+        }
+        if (remain == 0) {
+            // 闸门已扣到0，后面的请求不可能再预扣成功
+            soldOutService.markSoldOut(eventId);
+        }
+        return ReserveResult.RESERVED;
+    }
+
+    @Override
+    public void releaseReservation(Long eventId, int quantity) {
+        Long result = redisUtil.execute(RELEASE_SCRIPT,
+                Collections.singletonList(buildGateKey(eventId)), String.valueOf(quantity));
+        if (result == null) {
+            // 回补失败只会让闸门偏小（少卖不超卖），下次开票/更新演出时会重新加载
+            log.warn("Redis 库存回补失败, eventId={}, quantity={}", eventId, quantity);
+        }
+        if (soldOutService.isSoldOut(eventId)) {
+            soldOutService.clearSoldOut(eventId);
+        }
+    }
+
+    @Override
+    public boolean deductStock(Long eventId, int quantity) {
+        boolean success = doDeductStock(eventId, quantity);
+        if (!success && getAvailableStock(eventId) <= 0) {
+            // 扣减失败且确实一张不剩，标记售罄，后续请求在 Controller 里直接拒绝
+            soldOutService.markSoldOut(eventId);
+        }
+        return success;
+    }
+
+    private boolean doDeductStock(Long eventId, int quantity) {
+        int bucketCount = getBucketCount(eventId);
+        if (bucketCount > 1) {
+            return deductFromBuckets(eventId, bucketCount, quantity);
+        }
+        if (stockUpdateCombiner.isEnabled()) {
+            // 合并提交：和同一演出的其他请求合成一次 UPDATE，在合并器自己的事务里提交，同时留下一条预留
+            Long holdId = stockUpdateCombiner.deduct(eventId, quantity);
+            if (holdId == null) {
+                return false;
+            }
+            // 在本事务里删掉预留才算确认：本事务提交则扣减生效；回滚或宕机时预留还在，由回滚回调或超时清扫还回库存
+            if (stockHoldMapper.deleteById(holdId) <= 0) {
+                // 预留已被超时清扫释放（库存已还回去），本次扣减作废
+                throw new BusinessException("库存预留已过期，请重试");
+            }
+            TransactionUtil.afterRollback(() -> stockUpdateCombiner.releaseHold(eventId, holdId, quantity));
+            return true;
+        }
+        // 对应 SQL: UPDATE event SET stock = stock - ? WHERE id = ? AND stock >= ?
+        return eventMapper.decreaseStock(eventId, quantity) > 0;
+    }
+
+    @Override
+    public boolean restoreStock(Long eventId, int quantity) {
+        // 有库存还回来了，提交后清除售罄标记
+        TransactionUtil.afterCommit(() -> soldOutService.clearSoldOut(eventId));
+        int bucketCount = getBucketCount(eventId);
+        if (bucketCount > 1) {
+            // 本事务已锁住这场演出的桶时还到编号最大的那个（不用新加锁），否则随机还到一个桶里
+            Map<Long, Long> held = heldBuckets();
+            long mask = held.getOrDefault(eventId, 0L);
+            int bucketNo = mask == 0 ? ThreadLocalRandom.current().nextInt(bucketCount) : highestBucket(mask);
+            if (eventStockBucketMapper.increaseStock(eventId, bucketNo, quantity) <= 0) {
+                return false;
+            }
+            held.put(eventId, mask | (1L << bucketNo));
+            return true;
+        }
+        // 回补在调用方事务里直接执行（开启合并器时也一样：取消远少于下单，和订单状态一起提交或回滚）
+        return eventMapper.increaseStock(eventId, quantity) > 0;
+    }
+
+    /**
+     * 超时清扫：合并器扣了库存、调用方却一直没确认的预留（调用方回滚后回调没执行、宕机、等待超时放弃），
+     * 删掉预留并还回库存。删除和回补在一个事务里，删除带行锁，和调用方确认、其他节点清扫并发时只有一方生效。
+     * 合并器关闭后也照常清扫，把开启期间留下的预留还完
+     */
+    @Scheduled(fixedDelayString = "${ticket.stock.combiner.sweep-millis:10000}")
+    public void sweepExpiredHolds() {
+        List<StockHold> expired;
+        try {
+            expired = stockHoldMapper.selectExpired(holdSeconds, SWEEP_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("查询超时库存预留失败, error={}", e.getMessage());
+            return;
+        }
+        for (StockHold hold : expired) {
+            try {
+                Boolean released = transactionTemplate.execute(status -> {
+                    if (stockHoldMapper.deleteById(hold.getId()) <= 0) {
+                        return false;
+                    }
+                    eventMapper.increaseStock(hold.getEventId(), hold.getQuantity());
+                    return true;
+                });
+                if (Boolean.TRUE.equals(released)) {
+                    log.warn("库存预留超时未确认，已还回库存, eventId={}, holdId={}, quantity={}",
+                            hold.getEventId(), hold.getId(), hold.getQuantity());
+                    soldOutService.clearSoldOut(hold.getEventId());
+                }
+            } catch (Exception e) {
+                log.warn("释放超时库存预留失败，下次重试, holdId={}, error={}", hold.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void initBuckets(Long eventId, Integer bucketCount, Integer stock) {
+        int count = bucketCount == null ? 0 : bucketCount;
+        if (count <= 1) {
+            return;
+        }
+        if (count > MAX_BUCKET_COUNT) {
+            throw new BusinessException("库存分桶数不能超过" + MAX_BUCKET_COUNT);
+        }
+        int total = stock == null ? 0 : stock;
+        eventStockBucketMapper.deleteByEventId(eventId);
+        List<EventStockBucket> buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            EventStockBucket bucket = new EventStockBucket();
+            bucket.setEventId(eventId);
+            bucket.setBucketNo(i);
+            // 平均分配，余数给前面的桶
+            bucket.setStock(total / count + (i < total % count ? 1 : 0));
+            buckets.add(bucket);
+        }
+        eventStockBucketMapper.insertBatch(buckets);
+        bucketCounts.put(eventId, count);
+    }
+
+    @Override
+    public void fillAvailableStock(List<Event> events) {
+        List<Long> shardedIds = new ArrayList<>();
+        for (Event event : events) {
+            if (event.getBucketCount() != null && event.getBucketCount() > 1) {
+                shardedIds.add(event.getId());
+            }
+        }
+        if (shardedIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> sums = new HashMap<>();
+        for (EventStockBucket sum : eventStockBucketMapper.sumStockByEventIds(shardedIds)) {
+            sums.put(sum.getEventId(), sum.getStock());
+        }
+        for (Event event : events) {
+            if (event.getBucketCount() != null && event.getBucketCount() > 1) {
+                event.setStock(sums.getOrDefault(event.getId(), 0));
+            }
+        }
+    }
+
+    /**
+     * 分桶扣减
+     *
+     * 同一个事务里可能有多次扣减 / 回补（异步下单整批、购物车、批量取消），REPEATABLE READ 下
+     * 没扣成功的 UPDATE 也会把那一行锁到事务结束。为了不和其他事务互相死锁，一个事务对同一场演出
+     * 只按桶编号递增加锁：已持有的桶随便用，新加锁的桶编号必须大于已持有的最大编号。
+     *
+     * 1. 不加锁快照读出各桶库存，从随机位置开始挑看起来够的桶扣减（分散热点）；
+     *    快照可能已过期，扣不成功后只会再试编号更大的桶
+     * 2. 单桶都不够时（临近售罄，各桶只剩零头），按编号顺序锁住所有允许加锁的桶跨桶扣减。
+     *    编号比已持有的桶小、又没持有的桶这次用不上，不够时按库存不足处理（只会少卖，下一个请求还能买到）
+     */
+    private boolean deductFromBuckets(Long eventId, int bucketCount, int quantity) {
+        Map<Long, Long> held = heldBuckets();
+        long mask = held.getOrDefault(eventId, 0L);
+        int[] stocks = new int[bucketCount];
+        for (EventStockBucket bucket : eventStockBucketMapper.selectByEventId(eventId)) {
+            if (bucket.getBucketNo() < bucketCount) {
+                stocks[bucket.getBucketNo()] = bucket.getStock();
+            }
+        }
+        int start = ThreadLocalRandom.current().nextInt(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            int bucketNo = (start + i) % bucketCount;
+            if (stocks[bucketNo] < quantity || !lockable(mask, bucketNo)) {
+                continue;
+            }
+            boolean success = eventStockBucketMapper.decreaseStock(eventId, bucketNo, quantity) > 0;
+            // 成功或失败这一行都已被锁住
+            mask |= 1L << bucketNo;
+            held.put(eventId, mask);
+            if (success) {
+                return true;
+            }
+        }
+
+        List<Integer> bucketNos = new ArrayList<>(bucketCount);
+        for (int bucketNo = 0; bucketNo < bucketCount; bucketNo++) {
+            if (lockable(mask, bucketNo)) {
+                bucketNos.add(bucketNo);
+                mask |= 1L << bucketNo;
+            }
+        }
+        List<EventStockBucket> buckets = eventStockBucketMapper.selectByBucketNosForUpdate(eventId, bucketNos);
+        held.put(eventId, mask);
+        int total = 0;
+        for (EventStockBucket bucket : buckets) {
+            total += bucket.getStock();
+        }
+        if (total < quantity) {
+            return false;
+        }
+        int remaining = quantity;
+        for (EventStockBucket bucket : buckets) {
+            if (remaining == 0) {
+                break;
+            }
+            int take = Math.min(bucket.getStock(), remaining);
+            if (take > 0) {
+                eventStockBucketMapper.decreaseStock(eventId, bucket.getBucketNo(), take);
+                remaining -= take;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 当前事务已锁住的桶（没有事务时每条语句自动提交，不记录）
+     */
+    private Map<Long, Long> heldBuckets() {
+        return TransactionUtil.resource(HELD_BUCKETS, HashMap::new);
+    }
+
+    /**
+     * 已持有，或者编号大于已持有的最大编号（没持有任何桶时都可以）
+     */
+    private static boolean lockable(long heldMask, int bucketNo) {
+        return (heldMask & (1L << bucketNo)) != 0 || bucketNo > highestBucket(heldMask);
+    }
+
+    private static int highestBucket(long heldMask) {
+        return 63 - Long.numberOfLeadingZeros(heldMask);
+    }
+
+    @Override
+    public int getAvailableStock(Long eventId) {
+        if (getBucketCount(eventId) > 1) {
+            Integer sum = eventStockBucketMapper.sumStock(eventId);
+            return sum == null ? 0 : sum;
+        }
+        Event event = eventMapper.selectById(eventId);
+        return event == null || event.getStock() == null ? 0 : event.getStock();
+    }
+
+    /**
+     * 演出的分桶数（本地缓存，首次查库），0 或 1 表示未分桶
+     */
+    private int getBucketCount(Long eventId) {
+        Integer count = bucketCounts.get(eventId);
+        if (count == null) {
+            Event event = eventMapper.selectById(eventId);
+            if (event == null) {
+                return 0;
+            }
+            count = event.getBucketCount() == null ? 0 : event.getBucketCount();
+            bucketCounts.put(eventId, count);
+        }
+        return count;
+    }
+
+    @Override
+    public void loadStock(Long eventId, Integer stock) {
+        redisUtil.set(buildGateKey(eventId), stock == null ? 0 : stock);
+        // 管理员开票/改库存，重新放开售罄标记
+        soldOutService.clearSoldOut(eventId);
+    }
+
+    @Override
+    public void evictStock(Long eventId) {
+        redisUtil.delete(buildGateKey(eventId));
+        bucketCounts.remove(eventId);
+        soldOutService.clearSoldOut(eventId);
+    }
+
+    @Override
+    public Integer lockAvailableStock(Long eventId) {
+        if (getBucketCount(eventId) > 1) {
+            List<EventStockBucket> buckets = eventStockBucketMapper.selectByEventIdForUpdate(eventId);
+            if (buckets.isEmpty()) {
+                return null;
+            }
+            int total = 0;
+            for (EventStockBucket bucket : buckets) {
+                total += bucket.getStock();
+            }
+            return total;
+        }
+        return eventMapper.selectStockForUpdate(eventId);
+    }
+
+    @Override
+    public void repairStock(Long eventId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (getBucketCount(eventId) <= 1) {
+            eventMapper.adjustStock(eventId, delta);
+        } else if (delta > 0) {
+            eventStockBucketMapper.increaseStock(eventId, 0, delta);
+        } else {
+            // 多出来的库存按桶编号顺序扣掉（桶已被 lockAvailableStock 锁住）
+            int remaining = -delta;
+            for (EventStockBucket bucket : eventStockBucketMapper.selectByEventIdForUpdate(eventId)) {
+                int take = Math.min(bucket.getStock(), remaining);
+                if (take > 0) {
+                    eventStockBucketMapper.decreaseStock(eventId, bucket.getBucketNo(), take);
+                    remaining -= take;
+                }
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        }
+        if (delta > 0) {
+            TransactionUtil.afterCommit(() -> soldOutService.clearSoldOut(eventId));
+        }
+    }
+
+    @Override
+    public Integer getGateStock(Long eventId) {
+        return redisUtil.get(buildGateKey(eventId), new TypeReference<Integer>() {});
+    }
+
+    @Override
+    public void adjustGate(Long eventId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Long result = redisUtil.execute(RELEASE_SCRIPT,
+                Collections.singletonList(buildGateKey(eventId)), String.valueOf(delta));
+        if (result != null && result > 0 && soldOutService.isSoldOut(eventId)) {
+            soldOutService.clearSoldOut(eventId);
+        }
+    }
+
+    private String buildGateKey(Long eventId) {
+        // stock:gate:123
+        return redisUtil.buildKey("stock", "gate", eventId.toString());
+    }
+}
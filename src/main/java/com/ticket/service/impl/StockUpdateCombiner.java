@@ -0,0 +1,341 @@
+package com.ticket.service.impl;
+
+import com.ticket.exception.BusinessException;
+import com.ticket.entity.StockHold;
+import com.ticket.mapper.EventMapper;
+import com.ticket.mapper.StockHoldMapper;
+import com.ticket.util.IdGenerator;
+import com.ticket.util.ThreadFactories;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.boot.autoconfigure.MybatisProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 库存更新合并器（group commit）
+ *
+ * 热门演出开抢时，大量扣减/回补都落在 event 表同一行上，每个请求单独加锁、提交代价很高。
+ * 合并器把同一场演出在一个短窗口内（window-millis 或攒够 max-batch 个）的请求收集起来：
+ * 在一个事务里 SELECT ... FOR UPDATE 读出库存，按到达顺序逐个判定成败，最后只写一次净变化量。
+ * 每个调用方拿到自己请求的结果，行锁持有次数和提交次数都降到原来的几十分之一。
+ *
+ * 合并器在自己的事务里提交，和调用方事务不是同一个：每个扣减成功的请求在合并事务里同时写一条 stock_hold 预留，
+ * 调用方在自己的事务里删掉这条预留才算确认（见 StockServiceImpl）。调用方回滚、宕机、等待超时放弃时预留留在库里，
+ * 由回滚回调或超时清扫把库存还回去，补偿不依赖内存里的任务。回补库存不走合并器，直接在调用方事务里执行。
+ *
+ * 合并器使用自己的连接池（连接数 = 合并线程数），不和业务共用 Hikari 主连接池：
+ * 调用方是拿着主连接池的连接（自己的事务）在等结果的，合并线程如果也从主连接池取连接，
+ * 并发调用方占满连接池时合并线程取不到连接、调用方又在等合并线程，只能等到取连接超时。
+ */
+@Slf4j
+@Component
+public class StockUpdateCombiner {
+
+    private static final int PENDING = 0;
+    private static final int TAKEN = 1;     // 已被合并线程取走，结果一定会给出
+    private static final int ABANDONED = 2; // 调用方等待超时放弃，合并线程跳过
+
+    @Value("${ticket.stock.combiner.enabled:false}")
+    private boolean enabled;
+    @Value("${ticket.stock.combiner.window-millis:2}")
+    private long windowMillis;
+    @Value("${ticket.stock.combiner.max-batch:200}")
+    private int maxBatch;
+    @Value("${ticket.stock.combiner.wait-timeout-millis:3000}")
+    private long waitTimeoutMillis;
+    @Value("${ticket.stock.combiner.threads:4}")
+    private int threads;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+    @Autowired
+    private MybatisProperties mybatisProperties;
+    @Autowired
+    private IdGenerator idGenerator;
+
+    // 以下四个都绑定合并器专用的连接池
+    private HikariDataSource dataSource;
+    private EventMapper eventMapper;
+    private StockHoldMapper stockHoldMapper;
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService scheduler;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * 一次库存变化请求：扣减（delta 为负，成功时写入 holdId 预留）或释放预留（delta 为正，删掉 holdId 才回补）
+     */
+    private static final class StockRequest {
+        final int delta;
+        final Long holdId;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final AtomicInteger state = new AtomicInteger(PENDING);
+
+        StockRequest(int delta, Long holdId) {
+            this.delta = delta;
+            this.holdId = holdId;
+        }
+    }
+
+    /**
+     * 每场演出一个槽位：等待合并的请求队列 + 调度标记 + 保证同一演出同时只有一个合并线程
+     */
+    private static final class Slot {
+        final Long eventId;
+        final ConcurrentLinkedQueue<StockRequest> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final ReentrantLock flushLock = new ReentrantLock();
+
+        Slot(Long eventId) {
+            this.eventId = eventId;
+        }
+    }
+
+    @PostConstruct
+    public void start() throws Exception {
+        if (!enabled) {
+            return;
+        }
+        // 合并只在 threads 个合并线程上执行，每个线程同时最多用一个连接
+        dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("stock-combiner");
+        dataSource.setMaximumPoolSize(threads);
+        dataSource.setMinimumIdle(threads);
+        dataSource.setConnectionTimeout(waitTimeoutMillis);
+
+        // 同一套 Mapper XML 再建一个绑定专用连接池的 SqlSessionFactory
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setMapperLocations(mybatisProperties.resolveMapperLocations());
+        factoryBean.setTypeAliasesPackage(mybatisProperties.getTypeAliasesPackage());
+        Configuration configuration = new Configuration();
+        if (mybatisProperties.getConfiguration() != null) {
+            mybatisProperties.getConfiguration().applyTo(configuration);
+        }
+        factoryBean.setConfiguration(configuration);
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(factoryBean.getObject());
+        eventMapper = sqlSessionTemplate.getMapper(EventMapper.class);
+        stockHoldMapper = sqlSessionTemplate.getMapper(StockHoldMapper.class);
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // 合并事务最多执行 wait-timeout-millis（向上取整到秒），调用方的等待也因此有上限
+        transactionTemplate.setTimeout((int) Math.max(1, (waitTimeoutMillis + 999) / 1000));
+
+        scheduler = Executors.newScheduledThreadPool(threads, ThreadFactories.named("stock-combiner-", virtualThreads));
+        log.info("库存合并器已启动, windowMillis={}, maxBatch={}, 专用连接数={}", windowMillis, maxBatch, threads);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 扣减库存并等待结果，成功时库存已在合并事务里提交，同时留下一条预留
+     *
+     * @return 预留ID，调用方在自己的事务里删掉它确认扣减；库存不足或演出不存在返回 null
+     */
+    public Long deduct(Long eventId, int quantity) {
+        StockRequest request = enqueue(eventId, new StockRequest(-quantity, idGenerator.nextId()));
+        try {
+            return result(request.future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS), request);
+        } catch (TimeoutException e) {
+            if (request.state.compareAndSet(PENDING, ABANDONED)) {
+                // 还没被合并线程取走，放弃后不会再生效
+                throw new BusinessException("库存服务繁忙，请稍后重试");
+            }
+            // 已经被取走，结果马上就会给出，再等一段（合并事务本身有超时）
+            return join(eventId, request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (request.state.compareAndSet(PENDING, ABANDONED)) {
+                throw new BusinessException("库存更新被中断");
+            }
+            return join(eventId, request);
+        } catch (ExecutionException e) {
+            throw new BusinessException("库存更新失败: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 释放一条还没确认的预留并回补库存（调用方事务回滚后调用），不等待结果
+     * 预留已被确认或已释放时什么都不做；这里失败时预留还在库里，超时清扫会再释放一次
+     */
+    public void releaseHold(Long eventId, Long holdId, int quantity) {
+        enqueue(eventId, new StockRequest(quantity, holdId)).future.whenComplete((released, error) -> {
+            if (error != null) {
+                log.warn("释放库存预留失败，等待超时清扫, eventId={}, holdId={}, error={}", eventId, holdId, error.getMessage());
+            }
+        });
+    }
+
+    private static Long result(Boolean success, StockRequest request) {
+        return Boolean.TRUE.equals(success) ? request.holdId : null;
+    }
+
+    /**
+     * 等待已被合并线程取走的请求，最多再等 wait-timeout-millis
+     * 仍然没有结果时按失败返回给调用方；之后如果合并事务提交成功，释放它留下的预留
+     */
+    private Long join(Long eventId, StockRequest request) {
+        try {
+            return result(request.future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS), request);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            request.future.thenAccept(success -> {
+                if (Boolean.TRUE.equals(success)) {
+                    log.warn("库存合并结果在调用方放弃后才提交，释放预留, eventId={}, holdId={}", eventId, request.holdId);
+                    releaseHold(eventId, request.holdId, -request.delta);
+                }
+            });
+            throw new BusinessException("库存服务繁忙，请稍后重试");
+        } catch (ExecutionException e) {
+            throw new BusinessException("库存更新失败: " + e.getCause().getMessage());
+        }
+    }
+
+    private StockRequest enqueue(Long eventId, StockRequest request) {
+        if (scheduler == null) {
+            throw new IllegalStateException("库存合并器未启用");
+        }
+        Slot slot = slots.computeIfAbsent(eventId, Slot::new);
+        slot.queue.add(request);
+        int size = slot.size.incrementAndGet();
+        if (size >= maxBatch) {
+            // 攒够一批，立即合并
+            scheduler.execute(() -> flush(slot));
+        } else if (slot.scheduled.compareAndSet(false, true)) {
+            // 窗口内第一个请求负责安排一次延迟合并
+            scheduler.schedule(() -> flush(slot), windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return request;
+    }
+
+    private void flush(Slot slot) {
+        if (!slot.flushLock.tryLock()) {
+            // 已有线程在合并这场演出，它会在循环里把新请求一并处理
+            return;
+        }
+        try {
+            slot.scheduled.set(false);
+            while (true) {
+                List<StockRequest> batch = drain(slot);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                apply(slot.eventId, batch);
+            }
+        } finally {
+            slot.flushLock.unlock();
+        }
+        // 释放锁后再检查一次，防止释放前一瞬间进来的请求没人处理
+        if (!slot.queue.isEmpty() && slot.scheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> flush(slot));
+        }
+    }
+
+    private List<StockRequest> drain(Slot slot) {
+        List<StockRequest> batch = new ArrayList<>();
+        StockRequest request;
+        while (batch.size() < maxBatch && (request = slot.queue.poll()) != null) {
+            slot.size.decrementAndGet();
+            if (request.state.compareAndSet(PENDING, TAKEN)) {
+                batch.add(request);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 一个事务完成一批请求：锁行读库存 -> 按顺序判定 -> 写净变化量 + 成功扣减的预留
+     */
+    private void apply(Long eventId, List<StockRequest> batch) {
+        boolean[] results = new boolean[batch.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Integer stock = eventMapper.selectStockForUpdate(eventId);
+                if (stock == null) {
+                    // 演出不存在，全部失败
+                    return;
+                }
+                int remaining = stock;
+                int net = 0;
+                List<StockHold> holds = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    StockRequest request = batch.get(i);
+                    if (request.delta >= 0) {
+                        // 释放预留：删掉了才回补，已被确认或已释放的不再回补
+                        if (stockHoldMapper.deleteById(request.holdId) > 0) {
+                            remaining += request.delta;
+                            net += request.delta;
+                            results[i] = true;
+                        }
+                    } else if (remaining + request.delta >= 0) {
+                        remaining += request.delta;
+                        net += request.delta;
+                        results[i] = true;
+                        StockHold hold = new StockHold();
+                        hold.setId(request.holdId);
+                        hold.setEventId(eventId);
+                        hold.setQuantity(-request.delta);
+                        holds.add(hold);
+                    }
+                }
+                if (net != 0) {
+                    eventMapper.adjustStock(eventId, net);
+                }
+                if (!holds.isEmpty()) {
+                    stockHoldMapper.insertBatch(holds);
+                }
+            });
+        } catch (Exception e) {
+            log.error("库存合并提交失败, eventId={}, batchSize={}", eventId, batch.size(), e);
+            for (StockRequest request : batch) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results[i]);
+        }
+    }
+}
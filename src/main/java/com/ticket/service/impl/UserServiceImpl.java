@@ -8,7 +8,10 @@ import com.ticket.exception.BusinessException;
 import com.ticket.mapper.UserMapper;
 import com.ticket.service.UserService;
 import com.ticket.util.AuditUtil;
+import com.ticket.util.CountCache;
 import com.ticket.util.JwtUtil;
+import com.ticket.util.PageCursor;
+import com.ticket.util.TransactionUtil;
 import com.ticket.util.UserConvertor;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -29,6 +32,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserConvertor userConvertor;
 
+    @Autowired
+    private CountCache countCache;
+
 
 
     @Override
@@ -50,6 +56,7 @@ public class UserServiceImpl implements UserService {
             // 无 request 场景，使用 userId 版本的审计方法，此处创建人为空即可
             AuditUtil.setCreateAuditFields(user, (Long) null);
             userMapper.insert(user);
+            invalidateUserCounts();
         } else {
             // 3. 验证密码和状态（管理端可禁用用户）
             if (!password.equals(user.getPassword())) {
@@ -102,6 +109,7 @@ public class UserServiceImpl implements UserService {
         if (rowsAffected <= 0) {
             return Result.error("用户更新失败，未找到匹配记录或数据未变更");
         }
+        invalidateUserCounts();
         return Result.success("用户更新成功");
     }
 
@@ -143,6 +151,7 @@ public class UserServiceImpl implements UserService {
         if (rowsAffected <= 0) {
             return Result.error("用户更新失败，未找到匹配记录或数据未变更");
         }
+        invalidateUserCounts();
         return Result.success("用户更新成功");
     }
 
@@ -150,6 +159,7 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public Result<String> deleteUser(Long id) {
         userMapper.deleteById(id);
+        invalidateUserCounts();
         return Result.success("用户删除成功");
     }
 
@@ -181,17 +191,33 @@ public class UserServiceImpl implements UserService {
         }
 
         int offset = (pageRequest.getPage() - 1) * pageRequest.getSize();
-        int size = pageRequest.getSize();
+        // 多查一行判断是否有下一页
+        int fetchSize = pageRequest.getFetchSize();
 
-        // 2. 查询列表 + 总数
+        // 2. 查询列表；请求了总数才查总数（走计数缓存）
         // TODO：如果图方便，可以了解Mybatis的分页插件
-        List<User> list = userMapper.selectByPage(username, status, offset, size);
-        Long total = userMapper.countByPage(username, status);
+        List<User> list;
+        if (pageRequest.isCursorMode()) {
+            // 游标分页：按注册时间倒序从上一页最后一个用户往后取
+            PageCursor cursor = PageCursor.decode(pageRequest.getCursor());
+            list = userMapper.selectByPageAfter(username, status,
+                    cursor == null ? null : cursor.getCreatedTime(),
+                    cursor == null ? null : cursor.getId(),
+                    fetchSize);
+        } else {
+            list = userMapper.selectByPage(username, status, offset, fetchSize);
+        }
+        boolean hasNext = PageResult.trimToSize(list, pageRequest.getSize());
+        Long total = pageRequest.isTotalRequested()
+                ? countCache.count(CountCache.USERS, CountCache.key(username, status),
+                        () -> userMapper.countByPage(username, status))
+                : null;
 
         // 3. 脱敏：不返回密码
         list.forEach(u -> u.setPassword(null));
 
-        return new PageResult<>(list, total, pageRequest);
+        return new PageResult<>(list, total, pageRequest, hasNext,
+                PageCursor.next(pageRequest, list, hasNext, User::getCreatedTime, User::getId));
     }
 
     @Override
@@ -220,9 +246,14 @@ public class UserServiceImpl implements UserService {
         if (rows <= 0) {
             return Result.error("更新用户状态失败");
         }
+        invalidateUserCounts();
         return Result.success("更新用户状态成功");
     }
 
+    /**
+     * 用户名 / 状态变化或增删用户后，提交后失效管理端用户列表的总数缓存
+     */
+    private void invalidateUserCounts() {
+        TransactionUtil.afterCommit(() -> countCache.invalidate(CountCache.USERS));
+    }
 }
-
-
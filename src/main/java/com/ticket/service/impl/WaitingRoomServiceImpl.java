@@ -0,0 +1,170 @@
+package com.ticket.service.impl;
+
+import com.ticket.common.Result;
+import com.ticket.dto.WaitingRoomStatus;
+import com.ticket.service.WaitingRoomService;
+import com.ticket.service.WaitingRoomStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class WaitingRoomServiceImpl implements WaitingRoomService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${ticket.waiting-room.token-secret:ticket-system-waiting-room-secret}")
+    private String tokenSecret;
+    @Value("${ticket.waiting-room.token-ttl-seconds:300}")
+    private long tokenTtlSeconds;
+
+    @Autowired
+    private WaitingRoomStore waitingRoomStore;
+
+    // 开启排队的演出 -> 放行速率，本地缓存，避免每次下单都查一次存储
+    private volatile Map<Long, Integer> rooms = Collections.emptyMap();
+
+    @Override
+    public Result<String> open(Long eventId, Integer ratePerSecond) {
+        if (ratePerSecond == null || ratePerSecond <= 0) {
+            return Result.error("放行速率必须大于0");
+        }
+        waitingRoomStore.open(eventId, ratePerSecond);
+        refreshRooms();
+        return Result.success("排队已开启，每秒放行" + ratePerSecond + "人");
+    }
+
+    @Override
+    public Result<String> close(Long eventId) {
+        waitingRoomStore.close(eventId);
+        refreshRooms();
+        return Result.success("排队已关闭");
+    }
+
+    @Override
+    public boolean isGated(Long eventId) {
+        return rooms.containsKey(eventId);
+    }
+
+    @Override
+    public Result<WaitingRoomStatus> join(Long eventId, Long userId) {
+        if (!isGated(eventId)) {
+            return Result.success(notGated(eventId));
+        }
+        long sequence = waitingRoomStore.join(eventId, userId);
+        if (sequence <= 0) {
+            return Result.error("排队失败，请稍后重试");
+        }
+        return Result.success(buildStatus(eventId, userId, sequence));
+    }
+
+    @Override
+    public Result<WaitingRoomStatus> getStatus(Long eventId, Long userId) {
+        if (!isGated(eventId)) {
+            return Result.success(notGated(eventId));
+        }
+        Long sequence = waitingRoomStore.getSequence(eventId, userId);
+        if (sequence == null) {
+            return Result.error("尚未排队，请先进入排队");
+        }
+        return Result.success(buildStatus(eventId, userId, sequence));
+    }
+
+    @Override
+    public boolean verifyAdmissionToken(Long eventId, Long userId, String token) {
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            return false;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(token.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (expiresAt < System.currentTimeMillis()) {
+            return false;
+        }
+        byte[] expected = sign(eventId, userId, expiresAt).getBytes(StandardCharsets.UTF_8);
+        byte[] actual = token.substring(separator + 1).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * 每秒按各演出的放行速率推进水位线
+     */
+    @Scheduled(fixedRate = 1000)
+    public void admit() {
+        refreshRooms();
+        rooms.forEach((eventId, rate) -> {
+            try {
+                waitingRoomStore.advance(eventId, rate);
+            } catch (Exception e) {
+                log.warn("排队放行失败, eventId={}, error={}", eventId, e.getMessage());
+            }
+        });
+    }
+
+    private void refreshRooms() {
+        try {
+            rooms = waitingRoomStore.listRooms();
+        } catch (Exception e) {
+            // 存储暂时不可用时沿用上一次的结果
+            log.warn("刷新排队演出列表失败, error={}", e.getMessage());
+        }
+    }
+
+    private WaitingRoomStatus buildStatus(Long eventId, Long userId, long sequence) {
+        WaitingRoomStatus status = new WaitingRoomStatus();
+        status.setEventId(eventId);
+        status.setGated(true);
+        long ahead = sequence - waitingRoomStore.getAdmitted(eventId);
+        if (ahead > 0) {
+            status.setPosition(ahead);
+            status.setAdmitted(false);
+            return status;
+        }
+        // 已放行：发放准入令牌（无状态的 HMAC 签名，校验时不需要查存储）
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(tokenTtlSeconds);
+        status.setPosition(0L);
+        status.setAdmitted(true);
+        status.setAdmissionToken(expiresAt + "." + sign(eventId, userId, expiresAt));
+        status.setTokenExpiresAt(expiresAt);
+        return status;
+    }
+
+    private WaitingRoomStatus notGated(Long eventId) {
+        WaitingRoomStatus status = new WaitingRoomStatus();
+        status.setEventId(eventId);
+        status.setGated(false);
+        status.setPosition(0L);
+        status.setAdmitted(true);
+        return status;
+    }
+
+    private String sign(Long eventId, Long userId, long expiresAt) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(tokenSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] digest = mac.doFinal((eventId + ":" + userId + ":" + expiresAt).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("准入令牌签名失败", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.ticket.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定长布隆过滤器（存放 long 型ID），底层是 ConcurrentBitSet，并发 put / mightContain 都无锁
+ *
+ * mightContain 返回 false 表示一定不存在；返回 true 表示可能存在（误判率由创建时的参数决定）。
+ * 不支持删除，被删除的ID要等下次重建才会移出。
+ */
+public class BloomFilter {
+
+    // ConcurrentBitSet 按 int 分配，留出一个 long 的余量避免溢出
+    private static final long MAX_BITS = Integer.MAX_VALUE - 64L;
+
+    private final ConcurrentBitSet bits;
+    private final int bitSize;
+    private final int hashCount;
+    private final LongAdder insertions = new LongAdder();
+
+    private BloomFilter(int bitSize, int hashCount) {
+        this.bits = new ConcurrentBitSet(bitSize);
+        this.bitSize = bitSize;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * @param expectedInsertions 预计存放的ID数
+     * @param fpp 期望误判率，例如 0.001
+     */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("误判率必须在0到1之间: " + fpp);
+        }
+        long n = Math.max(1, expectedInsertions);
+        // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, Math.min(m, MAX_BITS));
+        int k = (int) Math.max(1, Math.round((double) m / n * Math.log(2)));
+        return new BloomFilter((int) m, k);
+    }
+
+    /**
+     * @return true 表示至少有一位从0变成1（ID之前一定不在过滤器里）
+     */
+    public boolean put(long value) {
+        long hash = mix(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            changed |= bits.set(index(h1 + i * h2));
+        }
+        if (changed) {
+            insertions.increment();
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long value) {
+        long hash = mix(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            if (!bits.get(index(h1 + i * h2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 已放入的不同ID数（近似，误判为已存在的ID不计入）
+     */
+    public long insertions() {
+        return insertions.sum();
+    }
+
+    /**
+     * 按当前放入数量估算的误判率：(1 - e^(-k*n/m))^k
+     */
+    public double estimatedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions() / bitSize), hashCount);
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitSize;
+    }
+
+    /**
+     * 64 位混淆（MurmurHash3 fmix64），让连续的自增ID也能均匀分布
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 预先序列化好的响应体：命中时 Controller 直接把字节写回客户端，不再反序列化、也不再序列化
+ *
+ * json 为完整响应（含 Result 外层）的 UTF-8 字节；gzip 为压缩后的字节，太小或未开启压缩时为 null
+ */
+public final class CachedBody {
+
+    private final byte[] json;
+    private final byte[] gzip;
+    private final boolean cacheable;
+
+    private CachedBody(byte[] json, byte[] gzip, boolean cacheable) {
+        this.json = json;
+        this.gzip = gzip;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * 序列化响应对象
+     * @param objectMapper 用 Spring MVC 同一个 ObjectMapper，保证和正常返回的 JSON 完全一致
+     * @param gzipMinBytes JSON 不小于这个字节数才预先压缩，小于0表示不压缩
+     * @param cacheable false 表示只用于本次响应（例如错误结果），不放进缓存
+     */
+    public static CachedBody render(ObjectMapper objectMapper, Object body, int gzipMinBytes, boolean cacheable) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            byte[] gzip = gzipMinBytes >= 0 && json.length >= gzipMinBytes ? gzip(json) : null;
+            return new CachedBody(json, gzip, cacheable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * 客户端支持 gzip 且有压缩版本时返回压缩字节，否则返回原始 JSON
+     */
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+        }
+        return builder.body(json);
+    }
+
+    /**
+     * 本地缓存占用的字节数（统计用）
+     */
+    public long size() {
+        return json.length + (gzip == null ? 0 : gzip.length);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        }
+        return out.toByteArray();
+    }
+}
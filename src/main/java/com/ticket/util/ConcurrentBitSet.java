@@ -0,0 +1,76 @@
+package com.ticket.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 定长并发位图：每一位的读写都是无锁的（基于 AtomicLongArray 的 CAS）
+ *
+ * 用于按ID存放布尔标记（例如演出是否售罄），比 ConcurrentHashMap 省内存且没有装箱开销
+ */
+public class ConcurrentBitSet {
+
+    private final AtomicLongArray words;
+    private final long capacity;
+
+    /**
+     * @param capacity 可存放的位数，索引范围 [0, capacity)
+     */
+    public ConcurrentBitSet(int capacity) {
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    /**
+     * 索引是否在位图范围内
+     */
+    public boolean inRange(long index) {
+        return index >= 0 && index < capacity;
+    }
+
+    public boolean get(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    /**
+     * 置位
+     * @return true 表示本次调用改变了该位（之前是0）
+     */
+    public boolean set(long index) {
+        int wordIndex = (int) (index >>> 6);
+        long mask = 1L << index;
+        long old;
+        do {
+            old = words.get(wordIndex);
+            if ((old & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIndex, old, old | mask));
+        return true;
+    }
+
+    /**
+     * 清位
+     * @return true 表示本次调用改变了该位（之前是1）
+     */
+    public boolean clear(long index) {
+        int wordIndex = (int) (index >>> 6);
+        long mask = 1L << index;
+        long old;
+        do {
+            old = words.get(wordIndex);
+            if ((old & mask) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIndex, old, old & ~mask));
+        return true;
+    }
+
+    /**
+     * 清空所有位
+     */
+    public void clearAll() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0L);
+        }
+    }
+}
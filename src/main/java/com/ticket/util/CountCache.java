@@ -0,0 +1,128 @@
+package com.ticket.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 分页总数（COUNT(*)）的短期缓存，只在本地（Caffeine），按"命名空间 + 过滤条件"缓存
+ *
+ * 列表接口默认不再查总数（多查一行判断 hasNext），请求了总数时才走这里：
+ * 同一组条件 ticket.page.count-ttl-seconds 秒内只查一次数据库。
+ * 数据变更后调用 invalidate 清掉整个命名空间（条件组合太多，不逐个计算受影响的 Key），
+ * 并通过 pub/sub 广播给其他节点；广播丢失时其他节点的总数最多旧一个 TTL。
+ */
+@Component
+public class CountCache implements MessageListener {
+
+    public static final String EVENTS = "event";
+    public static final String ORDERS = "order";
+    public static final String USERS = "user";
+
+    private static final String CHANNEL = "ticket:count:invalidate";
+
+    @Value("${ticket.page.count-ttl-seconds:10}")
+    private long ttlSeconds;
+    @Value("${ticket.page.count-max-size:10000}")
+    private long maxSize;
+
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+
+    /**
+     * generation 每次失效加一：查询前记下，写缓存前没变才写，避免失效前查到的旧总数在失效后写进缓存
+     */
+    private static final class Namespace {
+        final Cache<String, Long> totals;
+        final AtomicLong generation = new AtomicLong();
+
+        Namespace(long maxSize, long ttlSeconds) {
+            this.totals = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                    .build();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 过滤条件拼成缓存 Key，null 记为空串
+     */
+    public static String key(Object... filters) {
+        return Stream.of(filters).map(filter -> Objects.toString(filter, "")).collect(Collectors.joining(":"));
+    }
+
+    /**
+     * @param counter 未命中时执行的 COUNT 查询
+     */
+    public long count(String namespace, String key, Supplier<Long> counter) {
+        Namespace ns = namespace(namespace);
+        Long cached = ns.totals.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = ns.generation.get();
+        Long value = counter.get();
+        long total = value == null ? 0 : value;
+        if (ns.generation.get() == generation) {
+            ns.totals.put(key, total);
+            if (ns.generation.get() != generation) {
+                ns.totals.invalidate(key);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 清掉一个命名空间的所有总数，并广播给其他节点（数据库变更要在事务提交后调用）
+     */
+    public void invalidate(String namespace) {
+        invalidateLocal(namespace);
+        redisUtil.publish(CHANNEL, namespace);
+    }
+
+    /**
+     * 接收其他节点（也包括自己）广播的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        invalidateLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void invalidateLocal(String namespace) {
+        Namespace ns = namespaces.get(namespace);
+        if (ns != null) {
+            ns.generation.incrementAndGet();
+            ns.totals.invalidateAll();
+        }
+    }
+
+    private Namespace namespace(String namespace) {
+        return namespaces.computeIfAbsent(namespace, name -> new Namespace(maxSize, ttlSeconds));
+    }
+}
@@ -29,6 +29,7 @@ public class EventConvertor {
         dto.setStock(event.getStock());
         dto.setStatus(event.getStatus());
         dto.setTicketGrade(event.getTicketGrade());
+        dto.setBucketCount(event.getBucketCount());
 
         return dto;
     }
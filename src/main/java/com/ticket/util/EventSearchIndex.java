@@ -0,0 +1,376 @@
+package com.ticket.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 演出搜索的内存倒排索引（演出名、场馆、简介三个字段）
+ *
+ * 分词：NFKC 归一化（全角转半角）+ 小写，按非字母数字切成片段，每个片段切成相邻两字的二元词（bigram），
+ *   另外每个字单独也建一份，用于单字搜索。"周杰伦演唱会" → 周杰 杰伦 伦演 演唱 唱会 + 周 杰 伦 演 唱 会。
+ * 匹配：关键词切出的每个词都要在某个字段里出现（和 LIKE '%kw%' 相比，词不相邻时也会命中，结果是它的超集）。
+ * 排序：各字段命中的词数 × 字段权重（演出名 3、场馆 2、简介 1），演出名包含完整关键词再加分；
+ *   分数相同按创建时间倒序（和原来 SQL 的 ORDER BY created_time DESC 一致）。
+ *
+ * 每个演出分配一个递增的内部序号，posting list 里存序号（PostingList 压缩存储，只能递增追加）。
+ * 更新 = 旧序号作废 + 分配新序号；作废的序号留在 posting list 里，查询时跳过，定时重建时清掉。
+ * 读写用读写锁：查询并发，更新互斥。
+ */
+public class EventSearchIndex {
+
+    private static final int FIELD_NAME = 0;
+    private static final int FIELD_VENUE = 1;
+    private static final int FIELD_DESCRIPTION = 2;
+    private static final int[] FIELD_WEIGHTS = {3, 2, 1};
+    // 演出名包含完整关键词时的加分（大于任何一个词在所有字段都命中的分数）
+    private static final int NAME_PHRASE_BONUS = 10;
+
+    /**
+     * 一个演出的过滤 / 排序字段
+     */
+    private static final class Doc {
+        final long eventId;
+        final String name;  // 归一化后的演出名，用于完整关键词加分
+        final String city;
+        final String category;
+        final long createdTime;
+
+        Doc(long eventId, String name, String city, String category, long createdTime) {
+            this.eventId = eventId;
+            this.name = name;
+            this.city = city;
+            this.category = category;
+            this.createdTime = createdTime;
+        }
+    }
+
+    /**
+     * 查询结果：当前页的演出ID（按相关度排好序）和命中总数
+     */
+    public static final class Hits {
+        private final List<Long> eventIds;
+        private final long total;
+
+        Hits(List<Long> eventIds, long total) {
+            this.eventIds = eventIds;
+            this.total = total;
+        }
+
+        public List<Long> getEventIds() {
+            return eventIds;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private final Map<String, PostingList>[] fields = new Map[]{new HashMap<>(), new HashMap<>(), new HashMap<>()};
+    // 序号 → 演出，作废的序号为 null
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    // 已删除的演出ID：重建期间删除的演出，扫描到旧数据时不能再加回来
+    private final Set<Long> removed = new HashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 加入或替换一个演出
+     * @param overwrite false 时演出已在索引里（或已被删除）则不处理，重建时扫描数据库用，避免用旧数据覆盖实时更新
+     */
+    public void put(long eventId, String name, String venue, String description,
+                    String city, String category, long createdTime, boolean overwrite) {
+        lock.writeLock().lock();
+        try {
+            if (!overwrite && (ordinals.containsKey(eventId) || removed.contains(eventId))) {
+                return;
+            }
+            removed.remove(eventId);
+            removeOrdinal(eventId);
+            int ordinal = docs.size();
+            docs.add(new Doc(eventId, normalize(name), city, category, createdTime));
+            ordinals.put(eventId, ordinal);
+            addTerms(FIELD_NAME, name, ordinal);
+            addTerms(FIELD_VENUE, venue, ordinal);
+            addTerms(FIELD_DESCRIPTION, description, ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long eventId) {
+        lock.writeLock().lock();
+        try {
+            removeOrdinal(eventId);
+            removed.add(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量建完后压缩 posting list 的空余空间
+     */
+    public void trim() {
+        lock.writeLock().lock();
+        try {
+            for (Map<String, PostingList> field : fields) {
+                field.values().forEach(PostingList::trim);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param city / category 为空表示不过滤
+     * @return 关键词切不出任何词时返回 null（调用方自行处理）
+     */
+    public Hits search(String keyword, String city, String category, int offset, int limit) {
+        List<String> terms = new ArrayList<>(queryTerms(keyword));
+        if (terms.isEmpty()) {
+            return null;
+        }
+        String phrase = normalize(keyword).replaceAll("\\s+", "");
+        lock.readLock().lock();
+        try {
+            // 每个词在三个字段里的序号列表，以及三个字段合并后的列表
+            int[][][] postings = new int[terms.size()][][];
+            int[][] unions = new int[terms.size()][];
+            for (int t = 0; t < terms.size(); t++) {
+                postings[t] = new int[fields.length][];
+                for (int f = 0; f < fields.length; f++) {
+                    PostingList list = fields[f].get(terms.get(t));
+                    postings[t][f] = list == null ? new int[0] : list.toArray();
+                }
+                unions[t] = union(postings[t]);
+            }
+            // 从最短的列表开始求交集
+            Integer[] order = new Integer[terms.size()];
+            for (int t = 0; t < order.length; t++) {
+                order[t] = t;
+            }
+            Arrays.sort(order, Comparator.comparingInt(t -> unions[t].length));
+            int[] candidates = unions[order[0]];
+            for (int i = 1; i < order.length && candidates.length > 0; i++) {
+                candidates = intersect(candidates, unions[order[i]]);
+            }
+
+            List<Doc> matched = new ArrayList<>();
+            Map<Doc, Integer> scores = new HashMap<>();
+            for (int ordinal : candidates) {
+                Doc doc = docs.get(ordinal);
+                if (doc == null
+                        || (city != null && !city.isEmpty() && !city.equals(doc.city))
+                        || (category != null && !category.isEmpty() && !category.equals(doc.category))) {
+                    continue;
+                }
+                int score = 0;
+                for (int[][] termPostings : postings) {
+                    for (int f = 0; f < fields.length; f++) {
+                        if (Arrays.binarySearch(termPostings[f], ordinal) >= 0) {
+                            score += FIELD_WEIGHTS[f];
+                        }
+                    }
+                }
+                if (!phrase.isEmpty() && doc.name.contains(phrase)) {
+                    score += NAME_PHRASE_BONUS * terms.size();
+                }
+                matched.add(doc);
+                scores.put(doc, score);
+            }
+            matched.sort(Comparator.<Doc>comparingInt(scores::get).reversed()
+                    .thenComparing(Comparator.<Doc>comparingLong(doc -> doc.createdTime).reversed())
+                    .thenComparing(Comparator.<Doc>comparingLong(doc -> doc.eventId).reversed()));
+
+            List<Long> page = new ArrayList<>();
+            for (int i = offset; i < matched.size() && page.size() < limit; i++) {
+                page.add(matched.get(i).eventId);
+            }
+            return new Hits(page, matched.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在索引里的演出数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已作废、等待重建清理的序号数
+     */
+    public int deletedOrdinals() {
+        lock.readLock().lock();
+        try {
+            return docs.size() - ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long termCount() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (Map<String, PostingList> field : fields) {
+                count += field.size();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 所有 posting list 压缩后的总字节数
+     */
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Map<String, PostingList> field : fields) {
+                for (PostingList list : field.values()) {
+                    bytes += list.bytes();
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 建索引用：每个片段的所有单字和二元词
+     */
+    static Set<String> indexTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (int[] run : runs(text)) {
+            for (int i = 0; i < run.length; i++) {
+                terms.add(new String(run, i, 1));
+                if (i + 1 < run.length) {
+                    terms.add(new String(run, i, 2));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 查询用：一个字的片段用单字，其他片段用二元词
+     */
+    static Set<String> queryTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (int[] run : runs(text)) {
+            if (run.length == 1) {
+                terms.add(new String(run, 0, 1));
+            }
+            for (int i = 0; i + 1 < run.length; i++) {
+                terms.add(new String(run, i, 2));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 归一化后按非字母数字切成片段（以码点为单位）
+     */
+    private static List<int[]> runs(String text) {
+        List<int[]> runs = new ArrayList<>();
+        if (text == null) {
+            return runs;
+        }
+        int[] codePoints = normalize(text).codePoints().toArray();
+        int start = 0;
+        for (int i = 0; i <= codePoints.length; i++) {
+            if (i == codePoints.length || !Character.isLetterOrDigit(codePoints[i])) {
+                if (i > start) {
+                    runs.add(Arrays.copyOfRange(codePoints, start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return runs;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private void addTerms(int field, String text, int ordinal) {
+        for (String term : indexTerms(text)) {
+            fields[field].computeIfAbsent(term, key -> new PostingList()).add(ordinal);
+        }
+    }
+
+    private void removeOrdinal(long eventId) {
+        Integer ordinal = ordinals.remove(eventId);
+        if (ordinal != null) {
+            docs.set(ordinal, null);
+        }
+    }
+
+    /**
+     * 多个递增数组合并去重
+     */
+    private static int[] union(int[][] arrays) {
+        int total = 0;
+        for (int[] array : arrays) {
+            total += array.length;
+        }
+        int[] merged = new int[total];
+        int position = 0;
+        for (int[] array : arrays) {
+            System.arraycopy(array, 0, merged, position, array.length);
+            position += array.length;
+        }
+        Arrays.sort(merged);
+        int size = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i == 0 || merged[i] != merged[i - 1]) {
+                merged[size++] = merged[i];
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * 两个递增数组求交集
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
@@ -0,0 +1,40 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * JSON 编码（UTF-8），和原来 RedisUtil 写入的字符串完全一致
+ */
+public class JsonRedisCodec implements RedisValueCodec {
+
+    public static final byte ID = 1;
+
+    private final ObjectMapper objectMapper;
+
+    public JsonRedisCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] data, int offset, int length, TypeReference<T> typeReference) throws IOException {
+        return objectMapper.readValue(data, offset, length, typeReference);
+    }
+}
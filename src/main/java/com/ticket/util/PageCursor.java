@@ -0,0 +1,77 @@
+package com.ticket.util;
+
+import com.ticket.dto.PageRequest;
+import com.ticket.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页的游标：上一页最后一行的 (created_time, id)
+ *
+ * 对外是不透明的字符串（Base64 URL 编码），客户端原样带回即可，不要解析或拼接。
+ * 下一页查询条件：created_time < 游标时间 OR (created_time = 游标时间 AND id < 游标ID)，
+ * 配合 ORDER BY created_time DESC, id DESC 和 (created_time, id) 索引，每页都只扫描 size 行。
+ */
+public final class PageCursor {
+
+    private static final String VERSION = "1";
+
+    private final Date createdTime;
+    private final Long id;
+
+    public PageCursor(Date createdTime, Long id) {
+        this.createdTime = createdTime;
+        this.id = id;
+    }
+
+    public Date getCreatedTime() {
+        return createdTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = VERSION + ":" + createdTime.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor 为空表示第一页，返回 null
+     * @throws BusinessException 游标格式错误（被篡改或来自不兼容的版本）
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new BusinessException(400, "分页游标无效");
+            }
+            return new PageCursor(new Date(Long.parseLong(parts[1])), Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(400, "分页游标无效");
+        }
+    }
+
+    /**
+     * 按当前页的最后一行生成下一页的游标；页码分页或没有下一页时返回 null
+     */
+    public static <T> String next(PageRequest pageRequest, List<T> list, boolean hasNext,
+                                  Function<T, Date> createdTime, Function<T, Long> id) {
+        if (!pageRequest.isCursorMode() || !hasNext || list.isEmpty()) {
+            return null;
+        }
+        T last = list.get(list.size() - 1);
+        Date time = createdTime.apply(last);
+        // created_time 由 AuditUtil 统一写入，不应为空；为空时无法定位，按没有下一页处理
+        return time == null ? null : new PageCursor(time, id.apply(last)).encode();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ticket.util;
+
+import java.util.Arrays;
+
+/**
+ * 压缩存储的递增 int 列表（倒排索引的 posting list）
+ *
+ * 存相邻两个值的差，再按变长整数编码（每字节低 7 位存数据，最高位为 1 表示后面还有字节），
+ * 差值小于 128 时一个值只占 1 字节。只能按递增顺序追加，读取时整体解码。
+ * 不是线程安全的，由 EventSearchIndex 的读写锁保护。
+ */
+public class PostingList {
+
+    private byte[] data = new byte[4];
+    private int length;
+    private int size;
+    private int last;
+
+    /**
+     * @param value 必须大于上一次追加的值
+     */
+    public void add(int value) {
+        if (size > 0 && value <= last) {
+            throw new IllegalArgumentException("posting list 只能递增追加: " + value + " <= " + last);
+        }
+        int delta = size == 0 ? value : value - last;
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + 5, data.length * 2));
+        }
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        last = value;
+        size++;
+    }
+
+    /**
+     * 解码成递增的 int 数组
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        int position = 0;
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value = i == 0 ? delta : value + delta;
+            result[i] = value;
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 压缩后占用的字节数
+     */
+    public int bytes() {
+        return length;
+    }
+
+    /**
+     * 批量建完后去掉扩容留下的空余空间
+     */
+    public void trim() {
+        if (data.length > length) {
+            data = Arrays.copyOf(data, length);
+        }
+    }
+}
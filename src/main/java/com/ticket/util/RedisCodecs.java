@@ -0,0 +1,209 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis 值的编码选择 + 压缩 + 版本头
+ *
+ * 按 Key 的命名空间（前缀，如 home:events）选编码，配置：
+ *   ticket.redis.codec.namespaces=home:events=smile,event:detail=smile
+ * 没配置的命名空间保持原来的 JSON 字符串不变（Lua 脚本里直接读的 Key 必须是这种）。
+ *
+ * 配置了编码的命名空间写入带头部的二进制：
+ *   [版本 0x01][编码ID][标志位][压缩前长度(4字节，仅压缩时)][内容]
+ * 内容不小于 compress-min-bytes 时用 Deflate（最快档）压缩，压缩后没变小则不压缩。
+ * 读取时看第一个字节：0x01 按头部解码；否则是旧的 JSON 文本（JSON 不可能以 0x01 开头），按 JSON 解码，
+ * 所以切换编码前写入的数据仍然能读出来。
+ */
+@Component
+public class RedisCodecs {
+
+    public static final byte FORMAT_V1 = 0x01;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3;
+
+    @Value("${ticket.redis.codec.namespaces:}")
+    private String namespacesConfig;
+    @Value("${ticket.redis.codec.compress-min-bytes:512}")
+    private int compressMinBytes;
+
+    private final JsonRedisCodec jsonCodec;
+    private final Map<String, RedisValueCodec> codecsByName = new HashMap<>();
+    private final Map<Byte, RedisValueCodec> codecsById = new HashMap<>();
+    // 命名空间 → 编码，按配置顺序匹配
+    private final Map<String, RedisValueCodec> namespaceCodecs = new LinkedHashMap<>();
+
+    public RedisCodecs() {
+        jsonCodec = new JsonRedisCodec(new ObjectMapper());
+        register(jsonCodec);
+        register(new SmileRedisCodec());
+    }
+
+    private void register(RedisValueCodec codec) {
+        codecsByName.put(codec.name(), codec);
+        codecsById.put(codec.id(), codec);
+    }
+
+    @PostConstruct
+    public void init() {
+        configure(namespacesConfig, compressMinBytes);
+    }
+
+    /**
+     * @param namespaces 形如 home:events=smile,event:detail=smile
+     */
+    public void configure(String namespaces, int compressMinBytes) {
+        this.compressMinBytes = compressMinBytes;
+        namespaceCodecs.clear();
+        if (namespaces == null || namespaces.isBlank()) {
+            return;
+        }
+        for (String entry : namespaces.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Redis 编码配置格式错误: " + entry);
+            }
+            String codecName = entry.substring(separator + 1).trim();
+            RedisValueCodec codec = codecsByName.get(codecName);
+            if (codec == null) {
+                throw new IllegalArgumentException("未知的 Redis 编码: " + codecName);
+            }
+            namespaceCodecs.put(entry.substring(0, separator).trim(), codec);
+        }
+    }
+
+    /**
+     * 这个 Key 是否写成带头部的二进制（否则写原来的 JSON 字符串）
+     */
+    public boolean isBinary(String key) {
+        return codecFor(key) != null;
+    }
+
+    /**
+     * 按 Key 所在命名空间的编码写成带头部的二进制
+     */
+    public byte[] encode(String key, Object value) throws IOException {
+        RedisValueCodec codec = codecFor(key);
+        return encode(codec == null ? jsonCodec : codec, value);
+    }
+
+    public byte[] encode(RedisValueCodec codec, Object value) throws IOException {
+        byte[] payload = codec.encode(value);
+        byte[] compressed = payload.length >= compressMinBytes ? deflate(payload) : null;
+        boolean useCompressed = compressed != null && compressed.length + 4 < payload.length;
+        byte[] body = useCompressed ? compressed : payload;
+        int offset = HEADER_SIZE + (useCompressed ? 4 : 0);
+        byte[] result = new byte[offset + body.length];
+        result[0] = FORMAT_V1;
+        result[1] = codec.id();
+        result[2] = (byte) (useCompressed ? FLAG_DEFLATE : 0);
+        if (useCompressed) {
+            writeInt(result, HEADER_SIZE, payload.length);
+        }
+        System.arraycopy(body, 0, result, offset, body.length);
+        return result;
+    }
+
+    /**
+     * 解码：带头部的按头部里的编码，否则按旧的 JSON 文本
+     */
+    public <T> T decode(byte[] data, TypeReference<T> typeReference) throws IOException {
+        if (data.length == 0 || data[0] != FORMAT_V1) {
+            return jsonCodec.decode(data, 0, data.length, typeReference);
+        }
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("Redis 值头部不完整");
+        }
+        RedisValueCodec codec = codecsById.get(data[1]);
+        if (codec == null) {
+            throw new IOException("未知的 Redis 编码ID: " + data[1]);
+        }
+        if ((data[2] & FLAG_DEFLATE) == 0) {
+            return codec.decode(data, HEADER_SIZE, data.length - HEADER_SIZE, typeReference);
+        }
+        int originalLength = readInt(data, HEADER_SIZE);
+        byte[] payload = inflate(data, HEADER_SIZE + 4, data.length - HEADER_SIZE - 4, originalLength);
+        return codec.decode(payload, 0, payload.length, typeReference);
+    }
+
+    public RedisValueCodec codec(String name) {
+        return codecsByName.get(name);
+    }
+
+    private RedisValueCodec codecFor(String key) {
+        for (Map.Entry<String, RedisValueCodec> entry : namespaceCodecs.entrySet()) {
+            String namespace = entry.getKey();
+            if (key.length() > namespace.length() && key.startsWith(namespace)
+                    && key.charAt(namespace.length()) == ':') {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, int originalLength) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] result = new byte[originalLength];
+            int total = 0;
+            while (total < originalLength && !inflater.finished()) {
+                int n = inflater.inflate(result, total, originalLength - total);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += n;
+            }
+            if (total != originalLength) {
+                throw new IOException("Redis 值解压后长度不符");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Redis 值解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] source, int offset) {
+        return ((source[offset] & 0xff) << 24) | ((source[offset + 1] & 0xff) << 16)
+                | ((source[offset + 2] & 0xff) << 8) | (source[offset + 3] & 0xff);
+    }
+}
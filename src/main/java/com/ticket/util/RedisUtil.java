@@ -5,15 +5,32 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Redis 工具类
  * 
  * 提供常用的 Redis 操作方法，统一处理序列化、反序列化、异常处理等
+ *
+ * 值的格式：默认是 JSON 字符串；在 ticket.redis.codec.namespaces 里配置了编码的命名空间
+ * 写成带版本头的二进制（可能压缩），读取时自动识别两种格式，见 RedisCodecs
  */
 @Component
 public class RedisUtil {
@@ -24,6 +41,12 @@ public class RedisUtil {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    @Autowired
+    private RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Autowired
+    private RedisCodecs redisCodecs;
+
     /**
      * 构建缓存 Key（统一 Key 格式）
      * 
@@ -45,8 +68,12 @@ public class RedisUtil {
      */
     public <T> void set(String key, T value, long timeout, TimeUnit unit) {
         try {
-            String json = OBJECT_MAPPER.writeValueAsString(value);
-            stringRedisTemplate.opsForValue().set(key, json, timeout, unit);
+            if (redisCodecs.isBinary(key)) {
+                byteRedisTemplate.opsForValue().set(key, redisCodecs.encode(key, value), timeout, unit);
+            } else {
+                String json = OBJECT_MAPPER.writeValueAsString(value);
+                stringRedisTemplate.opsForValue().set(key, json, timeout, unit);
+            }
             log.debug("Redis set 成功, key={}, timeout={}{}", key, timeout, unit);
         } catch (Exception e) {
             // 缓存写入失败，记录日志但不影响业务（降级策略）
@@ -54,6 +81,24 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * Key 不存在时才设置（SET NX，自动序列化为 JSON）
+     *
+     * @return true 设置成功，false Key 已存在，null 表示 Redis 出错
+     */
+    public <T> Boolean setIfAbsent(String key, T value, long timeout, TimeUnit unit) {
+        try {
+            if (redisCodecs.isBinary(key)) {
+                return byteRedisTemplate.opsForValue().setIfAbsent(key, redisCodecs.encode(key, value), timeout, unit);
+            }
+            String json = OBJECT_MAPPER.writeValueAsString(value);
+            return stringRedisTemplate.opsForValue().setIfAbsent(key, json, timeout, unit);
+        } catch (Exception e) {
+            log.warn("Redis setIfAbsent 失败, key={}, error={}", key, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 设置缓存（不过期）
      * 
@@ -63,8 +108,12 @@ public class RedisUtil {
      */
     public <T> void set(String key, T value) {
         try {
-            String json = OBJECT_MAPPER.writeValueAsString(value);
-            stringRedisTemplate.opsForValue().set(key, json);
+            if (redisCodecs.isBinary(key)) {
+                byteRedisTemplate.opsForValue().set(key, redisCodecs.encode(key, value));
+            } else {
+                String json = OBJECT_MAPPER.writeValueAsString(value);
+                stringRedisTemplate.opsForValue().set(key, json);
+            }
             log.debug("Redis set 成功（不过期）, key={}", key);
         } catch (Exception e) {
             log.warn("Redis set 失败, key={}, error={}", key, e.getMessage());
@@ -73,6 +122,8 @@ public class RedisUtil {
 
     /**
      * 获取缓存（自动反序列化为对象）
+     *
+     * 按字节读取，JSON 字符串和带头部的二进制都能解码（命名空间切换编码后旧数据仍可读）
      * 
      * @param key 缓存 Key
      * @param typeReference 类型引用，用于反序列化
@@ -81,11 +132,11 @@ public class RedisUtil {
      */
     public <T> T get(String key, TypeReference<T> typeReference) {
         try {
-            String json = stringRedisTemplate.opsForValue().get(key);
-            if (json == null || json.isEmpty()) {
+            byte[] data = byteRedisTemplate.opsForValue().get(key);
+            if (data == null || data.length == 0) {
                 return null;
             }
-            return OBJECT_MAPPER.readValue(json, typeReference);
+            return redisCodecs.decode(data, typeReference);
         } catch (Exception e) {
             // 缓存读取失败，记录日志但不影响业务（降级策略）
             log.warn("Redis get 失败, key={}, error={}", key, e.getMessage());
@@ -93,6 +144,84 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 批量获取缓存（一次 MGET，一个网络往返）
+     *
+     * @param keys 缓存 Key 列表
+     * @param typeReference 类型引用，用于反序列化
+     * @param <T> 对象类型
+     * @return 和 keys 一一对应的列表，不存在或解码失败的位置为 null；Redis 出错时全部为 null（调用方按未命中处理）
+     */
+    public <T> List<T> multiGet(List<String> keys, TypeReference<T> typeReference) {
+        List<T> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<byte[]> values;
+        try {
+            values = byteRedisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("Redis multiGet 失败, count={}, error={}", keys.size(), e.getMessage());
+            return result;
+        }
+        if (values == null) {
+            return result;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] data = values.get(i);
+            if (data == null || data.length == 0) {
+                continue;
+            }
+            try {
+                result.set(i, redisCodecs.decode(data, typeReference));
+            } catch (Exception e) {
+                // 单个值解码失败只当这一个未命中
+                log.warn("Redis multiGet 解码失败, key={}, error={}", keys.get(i), e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量设置缓存（管道：所有 SET EX 一次发出，一个网络往返；MSET 不支持过期时间所以不用它）
+     *
+     * @param values Key → 要缓存的对象
+     * @param timeout 过期时间
+     * @param unit 时间单位
+     * @param <T> 对象类型
+     */
+    public <T> void multiSet(Map<String, T> values, long timeout, TimeUnit unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            // 先全部编码好，管道里只发命令
+            Map<byte[], byte[]> encoded = new LinkedHashMap<>();
+            for (Map.Entry<String, T> entry : values.entrySet()) {
+                encoded.put(entry.getKey().getBytes(StandardCharsets.UTF_8), serialize(entry.getKey(), entry.getValue()));
+            }
+            Expiration expiration = Expiration.from(timeout, unit);
+            byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                encoded.forEach((key, value) -> connection.stringCommands()
+                        .set(key, value, expiration, RedisStringCommands.SetOption.upsert()));
+                return null;
+            });
+            log.debug("Redis multiSet 成功, count={}, timeout={}{}", values.size(), timeout, unit);
+        } catch (Exception e) {
+            log.warn("Redis multiSet 失败, count={}, error={}", values.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按 Key 的命名空间序列化：配置了编码的写带头部的二进制，否则是 JSON 字符串的 UTF-8 字节（和 set 一致）
+     */
+    private byte[] serialize(String key, Object value) throws IOException {
+        if (redisCodecs.isBinary(key)) {
+            return redisCodecs.encode(key, value);
+        }
+        return OBJECT_MAPPER.writeValueAsBytes(value);
+    }
+
     /**
      * 删除缓存
      * 
@@ -107,6 +236,64 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 写入 Hash 的一个字段（自动序列化为 JSON）
+     *
+     * @param key Hash Key
+     * @param field 字段
+     * @param value 字段值
+     * @return true 写入成功，false 出错（需要确认写入的调用方据此处理）
+     */
+    public <T> boolean hashPut(String key, String field, T value) {
+        try {
+            stringRedisTemplate.opsForHash().put(key, field, OBJECT_MAPPER.writeValueAsString(value));
+            return true;
+        } catch (Exception e) {
+            log.warn("Redis hashPut 失败, key={}, field={}, error={}", key, field, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 删除 Hash 的一个字段
+     *
+     * @param key Hash Key
+     * @param field 字段
+     */
+    public void hashDelete(String key, String field) {
+        try {
+            stringRedisTemplate.opsForHash().delete(key, field);
+        } catch (Exception e) {
+            log.warn("Redis hashDelete 失败, key={}, field={}, error={}", key, field, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取 Hash 的全部字段（自动反序列化）
+     *
+     * @param key Hash Key
+     * @param typeReference 字段值的类型引用
+     * @return 字段 -> 值，解析失败的字段跳过；Key 不存在或出错返回空 Map
+     */
+    public <T> Map<String, T> hashEntries(String key, TypeReference<T> typeReference) {
+        Map<Object, Object> entries;
+        try {
+            entries = stringRedisTemplate.opsForHash().entries(key);
+        } catch (Exception e) {
+            log.warn("Redis hashEntries 失败, key={}, error={}", key, e.getMessage());
+            return Collections.emptyMap();
+        }
+        Map<String, T> result = new LinkedHashMap<>(entries.size());
+        entries.forEach((field, json) -> {
+            try {
+                result.put((String) field, OBJECT_MAPPER.readValue((String) json, typeReference));
+            } catch (IOException e) {
+                log.warn("Redis Hash 字段解析失败, key={}, field={}, error={}", key, field, e.getMessage());
+            }
+        });
+        return result;
+    }
+
     /**
      * 判断 Key 是否存在
      * 
@@ -152,5 +339,70 @@ public class RedisUtil {
             return -2L;
         }
     }
-}
 
+    /**
+     * 执行 Lua 脚本（脚本在 Redis 内原子执行，适合库存预扣这类"读-判断-写"操作）
+     *
+     * @param script 脚本
+     * @param keys 脚本中使用的 Key（KEYS）
+     * @param args 脚本参数（ARGV）
+     * @param <T> 返回值类型
+     * @return 脚本返回值，出错则返回 null（调用方按降级处理）
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, String... args) {
+        try {
+            return stringRedisTemplate.execute(script, keys, (Object[]) args);
+        } catch (Exception e) {
+            log.warn("Redis 执行脚本失败, keys={}, error={}", keys, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 发布消息（Redis 发布/订阅，用于节点间广播）
+     *
+     * @param channel 频道
+     * @param message 消息内容
+     */
+    public void publish(String channel, String message) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            log.warn("Redis publish 失败, channel={}, error={}", channel, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量追加到 Redis Stream，并把 Stream 近似裁剪到 maxLen 条
+     *
+     * @param key Stream Key
+     * @param records 每条消息的字段
+     * @param maxLen 保留的最大条数
+     * @return true 全部追加成功，false 出错（调用方负责重试）
+     */
+    public boolean streamAddAll(String key, List<Map<String, String>> records, long maxLen) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        try {
+            // 先全部编码好，所有 XADD 和最后的 XTRIM 在一个管道里发出，一次往返
+            byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+            List<MapRecord<byte[], byte[], byte[]>> encoded = new ArrayList<>(records.size());
+            for (Map<String, String> record : records) {
+                Map<byte[], byte[]> fields = new LinkedHashMap<>();
+                record.forEach((field, value) -> fields.put(field.getBytes(StandardCharsets.UTF_8),
+                        value.getBytes(StandardCharsets.UTF_8)));
+                encoded.add(StreamRecords.newRecord().in(rawKey).ofMap(fields));
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                encoded.forEach(record -> connection.streamCommands().xAdd(record));
+                connection.streamCommands().xTrim(rawKey, maxLen, true);
+                return null;
+            });
+            return true;
+        } catch (Exception e) {
+            log.warn("Redis stream 追加失败, key={}, error={}", key, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+
+/**
+ * Redis 值编码：把对象编码成字节 / 从字节解码回对象
+ *
+ * 新增编码实现时分配一个新的 id 并注册到 RedisCodecs；id 会写进每条缓存的头部，
+ * 已经用过的 id 不能改也不能复用，否则旧数据会按错误的格式解码。
+ */
+public interface RedisValueCodec {
+
+    /**
+     * 编码名（配置里使用，例如 json、smile）
+     */
+    String name();
+
+    /**
+     * 写进头部的编码ID
+     */
+    byte id();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] data, int offset, int length, TypeReference<T> typeReference) throws IOException;
+}
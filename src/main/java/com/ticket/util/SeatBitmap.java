@@ -0,0 +1,248 @@
+package com.ticket.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 座位位图：一个区（rows 排 × seatsPerRow 座）的占用情况，1 表示已售/锁定
+ *
+ * 每一排从新的 long 开始存放（排尾多出来的位永久置1），连座查找只在排内按 long 扫描空闲段；
+ * 占座用 CAS 逐个 long 加位，任何一段被别人抢先就撤销已加的位重新找，全程无锁。
+ */
+public class SeatBitmap {
+
+    private static final int MAX_CLAIM_ATTEMPTS = 16;
+    private static final int NO_RUN_ROW_FULL = -2;
+
+    private final int rows;
+    private final int seatsPerRow;
+    private final int wordsPerRow;
+    private final AtomicLongArray words;
+    // 第一个可能还有空位的排：它前面的排都已满（释放座位时回退）
+    private final AtomicInteger firstFreeRow = new AtomicInteger();
+
+    public SeatBitmap(int rows, int seatsPerRow) {
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        this.wordsPerRow = (seatsPerRow + 63) >>> 6;
+        this.words = new AtomicLongArray(rows * wordsPerRow);
+        int tail = seatsPerRow & 63;
+        if (tail != 0) {
+            long padding = -1L << tail;
+            for (int row = 0; row < rows; row++) {
+                words.set(row * wordsPerRow + wordsPerRow - 1, padding);
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    /**
+     * 在同一排里占 count 个连续空座，从前排往后排找
+     * @return 占到的第一个座位的全区编号（row * seatsPerRow + seat），没有足够的连座返回 -1
+     */
+    public long allocate(int count) {
+        if (count <= 0 || count > seatsPerRow) {
+            return -1;
+        }
+        for (int row = firstFreeRow.get(); row < rows; row++) {
+            boolean full = true;
+            for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+                int seat = findRun(row, count);
+                if (seat == NO_RUN_ROW_FULL) {
+                    break;
+                }
+                full = false;
+                if (seat < 0) {
+                    break;
+                }
+                if (claim(row, seat, count)) {
+                    return (long) row * seatsPerRow + seat;
+                }
+            }
+            if (full) {
+                // 整排已满，推进提示；推进后再看一眼，期间有座位释放就退回来
+                if (firstFreeRow.compareAndSet(row, row + 1) && findRun(row, 1) != NO_RUN_ROW_FULL) {
+                    firstFreeRow.accumulateAndGet(row, Math::min);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 释放一段座位（取消订单、下单回滚时调用）
+     */
+    public void release(int row, int seat, int count) {
+        update(row, seat, count, false);
+        firstFreeRow.accumulateAndGet(row, Math::min);
+    }
+
+    /**
+     * 直接标记一段座位为已占用（从持久化数据恢复时使用）
+     */
+    public void mark(int row, int seat, int count) {
+        update(row, seat, count, true);
+    }
+
+    public boolean isTaken(int row, int seat) {
+        int bit = seat & 63;
+        return (words.get(row * wordsPerRow + (seat >>> 6)) & (1L << bit)) != 0;
+    }
+
+    /**
+     * 空座数
+     */
+    public int available() {
+        int taken = 0;
+        for (int i = 0; i < words.length(); i++) {
+            taken += Long.bitCount(words.get(i));
+        }
+        return rows * wordsPerRow * 64 - taken;
+    }
+
+    /**
+     * 打包成字节数组（小端，每个 long 8 字节）用于持久化
+     */
+    public byte[] toBytes() {
+        return toBytes(0, words.length());
+    }
+
+    /**
+     * 某一排在 toBytes 结果里的字节偏移（只回写这一排时使用）
+     */
+    public int rowByteOffset(int row) {
+        return row * wordsPerRow * 8;
+    }
+
+    /**
+     * 某一排打包后的字节，和 toBytes 结果里 rowByteOffset(row) 开始的一段相同
+     */
+    public byte[] rowBytes(int row) {
+        return toBytes(row * wordsPerRow, wordsPerRow);
+    }
+
+    private byte[] toBytes(int fromWord, int wordCount) {
+        byte[] bytes = new byte[wordCount * 8];
+        for (int i = 0; i < wordCount; i++) {
+            long word = words.get(fromWord + i);
+            for (int b = 0; b < 8; b++) {
+                bytes[i * 8 + b] = (byte) (word >>> (b * 8));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 从 toBytes 的结果恢复（和当前位图按位或，只会多占不会少占）
+     */
+    public void loadBytes(byte[] bytes) {
+        if (bytes == null) {
+            return;
+        }
+        int count = Math.min(words.length(), bytes.length / 8);
+        for (int i = 0; i < count; i++) {
+            long word = 0;
+            for (int b = 0; b < 8; b++) {
+                word |= (bytes[i * 8 + b] & 0xFFL) << (b * 8);
+            }
+            long saved = word;
+            words.getAndUpdate(i, current -> current | saved);
+        }
+    }
+
+    /**
+     * 在排内按 long 扫描，找第一段长度不小于 count 的空闲段
+     * @return 起始座号；-1 有空座但没有足够长的连续段；NO_RUN_ROW_FULL 整排已满
+     */
+    private int findRun(int row, int count) {
+        int base = row * wordsPerRow;
+        int run = 0;
+        int runStart = 0;
+        boolean anyFree = false;
+        for (int w = 0; w < wordsPerRow; w++) {
+            long taken = words.get(base + w);
+            if (taken == -1L) {
+                run = 0;
+                continue;
+            }
+            anyFree = true;
+            int bit = 0;
+            while (bit < 64) {
+                long rest = taken >>> bit;
+                if ((rest & 1) == 0) {
+                    int freeLength = rest == 0 ? 64 - bit : Long.numberOfTrailingZeros(rest);
+                    if (run == 0) {
+                        runStart = (w << 6) + bit;
+                    }
+                    run += freeLength;
+                    bit += freeLength;
+                    if (run >= count) {
+                        return runStart;
+                    }
+                } else {
+                    run = 0;
+                    bit += Long.numberOfTrailingZeros(~rest);
+                }
+            }
+        }
+        return anyFree ? -1 : NO_RUN_ROW_FULL;
+    }
+
+    /**
+     * 逐个 long CAS 占位；中途发现座位已被占就撤销已占的部分
+     */
+    private boolean claim(int row, int seat, int count) {
+        int base = row * wordsPerRow;
+        int end = seat + count;
+        for (int pos = seat; pos < end; ) {
+            int w = pos >>> 6;
+            int to = Math.min(end, (w + 1) << 6);
+            long mask = rangeMask(pos & 63, to - (w << 6));
+            while (true) {
+                long current = words.get(base + w);
+                if ((current & mask) != 0) {
+                    if (pos > seat) {
+                        update(row, seat, pos - seat, false);
+                    }
+                    return false;
+                }
+                if (words.compareAndSet(base + w, current, current | mask)) {
+                    break;
+                }
+            }
+            pos = to;
+        }
+        return true;
+    }
+
+    private void update(int row, int seat, int count, boolean taken) {
+        int base = row * wordsPerRow;
+        int end = seat + count;
+        for (int pos = seat; pos < end; ) {
+            int w = pos >>> 6;
+            int to = Math.min(end, (w + 1) << 6);
+            long mask = rangeMask(pos & 63, to - (w << 6));
+            if (taken) {
+                words.getAndUpdate(base + w, current -> current | mask);
+            } else {
+                words.getAndUpdate(base + w, current -> current & ~mask);
+            }
+            pos = to;
+        }
+    }
+
+    /**
+     * [from, to) 位的掩码，0 <= from < to <= 64
+     */
+    private static long rangeMask(int from, int to) {
+        long high = to == 64 ? -1L : (1L << to) - 1;
+        return high & (-1L << from);
+    }
+}
@@ -0,0 +1,49 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.IOException;
+
+/**
+ * Smile 二进制编码（Jackson 的二进制 JSON）：数字按变长整数存，
+ * 重复出现的字段名和短字符串只存一次、后面用引用，列表里每个对象的字段名不再重复占空间
+ *
+ * 和 JSON 用同样的 Jackson 注解和类型，DTO 不需要改
+ */
+public class SmileRedisCodec implements RedisValueCodec {
+
+    public static final byte ID = 2;
+
+    private final ObjectMapper objectMapper;
+
+    public SmileRedisCodec() {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.objectMapper = new ObjectMapper(factory);
+    }
+
+    @Override
+    public String name() {
+        return "smile";
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] data, int offset, int length, TypeReference<T> typeReference) throws IOException {
+        return objectMapper.readValue(data, offset, length, typeReference);
+    }
+}
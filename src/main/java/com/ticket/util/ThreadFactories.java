@@ -0,0 +1,27 @@
+package com.ticket.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 后台线程工厂：开启 spring.threads.virtual.enabled 后，自建的线程池也改用虚拟线程
+ *
+ * 这些线程大部分时间在等 MySQL / Redis，用虚拟线程不再占用平台线程；
+ * 注意任务里不要在 synchronized 块内做阻塞调用（JDK 21 下会钉住载体线程），需要加锁用 ReentrantLock
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+        // 工具类不允许实例化
+    }
+
+    /**
+     * @param prefix 线程名前缀，线程名为 prefix + 序号（从1开始）
+     * @param virtual true 创建虚拟线程，false 创建平台线程
+     */
+    public static ThreadFactory named(String prefix, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(prefix, 1).factory();
+        }
+        return Thread.ofPlatform().name(prefix, 1).factory();
+    }
+}
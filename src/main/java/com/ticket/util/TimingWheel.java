@@ -0,0 +1,88 @@
+package com.ticket.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮：添加/到期都是 O(1)，适合大量定时任务（例如待支付订单超时取消）
+ *
+ * 第一层每格 tickMillis，一圈 tickMillis * wheelSize；超出一圈的任务放到上一层（每格等于下一层一圈），
+ * 上一层的格子到期时再把任务降级放回下一层。
+ *
+ * 非线程安全：只允许一个线程调用 add / advance（调用方自己把任务汇总到这个线程）
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long interval;
+    private final Deque<Entry<T>>[] buckets;
+    private long currentTime;
+    private TimingWheel<T> overflowWheel;
+
+    private record Entry<T>(T value, long deadline) {
+    }
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.interval = tickMillis * wheelSize;
+        this.buckets = new Deque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.currentTime = startMillis - startMillis % tickMillis;
+    }
+
+    /**
+     * 添加任务
+     * @return false 表示任务已经到期（不足一格），没有放进时间轮，由调用方立即处理
+     */
+    public boolean add(T value, long deadline) {
+        return add(new Entry<>(value, deadline));
+    }
+
+    /**
+     * 推进时钟到 now，把所有到期的任务交给 expired
+     */
+    public void advance(long now, Consumer<T> expired) {
+        tick(now, entry -> {
+            if (!add(entry)) {
+                expired.accept(entry.value());
+            }
+        });
+    }
+
+    private boolean add(Entry<T> entry) {
+        if (entry.deadline() < currentTime + tickMillis) {
+            return false;
+        }
+        if (entry.deadline() < currentTime + interval) {
+            buckets[(int) ((entry.deadline() / tickMillis) % wheelSize)].add(entry);
+            return true;
+        }
+        if (overflowWheel == null) {
+            overflowWheel = new TimingWheel<>(interval, wheelSize, currentTime);
+        }
+        return overflowWheel.add(entry);
+    }
+
+    /**
+     * 逐格推进；到期格子里的任务交给 reinsert（从最底层重新放一次，到期的会落到 expired）
+     */
+    private void tick(long now, Consumer<Entry<T>> reinsert) {
+        while (currentTime + tickMillis <= now) {
+            currentTime += tickMillis;
+            Deque<Entry<T>> bucket = buckets[(int) ((currentTime / tickMillis) % wheelSize)];
+            Entry<T> entry;
+            while ((entry = bucket.poll()) != null) {
+                reinsert.accept(entry);
+            }
+        }
+        if (overflowWheel != null) {
+            overflowWheel.tick(currentTime, reinsert);
+        }
+    }
+}
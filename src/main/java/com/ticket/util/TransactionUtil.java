@@ -0,0 +1,78 @@
+package com.ticket.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 事务工具类：把"只有数据库提交成功后才能做"的动作（写缓存、回补 Redis 库存等）挂到事务提交之后
+ */
+public final class TransactionUtil {
+
+    private TransactionUtil() {
+        // 工具类不允许实例化
+    }
+
+    /**
+     * 当前事务提交后执行；没有事务时立即执行
+     * 事务回滚时不会执行，避免把没落库的变化同步到缓存里
+     *
+     * @param action 提交后要执行的动作
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 当前事务回滚后执行（用于补偿已经在独立事务里提交的变化）；没有事务时不执行
+     *
+     * @param action 回滚后要执行的动作
+     */
+    public static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * 取当前事务绑定的对象，第一次取时用 factory 创建，事务结束后自动解绑；没有事务时每次都新建
+     *
+     * @param key 资源 Key（调用方自己的常量对象）
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T resource(Object key, Supplier<T> factory) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return factory.get();
+        }
+        T value = (T) TransactionSynchronizationManager.getResource(key);
+        if (value == null) {
+            value = factory.get();
+            TransactionSynchronizationManager.bindResource(key, value);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                }
+            });
+        }
+        return value;
+    }
+}
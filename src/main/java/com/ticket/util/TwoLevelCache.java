@@ -0,0 +1,570 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ticket.dto.CacheStats;
+import com.ticket.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 二级缓存：本地 Caffeine（L1）+ Redis（L2）
+ *
+ * 读：先查本地，未命中再查 Redis 并回填本地；写：同时写 Redis 和本地。
+ * 失效：删除 Redis 后通过 pub/sub 广播，所有节点（包括自己）清掉本地副本。
+ * 广播是"发了就不管"，丢消息时本地副本最多残留 l1-ttl-seconds，所以本地 TTL 要比 Redis 短得多。
+ *
+ * 每个命名空间（如 event:detail、home:events）单独一个本地缓存，容量和 TTL 分别配置：
+ *   ticket.cache.{命名空间把冒号换成横线}.l1-max-size / l1-ttl-seconds
+ * 本地缓存返回的是同一个对象，调用方不要修改取到的值。
+ *
+ * 回源（getOrLoad）：同一个 Key 同时未命中时只有一个请求查数据库，其他请求等它的结果（single-flight）。
+ *   local 模式只在本节点内合并；redis 模式再用一个短期 Redis 锁让多个节点里只有一个回源，其他节点轮询 Redis。
+ *   等待最多 load-wait-millis，超时或回源失败时返回最近一次的旧值（stale），没有旧值才报错/自己回源。
+ *
+ * 负缓存：回源结果为 null（数据不存在）时，在本地和 Redis（null:完整Key）各记一条短期标记，
+ *   过期前同一个 Key 直接返回 null，不再查数据库；evict 会一起清掉。TTL：ticket.cache.{命名空间}.negative-ttl-seconds
+ *
+ * 批量读（getOrLoadAll）：本地逐个查，剩下的一次 MGET 查 Redis，再剩下的交给 loader 一次批量回源，
+ *   回源结果用管道一次写回 Redis。批量回源不做 single-flight（一次查询本身就合并了多个 Key）。
+ *
+ * 响应体缓存（getOrRenderBody）：本地再存一份序列化好的最终响应字节（可带 gzip），和本地缓存同样的容量/TTL/失效。
+ */
+@Slf4j
+@Component
+public class TwoLevelCache implements MessageListener {
+
+    private static final String CHANNEL = "ticket:cache:invalidate";
+    private static final char SEPARATOR = '#';
+    private static final long DEFAULT_L1_MAX_SIZE = 10_000;
+    private static final long DEFAULT_L1_TTL_SECONDS = 30;
+    private static final long DEFAULT_NEGATIVE_TTL_SECONDS = 30;
+
+    private static final long REMOTE_POLL_MILLIS = 20;
+
+    /**
+     * 回源锁：SET NX PX；释放时只删自己持有的锁
+     */
+    private static final RedisScript<Long> LOAD_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end return 0",
+            Long.class);
+    private static final RedisScript<Long> LOAD_UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    @Value("${ticket.cache.l1-enabled:true}")
+    private boolean l1Enabled;
+    @Value("${ticket.cache.load-lock:local}")
+    private String loadLock;
+    @Value("${ticket.cache.load-wait-millis:2000}")
+    private long loadWaitMillis;
+    @Value("${ticket.cache.load-lock-millis:3000}")
+    private long loadLockMillis;
+    @Value("${ticket.cache.stale-ttl-seconds:600}")
+    private long staleTtlSeconds;
+
+    @Autowired
+    private RedisUtil redisUtil;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private Environment environment;
+
+    private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+    // 正在回源的 Key → 回源结果，同一个 Key 的并发未命中共用一个
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final String nodeToken = UUID.randomUUID().toString();
+
+    /**
+     * 一个命名空间的本地缓存和统计
+     * generation 每次失效加一：从 Redis 读取前记下，回填本地前没变才回填，
+     * 避免"读 Redis 旧值 → 收到失效 → 旧值写进本地"把刚失效的数据又放回去
+     */
+    private static final class Namespace {
+        final Cache<String, Object> local;
+        // 最近一次的值，失效时不删除，只在回源超时/失败时兜底
+        final Cache<String, Object> stale;
+        // 不存在的 Key
+        final Cache<String, Boolean> negative;
+        // 序列化好的响应体
+        final Cache<String, CachedBody> bodies;
+        final long negativeTtlSeconds;
+        final AtomicLong generation = new AtomicLong();
+        final LongAdder l1Hits = new LongAdder();
+        final LongAdder l2Hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder invalidations = new LongAdder();
+        final LongAdder loads = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder staleServed = new LongAdder();
+        final LongAdder negativeHits = new LongAdder();
+        final LongAdder bodyHits = new LongAdder();
+        final LongAdder bodyRenders = new LongAdder();
+
+        Namespace(long maxSize, long ttlSeconds, long staleTtlSeconds, long negativeTtlSeconds) {
+            this.local = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+            this.stale = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(staleTtlSeconds, TimeUnit.SECONDS)
+                    .build();
+            this.negative = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(negativeTtlSeconds, TimeUnit.SECONDS)
+                    .build();
+            this.negativeTtlSeconds = negativeTtlSeconds;
+            this.bodies = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                    .build();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 读缓存：本地 → Redis
+     * @param namespace 命名空间，例如 "event:detail"
+     * @param id 命名空间内的标识，完整 Redis Key 为 namespace:id
+     * @return 两级都没有返回 null
+     */
+    public <T> T get(String namespace, String id, TypeReference<T> typeReference) {
+        Namespace ns = namespace(namespace);
+        String key = redisUtil.buildKey(namespace, id);
+        if (l1Enabled) {
+            @SuppressWarnings("unchecked")
+            T local = (T) ns.local.getIfPresent(key);
+            if (local != null) {
+                ns.l1Hits.increment();
+                return local;
+            }
+        }
+        long generation = ns.generation.get();
+        T value = redisUtil.get(key, typeReference);
+        if (value == null) {
+            ns.misses.increment();
+            return null;
+        }
+        ns.l2Hits.increment();
+        putLocal(ns, key, value, generation);
+        return value;
+    }
+
+    /**
+     * 读缓存，两级都未命中时回源；同一个 Key 的并发未命中只回源一次
+     * @param timeout Redis 过期时间
+     * @param loader 回源（查数据库），返回 null 表示数据不存在，不写缓存
+     */
+    public <T> T getOrLoad(String namespace, String id, TypeReference<T> typeReference,
+                           long timeout, TimeUnit unit, Supplier<T> loader) {
+        T cached = get(namespace, id, typeReference);
+        if (cached != null) {
+            return cached;
+        }
+        Namespace ns = namespace(namespace);
+        String key = redisUtil.buildKey(namespace, id);
+        if (ns.negative.getIfPresent(key) != null) {
+            ns.negativeHits.increment();
+            return null;
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            ns.coalesced.increment();
+            return awaitFlight(ns, key, existing);
+        }
+        try {
+            T value = loadAsLeader(ns, namespace, id, key, typeReference, timeout, unit, loader);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            T stale = stale(ns, key);
+            if (stale != null) {
+                log.warn("缓存回源失败，返回旧值, key={}, error={}", key, e.getMessage());
+                return stale;
+            }
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 批量读缓存：本地 → Redis（一次 MGET）→ 回源（loader 一次批量查询）
+     * 回源查到的用一次管道写回 Redis，没查到的记负缓存；查库期间有失效时只返回不写缓存
+     * @param ids 命名空间内的标识，调用方负责去重
+     * @param loader 按未命中的标识批量回源，返回 标识 → 值，不存在的不放进结果
+     * @return 标识 → 值，按 ids 的顺序，不存在的标识不在结果里
+     */
+    public <T> Map<String, T> getOrLoadAll(String namespace, Collection<String> ids, TypeReference<T> typeReference,
+                                           long timeout, TimeUnit unit, Function<List<String>, Map<String, T>> loader) {
+        Namespace ns = namespace(namespace);
+        Map<String, T> found = new HashMap<>();
+        List<String> remoteIds = new ArrayList<>();
+        for (String id : ids) {
+            String key = redisUtil.buildKey(namespace, id);
+            if (l1Enabled) {
+                @SuppressWarnings("unchecked")
+                T local = (T) ns.local.getIfPresent(key);
+                if (local != null) {
+                    ns.l1Hits.increment();
+                    found.put(id, local);
+                    continue;
+                }
+            }
+            if (ns.negative.getIfPresent(key) != null) {
+                ns.negativeHits.increment();
+                continue;
+            }
+            remoteIds.add(id);
+        }
+
+        if (!remoteIds.isEmpty()) {
+            List<String> keys = new ArrayList<>(remoteIds.size());
+            for (String id : remoteIds) {
+                keys.add(redisUtil.buildKey(namespace, id));
+            }
+            long generation = ns.generation.get();
+            List<T> values = redisUtil.multiGet(keys, typeReference);
+            List<String> missIds = new ArrayList<>();
+            for (int i = 0; i < remoteIds.size(); i++) {
+                T value = values.get(i);
+                if (value == null) {
+                    ns.misses.increment();
+                    missIds.add(remoteIds.get(i));
+                } else {
+                    ns.l2Hits.increment();
+                    found.put(remoteIds.get(i), value);
+                    putLocal(ns, keys.get(i), value, generation);
+                }
+            }
+            if (!missIds.isEmpty()) {
+                found.putAll(loadAll(ns, namespace, missIds, timeout, unit, loader));
+            }
+        }
+
+        Map<String, T> result = new LinkedHashMap<>();
+        for (String id : ids) {
+            T value = found.get(id);
+            if (value != null) {
+                result.put(id, value);
+            }
+        }
+        return result;
+    }
+
+    private <T> Map<String, T> loadAll(Namespace ns, String namespace, List<String> ids, long timeout, TimeUnit unit,
+                                       Function<List<String>, Map<String, T>> loader) {
+        ns.loads.increment();
+        long generation = ns.generation.get();
+        Map<String, T> loaded = loader.apply(ids);
+        if (ns.generation.get() != generation) {
+            // 查库期间数据被修改过，查到的可能是旧数据，只返回不写缓存
+            return loaded;
+        }
+        Map<String, T> toCache = new HashMap<>();
+        Map<String, Integer> negatives = new HashMap<>();
+        for (String id : ids) {
+            String key = redisUtil.buildKey(namespace, id);
+            T value = loaded.get(id);
+            if (value == null) {
+                negatives.put(negativeKey(key), 1);
+                ns.negative.put(key, Boolean.TRUE);
+            } else {
+                toCache.put(key, value);
+            }
+        }
+        redisUtil.multiSet(toCache, timeout, unit);
+        redisUtil.multiSet(negatives, ns.negativeTtlSeconds, TimeUnit.SECONDS);
+        toCache.forEach((key, value) -> putLocal(ns, key, value, generation));
+        return loaded;
+    }
+
+    /**
+     * 取序列化好的响应体，没有时调用 renderer 生成（renderer 内部走 getOrLoad，回源仍然只有一次）
+     * 生成期间收到失效通知或 renderer 标记为不可缓存时，只用于本次响应
+     */
+    public CachedBody getOrRenderBody(String namespace, String id, Supplier<CachedBody> renderer) {
+        Namespace ns = namespace(namespace);
+        String key = redisUtil.buildKey(namespace, id);
+        if (l1Enabled) {
+            CachedBody body = ns.bodies.getIfPresent(key);
+            if (body != null) {
+                ns.bodyHits.increment();
+                return body;
+            }
+        }
+        long generation = ns.generation.get();
+        CachedBody body = renderer.get();
+        ns.bodyRenders.increment();
+        if (l1Enabled && body.isCacheable()) {
+            ns.bodies.put(key, body);
+            if (ns.generation.get() != generation) {
+                ns.bodies.invalidate(key);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * 等待本节点正在进行的回源，最多 load-wait-millis
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T awaitFlight(Namespace ns, String key, CompletableFuture<Object> flight) {
+        try {
+            return (T) flight.get(loadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return staleOrBusy(ns, key);
+        } catch (TimeoutException | ExecutionException e) {
+            return staleOrBusy(ns, key);
+        }
+    }
+
+    private <T> T loadAsLeader(Namespace ns, String namespace, String id, String key, TypeReference<T> typeReference,
+                               long timeout, TimeUnit unit, Supplier<T> loader) {
+        if (!"redis".equals(loadLock)) {
+            return load(ns, namespace, id, timeout, unit, loader);
+        }
+        String lockKey = redisUtil.buildKey("lock", key);
+        Long locked = redisUtil.execute(LOAD_LOCK_SCRIPT, Collections.singletonList(lockKey),
+                nodeToken, String.valueOf(loadLockMillis));
+        if (locked == null) {
+            // Redis 不可用，退化为本节点内合并
+            return load(ns, namespace, id, timeout, unit, loader);
+        }
+        if (locked == 0) {
+            // 其他节点在回源：轮询 Redis 等它写入，超时先用旧值，没有旧值再自己回源
+            long deadline = System.currentTimeMillis() + loadWaitMillis;
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(REMOTE_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                long generation = ns.generation.get();
+                T value = redisUtil.get(key, typeReference);
+                if (value != null) {
+                    putLocal(ns, key, value, generation);
+                    return value;
+                }
+                if (isNegativeRemote(ns, key)) {
+                    return null;
+                }
+            }
+            T stale = stale(ns, key);
+            if (stale != null) {
+                return stale;
+            }
+            return load(ns, namespace, id, timeout, unit, loader);
+        }
+        try {
+            // 拿到锁之前可能已经有节点写好了
+            long generation = ns.generation.get();
+            T value = redisUtil.get(key, typeReference);
+            if (value != null) {
+                putLocal(ns, key, value, generation);
+                return value;
+            }
+            return load(ns, namespace, id, timeout, unit, loader);
+        } finally {
+            redisUtil.execute(LOAD_UNLOCK_SCRIPT, Collections.singletonList(lockKey), nodeToken);
+        }
+    }
+
+    private <T> T load(Namespace ns, String namespace, String id, long timeout, TimeUnit unit, Supplier<T> loader) {
+        String key = redisUtil.buildKey(namespace, id);
+        if (isNegativeRemote(ns, key)) {
+            return null;
+        }
+        ns.loads.increment();
+        long generation = ns.generation.get();
+        T value = loader.get();
+        if (ns.generation.get() != generation) {
+            // 查库期间数据被修改过，查到的可能是旧数据，只返回不写缓存
+            return value;
+        }
+        if (value == null) {
+            redisUtil.set(negativeKey(key), 1, ns.negativeTtlSeconds, TimeUnit.SECONDS);
+            ns.negative.put(key, Boolean.TRUE);
+            return null;
+        }
+        redisUtil.set(key, value, timeout, unit);
+        putLocal(ns, key, value, generation);
+        return value;
+    }
+
+    /**
+     * 其他节点已经确认过不存在（Redis 里有负缓存标记），顺便记到本地
+     */
+    private boolean isNegativeRemote(Namespace ns, String key) {
+        if (!Boolean.TRUE.equals(redisUtil.hasKey(negativeKey(key)))) {
+            return false;
+        }
+        ns.negative.put(key, Boolean.TRUE);
+        ns.negativeHits.increment();
+        return true;
+    }
+
+    private String negativeKey(String key) {
+        // null:event:detail:123
+        return redisUtil.buildKey("null", key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T stale(Namespace ns, String key) {
+        T value = (T) ns.stale.getIfPresent(key);
+        if (value != null) {
+            ns.staleServed.increment();
+        }
+        return value;
+    }
+
+    private <T> T staleOrBusy(Namespace ns, String key) {
+        T stale = stale(ns, key);
+        if (stale == null) {
+            throw new BusinessException("系统繁忙，请稍后重试");
+        }
+        return stale;
+    }
+
+    /**
+     * 写缓存：Redis 按 timeout 过期，本地按命名空间的 l1-ttl-seconds 过期
+     */
+    public <T> void put(String namespace, String id, T value, long timeout, TimeUnit unit) {
+        Namespace ns = namespace(namespace);
+        String key = redisUtil.buildKey(namespace, id);
+        long generation = ns.generation.get();
+        redisUtil.set(key, value, timeout, unit);
+        putLocal(ns, key, value, generation);
+    }
+
+    /**
+     * 失效：删除 Redis 和本节点的本地副本，并广播给其他节点
+     * 数据库变更要在事务提交后再调用（TransactionUtil.afterCommit），否则其他请求可能把旧数据重新读进缓存
+     */
+    public void evict(String namespace, String id) {
+        String key = redisUtil.buildKey(namespace, id);
+        redisUtil.delete(key);
+        redisUtil.delete(negativeKey(key));
+        evictLocal(namespace, key);
+        redisUtil.publish(CHANNEL, namespace + SEPARATOR + key);
+    }
+
+    /**
+     * 接收其他节点（也包括自己）广播的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            log.warn("缓存失效广播消息格式错误, body={}", body);
+            return;
+        }
+        evictLocal(body.substring(0, separator), body.substring(separator + 1));
+    }
+
+    /**
+     * 各命名空间的命中统计，按命名空间排序
+     */
+    public List<CacheStats> stats() {
+        Map<String, Namespace> sorted = new TreeMap<>(namespaces);
+        List<CacheStats> result = new ArrayList<>(sorted.size());
+        sorted.forEach((name, ns) -> {
+            CacheStats stats = new CacheStats();
+            stats.setNamespace(name);
+            stats.setL1Size(ns.local.estimatedSize());
+            stats.setL1Hits(ns.l1Hits.sum());
+            stats.setL2Hits(ns.l2Hits.sum());
+            stats.setMisses(ns.misses.sum());
+            stats.setL1Evictions(ns.local.stats().evictionCount());
+            stats.setInvalidations(ns.invalidations.sum());
+            stats.setLoads(ns.loads.sum());
+            stats.setCoalesced(ns.coalesced.sum());
+            stats.setStaleServed(ns.staleServed.sum());
+            stats.setNegativeHits(ns.negativeHits.sum());
+            stats.setNegativeSize(ns.negative.estimatedSize());
+            stats.setBodyHits(ns.bodyHits.sum());
+            stats.setBodyRenders(ns.bodyRenders.sum());
+            stats.setBodySize(ns.bodies.estimatedSize());
+            long l1Misses = stats.getL2Hits() + stats.getMisses();
+            long requests = stats.getL1Hits() + l1Misses;
+            stats.setL1HitRate(requests == 0 ? 0 : (double) stats.getL1Hits() / requests);
+            stats.setL2HitRate(l1Misses == 0 ? 0 : (double) stats.getL2Hits() / l1Misses);
+            result.add(stats);
+        });
+        return result;
+    }
+
+    private void putLocal(Namespace ns, String key, Object value, long generation) {
+        ns.stale.put(key, value);
+        if (!l1Enabled) {
+            return;
+        }
+        ns.local.put(key, value);
+        if (ns.generation.get() != generation) {
+            // 写入期间收到了失效通知，刚写进去的可能是旧值
+            ns.local.invalidate(key);
+        }
+    }
+
+    private void evictLocal(String namespace, String key) {
+        Namespace ns = namespace(namespace);
+        ns.generation.incrementAndGet();
+        ns.local.invalidate(key);
+        ns.negative.invalidate(key);
+        ns.bodies.invalidate(key);
+        ns.invalidations.increment();
+    }
+
+    private Namespace namespace(String namespace) {
+        return namespaces.computeIfAbsent(namespace, name -> {
+            String prefix = "ticket.cache." + name.replace(':', '-') + ".";
+            long maxSize = environment.getProperty(prefix + "l1-max-size", Long.class, DEFAULT_L1_MAX_SIZE);
+            long ttlSeconds = environment.getProperty(prefix + "l1-ttl-seconds", Long.class, DEFAULT_L1_TTL_SECONDS);
+            long negativeTtlSeconds = environment.getProperty(prefix + "negative-ttl-seconds", Long.class,
+                    DEFAULT_NEGATIVE_TTL_SECONDS);
+            return new Namespace(maxSize, ttlSeconds, staleTtlSeconds, negativeTtlSeconds);
+        });
+    }
+}
@@ -3,36 +3,44 @@ package com.ticket.util;
 /**
  * 请求线程上下文，存储当前登录用户的基础信息。
  * 使用 ThreadLocal 确保同一请求线程内可随取随用，其他线程不可见。
+ *
+ * 虚拟线程模式（spring.threads.virtual.enabled=true）下每个请求是一个新的虚拟线程，
+ * 这里只放一个不可变的小对象（一个 ThreadLocal 条目），不会因为线程数量变多而占用大量内存；
+ * 不使用 InheritableThreadLocal，交给其他线程池执行的任务拿不到用户信息，需要显式传参。
  */
 public final class UserContext {
-    private static final ThreadLocal<Long> USER_ID_HOLDER = new ThreadLocal<>();
-    private static final ThreadLocal<String> ROLE_HOLDER = new ThreadLocal<>();
+
+    private record Principal(Long userId, String role) {
+    }
+
+    private static final ThreadLocal<Principal> HOLDER = new ThreadLocal<>();
 
     private UserContext() {
         // 工具类不允许实例化
     }
 
     public static void setUserId(Long userId) {
-        USER_ID_HOLDER.set(userId);
+        HOLDER.set(new Principal(userId, getRole()));
     }
 
     public static Long getUserId() {
-        return USER_ID_HOLDER.get();
+        Principal principal = HOLDER.get();
+        return principal == null ? null : principal.userId();
     }
 
     public static void setRole(String role) {
-        ROLE_HOLDER.set(role);
+        HOLDER.set(new Principal(getUserId(), role));
     }
 
     public static String getRole() {
-        return ROLE_HOLDER.get();
+        Principal principal = HOLDER.get();
+        return principal == null ? null : principal.role();
     }
 
     /**
      * 请求结束后务必清理，避免线程复用导致数据泄漏。
      */
     public static void clear() {
-        USER_ID_HOLDER.remove();
-        ROLE_HOLDER.remove();
+        HOLDER.remove();
     }
 }
@@ -0,0 +1,99 @@
+package com.ticket.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.ticket.dto.EventDTO;
+import com.ticket.util.RedisCodecs;
+import com.ticket.util.RedisValueCodec;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Redis 值编码对比：JSON / JSON+Deflate / Smile / Smile+Deflate（手动运行的 main 程序，不是单元测试）
+ *
+ * 用和线上相同的 RedisCodecs 编码两类值：首页列表（List<EventDTO>）和单个演出详情（EventDTO），
+ * 输出每条的字节数（含头部）以及编码、解码的平均耗时。
+ *
+ * 运行：mvn test-compile 后
+ *   java -cp target/test-classes:target/classes:<依赖> com.ticket.benchmark.RedisCodecBenchmark [首页条数] [迭代次数]
+ */
+public class RedisCodecBenchmark {
+
+    private static final String[] CITIES = {"北京", "上海", "广州", "深圳", "杭州"};
+    private static final String[] CATEGORIES = {"演唱会", "话剧", "音乐会", "体育赛事"};
+    private static final String[] GRADES = {"VIP", "A", "B"};
+
+    public static void main(String[] args) throws Exception {
+        int homeSize = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        List<EventDTO> home = new ArrayList<>();
+        for (int i = 0; i < homeSize; i++) {
+            home.add(buildEvent(i));
+        }
+        EventDTO detail = buildEvent(1);
+
+        System.out.printf("首页条数=%d, 迭代次数=%d%n", homeSize, iterations);
+        System.out.printf("%-16s %10s %10s %12s %12s%n", "编码", "首页字节", "详情字节", "编码ns/次", "解码ns/次");
+        run("json", "json", Integer.MAX_VALUE, home, detail, iterations);
+        run("json+deflate", "json", 0, home, detail, iterations);
+        run("smile", "smile", Integer.MAX_VALUE, home, detail, iterations);
+        run("smile+deflate", "smile", 0, home, detail, iterations);
+    }
+
+    private static void run(String label, String codecName, int compressMinBytes,
+                            List<EventDTO> home, EventDTO detail, int iterations) throws Exception {
+        RedisCodecs codecs = new RedisCodecs();
+        codecs.configure("", compressMinBytes);
+        RedisValueCodec codec = codecs.codec(codecName);
+        TypeReference<List<EventDTO>> homeType = new TypeReference<List<EventDTO>>() {};
+
+        byte[] homeBytes = codecs.encode(codec, home);
+        byte[] detailBytes = codecs.encode(codec, detail);
+        if (codecs.decode(homeBytes, homeType).size() != home.size()) {
+            throw new IllegalStateException(label + " 解码结果不一致");
+        }
+
+        // 预热
+        for (int i = 0; i < iterations / 4; i++) {
+            codecs.decode(codecs.encode(codec, home), homeType);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            homeBytes = codecs.encode(codec, home);
+        }
+        long encodeNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codecs.decode(homeBytes, homeType);
+        }
+        long decodeNanos = (System.nanoTime() - start) / iterations;
+
+        System.out.printf("%-16s %10d %10d %12d %12d%n",
+                label, homeBytes.length, detailBytes.length, encodeNanos, decodeNanos);
+    }
+
+    private static EventDTO buildEvent(int i) {
+        EventDTO event = new EventDTO();
+        event.setId(10_000L + i);
+        event.setName("2026 巡回演唱会 第" + (i + 1) + "场");
+        event.setDescription("经典曲目全新编排，现场乐队伴奏，演出时长约 150 分钟，请提前 60 分钟入场。");
+        event.setCity(CITIES[i % CITIES.length]);
+        event.setCategory(CATEGORIES[i % CATEGORIES.length]);
+        event.setVenue(CITIES[i % CITIES.length] + "体育馆");
+        event.setStartTime(new Date(1_790_000_000_000L + i * 86_400_000L));
+        event.setEndTime(new Date(1_790_009_000_000L + i * 86_400_000L));
+        event.setPrice(new BigDecimal("380.00").add(BigDecimal.valueOf(i % 5 * 100)));
+        event.setStock(1000 - i);
+        event.setStatus("ON_SALE");
+        event.setTicketGrade(GRADES[i % GRADES.length]);
+        event.setBucketCount(8);
+        event.setHasStock(true);
+        event.setIssued(false);
+        return event;
+    }
+}
@@ -0,0 +1,141 @@
+package com.ticket.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 平台线程 vs 虚拟线程 压测（手动运行的 main 程序，不是单元测试）
+ *
+ * 对正在运行的应用发真实 HTTP 请求，走完整的 Tomcat -> Controller -> Redis / MySQL 链路，默认压 GET /api/event/{id}。
+ * 每个并发档位用固定数量的客户端连续请求 duration 秒（发完一个等响应再发下一个），
+ * 输出吞吐量、p50 / p99 / 最大延迟和失败数（HTTP 非 2xx，或响应体里的业务码不是 200）。
+ *
+ * 对比步骤（同一台机器、同一份数据）：
+ *   1. spring.threads.virtual.enabled=false 启动应用，运行本程序，记下结果
+ *   2. 改成 true 重启应用，用同样的参数再运行一次
+ * 压 /api/order/create 时需要登录，用第 4 个参数传 Authorization 头，第 5、6 个参数传 POST 和 JSON 请求体，
+ * 并把库存、限购额度设得足够大（否则很快全是"库存不足"，压的只是失败路径）。
+ *
+ * 运行：mvn test-compile 后
+ *   java -cp target/test-classes com.ticket.benchmark.VirtualThreadBenchmark
+ *       [URL，默认 http://localhost:8080/api/event/1] [并发档位，逗号分隔，默认 50,200,800] [每档秒数，默认 30]
+ *       [Authorization，不需要时传 -] [请求方法，默认 GET] [请求体 JSON，@文件名 表示从文件读]
+ * 例如压下单：
+ *   ... http://localhost:8080/api/order/create 50,200,800 30 "Bearer xxx" POST '{"eventId":1,"quantity":1}'
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/api/event/1";
+        int[] levels = Arrays.stream((args.length > 1 ? args[1] : "50,200,800").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        long durationSeconds = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        String authorization = args.length > 3 && !"-".equals(args[3]) ? args[3] : null;
+        String method = args.length > 4 ? args[4].toUpperCase() : "GET";
+        String body = args.length > 5 ? args[5] : null;
+        if (body != null && body.startsWith("@")) {
+            body = Files.readString(Path.of(body.substring(1)));
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        if (authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        HttpRequest request = builder.build();
+
+        System.out.printf("%s %s, 每档%ds, CPU核数=%d%n", method, url, durationSeconds, Runtime.getRuntime().availableProcessors());
+        // 预热：让应用完成 JIT、建好连接池和缓存
+        run(client, request, levels[0], Math.min(10, durationSeconds), false);
+        System.out.printf("%8s %10s %10s %10s %10s %8s%n", "并发", "吞吐req/s", "p50ms", "p99ms", "maxms", "失败");
+        for (int level : levels) {
+            run(client, request, level, durationSeconds, true);
+        }
+    }
+
+    private static void run(HttpClient client, HttpRequest request, int concurrency,
+                            long durationSeconds, boolean print) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        List<Future<Worker>> futures = new ArrayList<>(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(executor.submit(() -> new Worker().loop(client, request, deadline)));
+        }
+        List<Long> latencies = new ArrayList<>();
+        long errors = 0;
+        for (Future<Worker> future : futures) {
+            Worker worker = future.get();
+            latencies.addAll(worker.latencies);
+            errors += worker.errors;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+        if (!print || latencies.isEmpty()) {
+            return;
+        }
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%8d %10.0f %10.1f %10.1f %10.1f %8d%n",
+                concurrency,
+                sorted.length * 1e9 / elapsedNanos,
+                percentile(sorted, 0.50) / 1e6,
+                percentile(sorted, 0.99) / 1e6,
+                sorted[sorted.length - 1] / 1e6,
+                errors);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    // 接口统一返回 Result：HTTP 200 但业务码不是 200（库存不足、超出限购等）也算失败
+    private static final Pattern SUCCESS_CODE = Pattern.compile("\"code\"\\s*:\\s*200\\b");
+
+    /**
+     * 一个客户端：发完一个请求等响应回来再发下一个，记录每次的延迟
+     */
+    private static final class Worker {
+        final List<Long> latencies = new ArrayList<>();
+        long errors;
+
+        Worker loop(HttpClient client, HttpRequest request, long deadline) {
+            while (System.nanoTime() < deadline) {
+                long begin = System.nanoTime();
+                try {
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() / 100 != 2 || !SUCCESS_CODE.matcher(response.body()).find()) {
+                        errors++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return this;
+                } catch (Exception e) {
+                    errors++;
+                }
+                latencies.add(System.nanoTime() - begin);
+            }
+            return this;
+        }
+    }
+}
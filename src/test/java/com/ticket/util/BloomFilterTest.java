@@ -0,0 +1,79 @@
+package com.ticket.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class BloomFilterTest {
+
+    @Test
+    void sizesBitsAndHashesFromExpectedInsertionsAndFpp() {
+        BloomFilter filter = BloomFilter.create(1_000_000, 0.001);
+
+        // m = -n * ln(p) / (ln2)^2 ≈ 14377588，k = m / n * ln2 ≈ 10
+        assertThat(filter.bitSize()).isEqualTo(14_377_588);
+        assertThat(filter.hashCount()).isEqualTo(10);
+    }
+
+    @Test
+    void lowerFppNeedsMoreBitsAndHashes() {
+        BloomFilter loose = BloomFilter.create(100_000, 0.01);
+        BloomFilter strict = BloomFilter.create(100_000, 0.0001);
+
+        assertThat(loose.hashCount()).isEqualTo(7);
+        assertThat(strict.hashCount()).isEqualTo(13);
+        // ln(0.0001) = 2 * ln(0.01)，位数翻倍（向上取整最多差 1 位）
+        assertThat(strict.bitSize()).isCloseTo(loose.bitSize() * 2, within(1));
+    }
+
+    @Test
+    void tinyFiltersKeepMinimumSize() {
+        BloomFilter empty = BloomFilter.create(0, 0.5);
+
+        assertThat(empty.bitSize()).isEqualTo(64);
+        assertThat(empty.hashCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void rejectsFppOutsideOpenInterval() {
+        assertThatThrownBy(() -> BloomFilter.create(100, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BloomFilter.create(100, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BloomFilter.create(100, -0.1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void noFalseNegativesAndFalsePositivesNearTarget() {
+        int n = 100_000;
+        double fpp = 0.01;
+        BloomFilter filter = BloomFilter.create(n, fpp);
+        // 连续自增ID，和线上演出ID的分布一致
+        for (long id = 1; id <= n; id++) {
+            filter.put(id);
+        }
+        for (long id = 1; id <= n; id++) {
+            assertThat(filter.mightContain(id)).isTrue();
+        }
+
+        int falsePositives = 0;
+        int probes = 200_000;
+        for (long id = n + 1; id <= n + probes; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        double measured = (double) falsePositives / probes;
+        assertThat(measured).isLessThan(fpp * 1.5);
+        assertThat(filter.estimatedFpp()).isCloseTo(fpp, within(fpp * 0.2));
+    }
+
+    @Test
+    void putReportsWhetherAnyBitChanged() {
+        BloomFilter filter = BloomFilter.create(1_000, 0.001);
+
+        assertThat(filter.put(42)).isTrue();
+        assertThat(filter.put(42)).isFalse();
+        assertThat(filter.insertions()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,180 @@
+package com.ticket.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdGeneratorTest {
+
+    private static final long EPOCH = 1704067200000L;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+
+    /**
+     * 时钟由测试控制的生成器
+     */
+    private static final class ManualClockIdGenerator extends IdGenerator {
+        final AtomicLong clock = new AtomicLong(EPOCH + 1_000_000);
+
+        @Override
+        long currentTimeMillis() {
+            return clock.get();
+        }
+    }
+
+    private static ManualClockIdGenerator generator(long nodeId) {
+        ManualClockIdGenerator generator = new ManualClockIdGenerator();
+        ReflectionTestUtils.setField(generator, "nodeId", nodeId);
+        generator.init();
+        return generator;
+    }
+
+    private static long timestampOf(long id) {
+        return id >>> (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    private static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & ((1L << NODE_BITS) - 1);
+    }
+
+    private static long sequenceOf(long id) {
+        return id & ((1L << SEQUENCE_BITS) - 1);
+    }
+
+    @Test
+    void encodesTimestampNodeAndSequence() {
+        ManualClockIdGenerator generator = generator(37);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertThat(timestampOf(first)).isEqualTo(1_000_000);
+        assertThat(nodeOf(first)).isEqualTo(37);
+        assertThat(sequenceOf(first)).isZero();
+        assertThat(sequenceOf(second)).isEqualTo(1);
+    }
+
+    @Test
+    void sequenceResetsWhenClockMovesForward() {
+        ManualClockIdGenerator generator = generator(1);
+        generator.nextId();
+        generator.nextId();
+
+        generator.clock.addAndGet(5);
+        long id = generator.nextId();
+
+        assertThat(timestampOf(id)).isEqualTo(1_000_005);
+        assertThat(sequenceOf(id)).isZero();
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        ManualClockIdGenerator generator = generator(1);
+        long last = 0;
+        for (int i = 0; i < 1 << SEQUENCE_BITS; i++) {
+            last = generator.nextId();
+        }
+        assertThat(timestampOf(last)).isEqualTo(1_000_000);
+        assertThat(sequenceOf(last)).isEqualTo((1 << SEQUENCE_BITS) - 1);
+
+        long overflow = generator.nextId();
+
+        assertThat(overflow).isGreaterThan(last);
+        assertThat(timestampOf(overflow)).isEqualTo(1_000_001);
+        assertThat(sequenceOf(overflow)).isZero();
+        assertThat(nodeOf(overflow)).isEqualTo(1);
+
+        // 时钟追上借用的毫秒时继续递增，不会从0重来
+        generator.clock.addAndGet(1);
+        assertThat(generator.nextId()).isEqualTo(overflow + 1);
+    }
+
+    @Test
+    void clockRollbackKeepsIdsIncreasing() {
+        ManualClockIdGenerator generator = generator(3);
+        generator.clock.addAndGet(100);
+        long beforeRollback = generator.nextId();
+
+        generator.clock.addAndGet(-50);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(generator.nextId());
+        }
+
+        long previous = beforeRollback;
+        for (long id : ids) {
+            assertThat(id).isGreaterThan(previous);
+            // 回拨期间沿用上一次的时间戳，只递增序列号
+            assertThat(timestampOf(id)).isEqualTo(timestampOf(beforeRollback));
+            previous = id;
+        }
+
+        // 时钟走回到原来的时间之后恢复使用当前时间
+        generator.clock.addAndGet(60);
+        long recovered = generator.nextId();
+        assertThat(recovered).isGreaterThan(previous);
+        assertThat(timestampOf(recovered)).isEqualTo(1_000_110);
+        assertThat(sequenceOf(recovered)).isZero();
+    }
+
+    @Test
+    void concurrentCallersGetUniqueIds() throws Exception {
+        ManualClockIdGenerator generator = generator(5);
+        int threads = 4;
+        int perThread = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        if (i % 1_000 == 0) {
+                            generator.clock.incrementAndGet();
+                        }
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> unique = new HashSet<>();
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertThat(unique.add(ids[i])).isTrue();
+                    if (i > 0) {
+                        // 同一线程拿到的ID严格递增
+                        assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                    }
+                }
+            }
+            assertThat(unique).hasSize(threads * perThread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsOutOfRangeNodeId() {
+        IdGenerator generator = new IdGenerator();
+        ReflectionTestUtils.setField(generator, "nodeId", 1024L);
+
+        assertThatThrownBy(generator::init).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,87 @@
+package com.ticket.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PostingListTest {
+
+    @Test
+    void emptyListDecodesToEmptyArray() {
+        PostingList list = new PostingList();
+
+        assertThat(list.toArray()).isEmpty();
+        assertThat(list.size()).isZero();
+        assertThat(list.bytes()).isZero();
+    }
+
+    @Test
+    void smallGapsTakeOneBytePerValue() {
+        PostingList list = new PostingList();
+        for (int value = 0; value < 1_000; value += 3) {
+            list.add(value);
+        }
+
+        assertThat(list.size()).isEqualTo(334);
+        assertThat(list.bytes()).isEqualTo(334);
+        int[] values = list.toArray();
+        for (int i = 0; i < values.length; i++) {
+            assertThat(values[i]).isEqualTo(i * 3);
+        }
+    }
+
+    @Test
+    void varintBoundariesRoundTrip() {
+        int[] values = {0, 127, 255, 16_511, 2_113_663, 270_549_119, Integer.MAX_VALUE};
+        PostingList list = new PostingList();
+        for (int value : values) {
+            list.add(value);
+        }
+
+        assertThat(list.toArray()).containsExactly(values);
+        // 差值 127 / 128 / 16256 / 2097152 / 268435456 / 1876934528 分别占 1 / 2 / 2 / 4 / 5 / 5 字节，首个 0 占 1 字节
+        assertThat(list.bytes()).isEqualTo(1 + 1 + 2 + 2 + 4 + 5 + 5);
+    }
+
+    @Test
+    void randomIncreasingValuesRoundTrip() {
+        Random random = new Random(7);
+        int[] expected = new int[10_000];
+        PostingList list = new PostingList();
+        int value = random.nextInt(100);
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = value;
+            list.add(value);
+            value += 1 + random.nextInt(i % 10 == 0 ? 100_000 : 50);
+        }
+
+        assertThat(list.toArray()).containsExactly(expected);
+        assertThat(list.size()).isEqualTo(expected.length);
+    }
+
+    @Test
+    void rejectsNonIncreasingValues() {
+        PostingList list = new PostingList();
+        list.add(10);
+
+        assertThatThrownBy(() -> list.add(10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> list.add(5)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(list.toArray()).containsExactly(10);
+    }
+
+    @Test
+    void trimKeepsContentAndAllowsFurtherAppends() {
+        PostingList list = new PostingList();
+        list.add(1);
+        list.add(300);
+        list.trim();
+
+        assertThat(list.toArray()).containsExactly(1, 300);
+
+        list.add(301);
+        assertThat(list.toArray()).containsExactly(1, 300, 301);
+    }
+}
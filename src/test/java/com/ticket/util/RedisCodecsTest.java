@@ -0,0 +1,146 @@
+package com.ticket.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ticket.entity.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisCodecsTest {
+
+    private static final TypeReference<Event> EVENT = new TypeReference<Event>() {};
+    private static final TypeReference<List<Event>> EVENT_LIST = new TypeReference<List<Event>>() {};
+
+    private RedisCodecs codecs;
+
+    @BeforeEach
+    void setUp() {
+        codecs = new RedisCodecs();
+        codecs.configure("", 512);
+    }
+
+    private static Event event(long id) {
+        Event event = new Event();
+        event.setId(id);
+        event.setName("周杰伦嘉年华世界巡回演唱会 第" + id + "场");
+        event.setDescription("演唱会简介，首页列表里每一场都有相似的长文本，压缩效果明显");
+        event.setCity("北京");
+        event.setCategory("演唱会");
+        event.setVenue("国家体育场");
+        event.setStartTime(new Date(1767225600000L + id * 86_400_000L));
+        event.setPrice(new BigDecimal("680.00"));
+        event.setStock(10_000);
+        event.setStatus("PUBLISHED");
+        event.setCreatedTime(new Date(1764547200000L));
+        return event;
+    }
+
+    private static List<Event> homeEvents() {
+        List<Event> events = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            events.add(event(id));
+        }
+        return events;
+    }
+
+    @Test
+    void smallValuesRoundTripWithoutCompression() throws IOException {
+        for (String name : List.of("json", "smile")) {
+            RedisValueCodec codec = codecs.codec(name);
+            Event event = event(1);
+
+            byte[] data = codecs.encode(codec, event);
+
+            assertThat(data[0]).isEqualTo(RedisCodecs.FORMAT_V1);
+            assertThat(data[1]).isEqualTo(codec.id());
+            assertThat(data[2]).as("%s 不应压缩", name).isZero();
+            assertThat(codecs.decode(data, EVENT)).isEqualTo(event);
+        }
+    }
+
+    @Test
+    void largeValuesRoundTripWithCompression() throws IOException {
+        List<Event> events = homeEvents();
+        for (String name : List.of("json", "smile")) {
+            RedisValueCodec codec = codecs.codec(name);
+
+            byte[] data = codecs.encode(codec, events);
+
+            assertThat(data[1]).isEqualTo(codec.id());
+            assertThat(data[2]).as("%s 应压缩", name).isEqualTo((byte) 1);
+            assertThat(data.length).isLessThan(codec.encode(events).length);
+            assertThat(codecs.decode(data, EVENT_LIST)).isEqualTo(events);
+        }
+    }
+
+    @Test
+    void compressMinBytesControlsCompression() throws IOException {
+        List<Event> events = homeEvents();
+        codecs.configure("", Integer.MAX_VALUE);
+
+        byte[] data = codecs.encode(codecs.codec("smile"), events);
+
+        assertThat(data[2]).isZero();
+        assertThat(codecs.decode(data, EVENT_LIST)).isEqualTo(events);
+    }
+
+    @Test
+    void namespacesSelectCodecByKeyPrefix() throws IOException {
+        codecs.configure("home:events=smile,event:detail=json", 512);
+
+        assertThat(codecs.isBinary("home:events:北京")).isTrue();
+        assertThat(codecs.isBinary("event:detail:1")).isTrue();
+        // 只按整段命名空间匹配，前缀相同的其他 Key 保持 JSON 字符串
+        assertThat(codecs.isBinary("home:events")).isFalse();
+        assertThat(codecs.isBinary("home:eventsx:1")).isFalse();
+        assertThat(codecs.isBinary("event:stock:1")).isFalse();
+
+        byte[] data = codecs.encode("home:events:北京", homeEvents());
+        assertThat(data[1]).isEqualTo(SmileRedisCodec.ID);
+    }
+
+    @Test
+    void legacyJsonWithoutHeaderStillDecodes() throws IOException {
+        Event event = event(7);
+        byte[] legacy = new ObjectMapper().writeValueAsBytes(event);
+
+        assertThat(legacy[0]).isNotEqualTo(RedisCodecs.FORMAT_V1);
+        assertThat(codecs.decode(legacy, EVENT)).isEqualTo(event);
+    }
+
+    @Test
+    void unknownCodecIdIsRejected() throws IOException {
+        byte[] data = codecs.encode(codecs.codec("json"), event(1));
+        data[1] = 0x7f;
+
+        assertThatThrownBy(() -> codecs.decode(data, EVENT))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("未知的 Redis 编码ID");
+    }
+
+    @Test
+    void truncatedCompressedValueIsRejected() throws IOException {
+        byte[] data = codecs.encode(codecs.codec("smile"), homeEvents());
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+
+        assertThatThrownBy(() -> codecs.decode(truncated, EVENT_LIST)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void unknownCodecNameInConfigIsRejected() {
+        assertThatThrownBy(() -> codecs.configure("home:events=protobuf", 512))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codecs.configure("home:events", 512))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
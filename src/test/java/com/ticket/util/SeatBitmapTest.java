@@ -0,0 +1,185 @@
+package com.ticket.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeatBitmapTest {
+
+    @Test
+    void allocatesContiguousSeatsRowByRow() {
+        SeatBitmap bitmap = new SeatBitmap(2, 10);
+
+        assertThat(bitmap.allocate(4)).isEqualTo(0);
+        assertThat(bitmap.allocate(4)).isEqualTo(4);
+        // 第一排只剩 2 个空座，4 连座落到第二排
+        assertThat(bitmap.allocate(4)).isEqualTo(10);
+        assertThat(bitmap.allocate(2)).isEqualTo(8);
+        assertThat(bitmap.available()).isEqualTo(20 - 14);
+    }
+
+    @Test
+    void rejectsRunsLongerThanRowOrNonPositive() {
+        SeatBitmap bitmap = new SeatBitmap(3, 10);
+
+        assertThat(bitmap.allocate(11)).isEqualTo(-1);
+        assertThat(bitmap.allocate(0)).isEqualTo(-1);
+        assertThat(bitmap.available()).isEqualTo(30);
+    }
+
+    @Test
+    void paddingBitsAreNeverAllocated() {
+        // 70 座一排占两个 long，第二个 long 只有 6 位可用
+        SeatBitmap bitmap = new SeatBitmap(1, 70);
+
+        assertThat(bitmap.allocate(70)).isEqualTo(0);
+        assertThat(bitmap.allocate(1)).isEqualTo(-1);
+        assertThat(bitmap.available()).isZero();
+    }
+
+    @Test
+    void runsSpanWordBoundaries() {
+        SeatBitmap bitmap = new SeatBitmap(1, 128);
+        bitmap.mark(0, 0, 60);
+
+        assertThat(bitmap.allocate(10)).isEqualTo(60);
+        for (int seat = 60; seat < 70; seat++) {
+            assertThat(bitmap.isTaken(0, seat)).isTrue();
+        }
+        assertThat(bitmap.isTaken(0, 70)).isFalse();
+    }
+
+    @Test
+    void releaseMakesSeatsAvailableAgainAndRewindsFullRows() {
+        SeatBitmap bitmap = new SeatBitmap(2, 4);
+        assertThat(bitmap.allocate(4)).isEqualTo(0);
+        assertThat(bitmap.allocate(4)).isEqualTo(4);
+        assertThat(bitmap.allocate(1)).isEqualTo(-1);
+
+        bitmap.release(0, 1, 2);
+
+        assertThat(bitmap.available()).isEqualTo(2);
+        // 第一排已被判为满，释放后要能重新分到
+        assertThat(bitmap.allocate(2)).isEqualTo(1);
+    }
+
+    @Test
+    void rowBytesMatchSliceOfFullBytes() {
+        SeatBitmap bitmap = new SeatBitmap(3, 100);
+        bitmap.mark(1, 5, 70);
+        bitmap.mark(2, 99, 1);
+
+        byte[] all = bitmap.toBytes();
+        for (int row = 0; row < 3; row++) {
+            int offset = bitmap.rowByteOffset(row);
+            byte[] rowBytes = bitmap.rowBytes(row);
+            assertThat(rowBytes).isEqualTo(Arrays.copyOfRange(all, offset, offset + rowBytes.length));
+        }
+    }
+
+    @Test
+    void loadBytesRestoresTakenSeats() {
+        SeatBitmap source = new SeatBitmap(2, 50);
+        source.mark(0, 3, 7);
+        source.mark(1, 40, 10);
+
+        SeatBitmap restored = new SeatBitmap(2, 50);
+        restored.loadBytes(source.toBytes());
+
+        assertThat(restored.toBytes()).isEqualTo(source.toBytes());
+        assertThat(restored.available()).isEqualTo(source.available());
+    }
+
+    @Test
+    void concurrentAllocationsNeverClaimTheSameSeat() throws Exception {
+        int rows = 50;
+        int seatsPerRow = 100;
+        int threads = 8;
+        SeatBitmap bitmap = new SeatBitmap(rows, seatsPerRow);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<long[]>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // 不同线程用不同张数，连座会跨 long 边界，CAS 失败时要撤销已占的部分
+                int count = 1 + t * 5;
+                Callable<List<long[]>> task = () -> {
+                    start.await();
+                    List<long[]> claimed = new ArrayList<>();
+                    long seat;
+                    while ((seat = bitmap.allocate(count)) >= 0) {
+                        claimed.add(new long[]{seat, count});
+                    }
+                    return claimed;
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+
+            boolean[] owned = new boolean[rows * seatsPerRow];
+            int claimedSeats = 0;
+            for (Future<List<long[]>> future : futures) {
+                for (long[] claim : future.get()) {
+                    int first = (int) claim[0];
+                    int count = (int) claim[1];
+                    assertThat(first % seatsPerRow + count).isLessThanOrEqualTo(seatsPerRow);
+                    for (int seat = first; seat < first + count; seat++) {
+                        assertThat(owned[seat]).as("座位 %d 被重复分配", seat).isFalse();
+                        owned[seat] = true;
+                    }
+                    claimedSeats += count;
+                }
+            }
+            // 撤销不干净会留下没人拥有的已占座位，空座数对不上
+            assertThat(bitmap.available()).isEqualTo(rows * seatsPerRow - claimedSeats);
+            for (int seat = 0; seat < owned.length; seat++) {
+                assertThat(bitmap.isTaken(seat / seatsPerRow, seat % seatsPerRow)).isEqualTo(owned[seat]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentReleaseAndAllocateKeepCountsConsistent() throws Exception {
+        int seatsPerRow = 64;
+        SeatBitmap bitmap = new SeatBitmap(4, seatsPerRow);
+        int threads = 4;
+        int rounds = 5_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        long seat = bitmap.allocate(3);
+                        if (seat >= 0) {
+                            bitmap.release((int) (seat / seatsPerRow), (int) (seat % seatsPerRow), 3);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 每次占座都已释放，位图应回到全空
+        assertThat(bitmap.available()).isEqualTo(4 * seatsPerRow);
+    }
+}
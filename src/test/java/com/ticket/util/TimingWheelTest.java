@@ -0,0 +1,116 @@
+package com.ticket.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    void rejectsDeadlinesWithinCurrentTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 1_000);
+
+        assertThat(wheel.add("past", 500)).isFalse();
+        assertThat(wheel.add("same-tick", 1_009)).isFalse();
+        assertThat(wheel.add("next-tick", 1_010)).isTrue();
+    }
+
+    @Test
+    void expiresInFirstLevelAtDeadlineTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+        wheel.add("a", 35);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(29, expired::add);
+        assertThat(expired).isEmpty();
+
+        wheel.advance(30, expired::add);
+        assertThat(expired).containsExactly("a");
+    }
+
+    @Test
+    void cascadesFromOverflowWheels() {
+        // 第一层一圈 80ms，第二层 640ms，第三层 5120ms
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+        wheel.add("level2", 300);
+        wheel.add("level3", 2_345);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(290, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(300, expired::add);
+        assertThat(expired).containsExactly("level2");
+
+        wheel.advance(2_339, expired::add);
+        assertThat(expired).containsExactly("level2");
+        wheel.advance(2_340, expired::add);
+        assertThat(expired).containsExactly("level2", "level3");
+    }
+
+    @Test
+    void randomDeadlinesExpireExactlyAtTheirTickInOrder() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = TICK + random.nextInt(20_000);
+            deadlines.put(i, deadline);
+            assertThat(wheel.add(i, deadline)).isTrue();
+        }
+
+        Map<Integer, Long> expiredAt = new HashMap<>();
+        List<Long> order = new ArrayList<>();
+        for (long now = TICK; now <= 20_010; now += TICK) {
+            long at = now;
+            wheel.advance(now, value -> {
+                assertThat(expiredAt.put(value, at)).as("任务 %d 重复到期", value).isNull();
+                order.add(deadlines.get(value));
+            });
+        }
+
+        assertThat(expiredAt).hasSameSizeAs(deadlines);
+        deadlines.forEach((value, deadline) ->
+                assertThat(expiredAt.get(value)).as("任务 %d 的到期时间", value).isEqualTo(deadline - deadline % TICK));
+        // 不同格子按截止时间先后到期（同一格内不保证顺序）
+        for (int i = 1; i < order.size(); i++) {
+            assertThat(order.get(i) / TICK).isGreaterThanOrEqualTo(order.get(i - 1) / TICK);
+        }
+    }
+
+    @Test
+    void largeJumpFlushesEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+        wheel.add("near", 50);
+        wheel.add("mid", 700);
+        wheel.add("far", 9_000);
+        wheel.add("later", 50_000);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(10_000, expired::add);
+
+        assertThat(expired).containsExactly("near", "mid", "far");
+    }
+
+    @Test
+    void tasksAddedAfterAdvanceUseCurrentTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1_000, expired::add);
+
+        assertThat(wheel.add("stale", 995)).isFalse();
+        assertThat(wheel.add("fresh", 1_500)).isTrue();
+        wheel.advance(1_490, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(1_500, expired::add);
+        assertThat(expired).containsExactly("fresh");
+    }
+}